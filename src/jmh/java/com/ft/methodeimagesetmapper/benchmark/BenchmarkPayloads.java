@@ -0,0 +1,62 @@
+package com.ft.methodeimagesetmapper.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ft.messaging.standards.message.v1.Message;
+import com.ft.messaging.standards.message.v1.SystemId;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Native Methode messages built from the image fixture in {@code src/test/resources}, with image bytes of the size
+ * given by the benchmark parameter in place of the fixture's placeholder value.
+ */
+final class BenchmarkPayloads {
+
+    static final String SYSTEM_CODE = "methode-web-pub";
+    static final String TRANSACTION_ID = "tid_benchmark";
+
+    private static final String IMAGE_FIXTURE = "native-methode-image.json";
+
+    private BenchmarkPayloads() {
+    }
+
+    enum Size {
+        /** the fixture as it is, with a few bytes of image */
+        SMALL(0),
+        /** a typical web image */
+        TYPICAL(150 * 1024),
+        /** a high resolution agency picture */
+        LARGE(5 * 1024 * 1024);
+
+        private final int imageBytes;
+
+        Size(int imageBytes) {
+            this.imageBytes = imageBytes;
+        }
+    }
+
+    static String nativeMessageBody(ObjectMapper objectMapper, Size size) throws IOException {
+        final ObjectNode body;
+        try (InputStream fixture = BenchmarkPayloads.class.getClassLoader().getResourceAsStream(IMAGE_FIXTURE)) {
+            body = (ObjectNode) objectMapper.readTree(fixture);
+        }
+        if (size.imageBytes > 0) {
+            final byte[] image = new byte[size.imageBytes];
+            new Random(size.imageBytes).nextBytes(image);
+            body.put("value", image);
+        }
+        return objectMapper.writeValueAsString(body);
+    }
+
+    static Message nativeMessage(String body) {
+        final Message message = new Message();
+        message.setOriginSystemId(SystemId.systemIdFromCode(SYSTEM_CODE));
+        message.setMessageTimestamp(new Date());
+        message.setMessageBody(body);
+        return message;
+    }
+}
@@ -0,0 +1,102 @@
+package com.ft.methodeimagesetmapper.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ft.content.model.Content;
+import com.ft.messagequeueproducer.MessageProducer;
+import com.ft.messaging.standards.message.v1.Message;
+import com.ft.methodeimagesetmapper.messaging.MessageProducingContentMapper;
+import com.ft.methodeimagesetmapper.messaging.NativeCmsPublicationEventsListener;
+import com.ft.methodeimagesetmapper.messaging.NativeEomFileReader;
+import com.ft.methodeimagesetmapper.messaging.PublishOutcome;
+import com.ft.methodeimagesetmapper.model.EomFile;
+import com.ft.methodeimagesetmapper.service.MethodeImageSetMapper;
+import com.ft.methodeimagesetmapper.validation.PublishingValidator;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.UriBuilder;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each stage a native Methode image goes through, from reading the message to producing the image set
+ * message, for small, typical and multi-MB images. Run with {@code -prof gc} (the default of the {@code jmh} profile)
+ * to also get the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmarks {
+
+    private static final String CONTENT_URI_PREFIX = "http://methode-image-model-mapper.svc.ft.com/image-set/model";
+
+    @Param({"SMALL", "TYPICAL", "LARGE"})
+    private BenchmarkPayloads.Size size;
+
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+    private final MethodeImageSetMapper imageSetMapper = new MethodeImageSetMapper();
+    private final PublishingValidator publishingValidator = new PublishingValidator();
+    private final NativeEomFileReader eomFileReader = new NativeEomFileReader(objectMapper);
+
+    private volatile List<Message> lastSent;
+    private MessageProducingContentMapper producingMapper;
+    private NativeCmsPublicationEventsListener listener;
+    private String messageBody;
+    private Message message;
+    private EomFile eomFile;
+    private Date lastModified;
+
+    @Setup
+    public void setUp() throws IOException {
+        final MessageProducer producer = messages -> lastSent = messages;
+        producingMapper = new MessageProducingContentMapper(imageSetMapper, objectMapper, BenchmarkPayloads.SYSTEM_CODE,
+                producer, UriBuilder.fromUri(CONTENT_URI_PREFIX).path("{uuid}"));
+        listener = new NativeCmsPublicationEventsListener(BenchmarkPayloads.SYSTEM_CODE, producingMapper, objectMapper,
+                publishingValidator);
+
+        messageBody = BenchmarkPayloads.nativeMessageBody(objectMapper, size);
+        message = BenchmarkPayloads.nativeMessage(messageBody);
+        eomFile = eomFileReader.read(messageBody);
+        lastModified = new Date();
+    }
+
+    @Benchmark
+    public EomFile readNativeEomFile() throws IOException {
+        return eomFileReader.read(messageBody);
+    }
+
+    @Benchmark
+    public boolean validateForPublishing() {
+        return publishingValidator.isValidForPublishing(eomFile);
+    }
+
+    @Benchmark
+    public Content mapImageSet() {
+        return imageSetMapper.mapImageSet(eomFile.getUuid(), eomFile, BenchmarkPayloads.TRANSACTION_ID, lastModified);
+    }
+
+    @Benchmark
+    public PublishOutcome mapAndCreateMessage() {
+        return producingMapper.mapImageSet(eomFile.getUuid(), eomFile, BenchmarkPayloads.TRANSACTION_ID, lastModified);
+    }
+
+    @Benchmark
+    public boolean onMessage() {
+        return listener.onMessage(message, BenchmarkPayloads.TRANSACTION_ID);
+    }
+}
@@ -0,0 +1,82 @@
+package com.ft.methodeimagesetmapper.benchmark;
+
+import com.ft.methodeimagesetmapper.service.ScalarDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the publish date, dimensions and media type of an image, comparing {@link ScalarDecoder} with the JDK
+ * calls it replaced. Run with {@code -prof gc} to compare the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScalarDecodingBenchmarks {
+
+    private String date = "20140930144500";
+    private String dimension = "2048";
+    private String missingDimension = "";
+    private String fileType = "JPEG";
+
+    @Benchmark
+    public Date parseDate() {
+        return ScalarDecoder.parseDate(date);
+    }
+
+    @Benchmark
+    public Date parseDateWithSimpleDateFormat() {
+        final DateFormat dateFormat = new SimpleDateFormat("yyyyMMddHHmmss");
+        try {
+            dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return dateFormat.parse(date);
+        } catch (ParseException ex) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Integer parseDimension() {
+        return ScalarDecoder.parseDimension(dimension);
+    }
+
+    @Benchmark
+    public Integer parseMissingDimension() {
+        return ScalarDecoder.parseDimension(missingDimension);
+    }
+
+    @Benchmark
+    public Integer parseMissingDimensionWithParseInt() {
+        try {
+            return Integer.parseInt(missingDimension);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public String mediaType() {
+        return ScalarDecoder.mediaType(fileType);
+    }
+
+    @Benchmark
+    public String mediaTypeWithToLowerCase() {
+        return "image/" + fileType.toLowerCase();
+    }
+}
@@ -0,0 +1,183 @@
+package com.ft.methodeimagesetmapper.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An in-process stand-in for the kafka-proxy REST API, enough for the consumer and producer of the mapper.
+ * <p>
+ * Messages {@link #offer(String) offered} to the stub are served to the consumer from the consumer instance's topic
+ * endpoint, in batches of up to {@code maxConsumeBatch}. Records produced to any topic are decoded and handed to the
+ * {@code produced} callback. Every request is delayed by {@code latencyMillis}, and fails with a {@code 500} with
+ * probability {@code errorRate}.
+ */
+class KafkaProxyStub {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KafkaProxyStub.class);
+    private static final String KAFKA_JSON = "application/vnd.kafka.binary.v1+json";
+    private static final String FT_MESSAGE_PREFIX = "FTMSG";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<String> topic = new LinkedBlockingQueue<>();
+    private final AtomicLong offset = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int port;
+    private final long latencyMillis;
+    private final double errorRate;
+    private final int maxConsumeBatch;
+    private final Consumer<String> produced;
+
+    KafkaProxyStub(int port, long latencyMillis, double errorRate, int maxConsumeBatch, Consumer<String> produced)
+            throws IOException {
+        this.port = port;
+        this.latencyMillis = latencyMillis;
+        this.errorRate = errorRate;
+        this.maxConsumeBatch = maxConsumeBatch;
+        this.produced = produced;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues a message, in FT message format, to be consumed by the mapper.
+     */
+    void offer(String ftMessage) {
+        topic.add(ftMessage);
+    }
+
+    long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                respond(exchange, 500, "{\"error_code\":50001,\"message\":\"Injected error\"}");
+                return;
+            }
+            final String method = exchange.getRequestMethod();
+            final String[] path = exchange.getRequestURI().getPath().substring(1).split("/");
+            if (path[0].equals("consumers")) {
+                handleConsumer(exchange, method, path);
+            } else if (path[0].equals("topics") && path.length == 2 && method.equals("POST")) {
+                handleProduce(exchange);
+            } else if (path[0].equals("topics") && path.length == 2) {
+                respond(exchange, 200, "{\"name\":\"" + path[1] + "\",\"partitions\":[{\"partition\":0}]}");
+            } else {
+                respond(exchange, 404, "{\"error_code\":40401,\"message\":\"Not found\"}");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "{}");
+        } catch (RuntimeException | IOException e) {
+            LOG.warn("Kafka-proxy stub failed handling {}.", exchange.getRequestURI(), e);
+            respond(exchange, 500, "{}");
+        }
+    }
+
+    /**
+     * POST /consumers/{group} creates an instance, GET .../instances/{id}/topics/{topic} consumes, POST .../offsets
+     * commits and DELETE .../instances/{id} destroys it.
+     */
+    private void handleConsumer(HttpExchange exchange, String method, String[] path)
+            throws IOException, InterruptedException {
+        if (path.length == 2 && method.equals("POST")) {
+            final String baseUri = "http://localhost:" + port + "/consumers/" + path[1] + "/instances/loadtest";
+            respond(exchange, 200, "{\"instance_id\":\"loadtest\",\"base_uri\":\"" + baseUri + "\"}");
+        } else if (path.length == 6 && path[4].equals("topics") && method.equals("GET")) {
+            respond(exchange, 200, objectMapper.writeValueAsString(consume()));
+        } else if (path.length == 5 && path[4].equals("offsets")) {
+            respond(exchange, 200, "[]");
+        } else if (path.length == 4 && method.equals("DELETE")) {
+            respond(exchange, 204, null);
+        } else {
+            respond(exchange, 404, "{\"error_code\":40403,\"message\":\"Consumer instance not found\"}");
+        }
+    }
+
+    private ArrayNode consume() throws InterruptedException {
+        final ArrayNode records = objectMapper.createArrayNode();
+        final List<String> messages = new ArrayList<>(maxConsumeBatch);
+        final String first = topic.poll(200, TimeUnit.MILLISECONDS);
+        if (first != null) {
+            messages.add(first);
+            topic.drainTo(messages, maxConsumeBatch - 1);
+        }
+        for (String message : messages) {
+            final ObjectNode record = records.addObject();
+            record.putNull("key");
+            record.put("value", Base64.getEncoder().encodeToString(message.getBytes(UTF_8)));
+            record.put("partition", 0);
+            record.put("offset", offset.getAndIncrement());
+        }
+        return records;
+    }
+
+    private void handleProduce(HttpExchange exchange) throws IOException {
+        final JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        final ArrayNode offsets = objectMapper.createArrayNode();
+        for (JsonNode record : request.path("records")) {
+            final String value = record.path("value").asText();
+            produced.accept(value.startsWith(FT_MESSAGE_PREFIX)
+                    ? value : new String(Base64.getDecoder().decode(value), UTF_8));
+            offsets.addObject().put("partition", 0).put("offset", 0);
+        }
+        final ObjectNode response = objectMapper.createObjectNode();
+        response.set("offsets", offsets);
+        respond(exchange, 200, objectMapper.writeValueAsString(response));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        final byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", KAFKA_JSON);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.ft.methodeimagesetmapper.loadtest;
+
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ft.methodeimagesetmapper.MethodeImageSetMapperApplication;
+import com.google.common.util.concurrent.RateLimiter;
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives native image events through the whole application, from its kafka-proxy consumer to its producer, against
+ * a {@link KafkaProxyStub}, and reports end-to-end throughput, latency and heap/GC statistics.
+ * <p>
+ * Events are offered at a fixed rate for a warm-up period, whose results are discarded, and then for the measured
+ * duration. An event is tracked by its transaction id, which the mapper carries over to the image set it publishes;
+ * its latency runs from being queued in the stub to the image set being produced back to it.
+ */
+public final class LoadTest {
+
+    private static final String NATIVE_IMAGE = "src/test/resources/native-methode-image.json";
+    private static final String UUID_PLACEHOLDER = "00000000-0000-0000-0000-000000000000";
+    private static final String ORIGIN_SYSTEM_ID = "http://cmdb.ft.com/systems/methode-web-pub";
+    private static final String TRANSACTION_ID_HEADER = "X-Request-Id: ";
+    private static final String WARMUP_PREFIX = "tid_warmup_";
+    private static final String MEASURED_PREFIX = "tid_load_";
+    private static final String CRLF = "\r\n";
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private final Timer latencies = new Timer(new UniformReservoir(100_000));
+    private final AtomicLong lastPublishedAt = new AtomicLong();
+    private final String eventTemplate;
+
+    private LoadTest(String eventTemplate) {
+        this.eventTemplate = eventTemplate;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final ArgumentParser parser = ArgumentParsers.newArgumentParser("loadtest").defaultHelp(true)
+                .description("Measures end-to-end throughput of the mapper against a stub kafka-proxy");
+        parser.addArgument("--config").setDefault("src/loadtest/resources/methode-image-set-mapper-loadtest.yaml")
+                .help("application configuration, pointing both consumer and producer at the stub");
+        parser.addArgument("--rate").type(Integer.class).setDefault(100).help("events per second");
+        parser.addArgument("--duration").type(Integer.class).setDefault(60).help("measured seconds");
+        parser.addArgument("--warmup").type(Integer.class).setDefault(10).help("unmeasured seconds before");
+        parser.addArgument("--drain-timeout").type(Integer.class).setDefault(30)
+                .help("seconds to wait for outstanding events");
+        parser.addArgument("--image-size").type(Integer.class).setDefault(150).help("KB of image bytes per event");
+        parser.addArgument("--proxy-port").type(Integer.class).setDefault(22043).help("port of the stub");
+        parser.addArgument("--proxy-latency").type(Long.class).setDefault(5L).help("ms added to every stub request");
+        parser.addArgument("--proxy-error-rate").type(Double.class).setDefault(0.0)
+                .help("fraction of stub requests failing with a 500");
+        parser.addArgument("--consume-batch").type(Integer.class).setDefault(100)
+                .help("maximum records served per consume request");
+        final Namespace options;
+        try {
+            options = parser.parseArgs(args);
+        } catch (ArgumentParserException e) {
+            parser.handleError(e);
+            System.exit(2);
+            return;
+        }
+
+        final LoadTest loadTest = new LoadTest(eventTemplate(options.getInt("image_size") * 1024));
+        final KafkaProxyStub proxy = new KafkaProxyStub(options.getInt("proxy_port"), options.getLong("proxy_latency"),
+                options.getDouble("proxy_error_rate"), options.getInt("consume_batch"), loadTest::produced);
+        proxy.start();
+        new MethodeImageSetMapperApplication().run(new String[]{"server", options.getString("config")});
+
+        final int exitCode = loadTest.run(proxy, options);
+        proxy.stop();
+        System.exit(exitCode);
+    }
+
+    private int run(KafkaProxyStub proxy, Namespace options) throws InterruptedException {
+        final RateLimiter rate = RateLimiter.create(options.getInt("rate"));
+        offer(proxy, rate, WARMUP_PREFIX, TimeUnit.SECONDS.toNanos(options.getInt("warmup")));
+
+        resetPeakHeap();
+        final long[] gcBefore = gcTotals();
+        final long measureStart = System.nanoTime();
+        final long sent = offer(proxy, rate, MEASURED_PREFIX, TimeUnit.SECONDS.toNanos(options.getInt("duration")));
+
+        final long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.getInt("drain_timeout"));
+        while (outstanding(MEASURED_PREFIX) > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(100);
+        }
+        final long[] gcAfter = gcTotals();
+
+        final long published = latencies.getCount();
+        final double seconds = (Math.max(lastPublishedAt.get(), measureStart + 1) - measureStart) / 1e9;
+        final Snapshot snapshot = latencies.getSnapshot();
+        System.out.printf("Sent %d events at %d/s, published %d, unpublished %d (%d stub errors injected)%n",
+                sent, options.getInt("rate"), published, outstanding(MEASURED_PREFIX), proxy.getInjectedErrors());
+        System.out.printf("Throughput: %.1f image sets/s%n", published / seconds);
+        System.out.printf("Latency ms: p50 %.1f, p95 %.1f, p99 %.1f, max %.1f%n", millis(snapshot.getMedian()),
+                millis(snapshot.get95thPercentile()), millis(snapshot.get99thPercentile()), millis(snapshot.getMax()));
+        System.out.printf("Heap MB: peak %d, used %d, max %d%n", peakHeap() >> 20,
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20,
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax() >> 20);
+        System.out.printf("GC: %d collections, %d ms (%.1f%% of measured time)%n", gcAfter[0] - gcBefore[0],
+                gcAfter[1] - gcBefore[1], 100.0 * (gcAfter[1] - gcBefore[1]) / (seconds * 1000));
+        return published == sent ? 0 : 1;
+    }
+
+    private long offer(KafkaProxyStub proxy, RateLimiter rate, String prefix, long durationNanos) {
+        final long end = System.nanoTime() + durationNanos;
+        long sent = 0;
+        while (System.nanoTime() < end) {
+            rate.acquire();
+            final String transactionId = prefix + sent++;
+            final String body = eventTemplate.replace(UUID_PLACEHOLDER, UUID.randomUUID().toString());
+            pending.put(transactionId, System.nanoTime());
+            proxy.offer(ftMessage(transactionId, body));
+        }
+        return sent;
+    }
+
+    private void produced(String ftMessage) {
+        final int header = ftMessage.indexOf(TRANSACTION_ID_HEADER);
+        if (header < 0) {
+            return;
+        }
+        final int start = header + TRANSACTION_ID_HEADER.length();
+        int end = start;
+        while (end < ftMessage.length() && ftMessage.charAt(end) != '\r' && ftMessage.charAt(end) != '\n') {
+            end++;
+        }
+        final String transactionId = ftMessage.substring(start, end);
+        final Long offeredAt = pending.remove(transactionId);
+        if (offeredAt != null && transactionId.startsWith(MEASURED_PREFIX)) {
+            final long now = System.nanoTime();
+            latencies.update(now - offeredAt, TimeUnit.NANOSECONDS);
+            lastPublishedAt.accumulateAndGet(now, Math::max);
+        }
+    }
+
+    private long outstanding(String prefix) {
+        return pending.keySet().stream().filter(transactionId -> transactionId.startsWith(prefix)).count();
+    }
+
+    private static String eventTemplate(int imageSize) throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final ObjectNode image = (ObjectNode) objectMapper.readTree(new File(NATIVE_IMAGE));
+        final byte[] bytes = new byte[imageSize];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        image.put("uuid", UUID_PLACEHOLDER);
+        image.put("value", Base64.getEncoder().encodeToString(bytes));
+        return objectMapper.writeValueAsString(image);
+    }
+
+    private static String ftMessage(String transactionId, String body) {
+        return "FTMSG/1.0" + CRLF
+                + "Message-Id: " + UUID.randomUUID() + CRLF
+                + "Message-Timestamp: " + TIMESTAMP_FORMAT.format(Instant.now()) + CRLF
+                + "Message-Type: cms-content-published" + CRLF
+                + "Origin-System-Id: " + ORIGIN_SYSTEM_ID + CRLF
+                + "Content-Type: application/json" + CRLF
+                + TRANSACTION_ID_HEADER + transactionId + CRLF
+                + CRLF
+                + body;
+    }
+
+    private static double millis(double nanos) {
+        return nanos / 1e6;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            final MemoryUsage usage = pool.getPeakUsage();
+            if (pool.getType() == MemoryType.HEAP && usage != null) {
+                peak += usage.getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long[] gcTotals() {
+        final long[] totals = new long[2];
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(collector.getCollectionCount(), 0);
+            totals[1] += Math.max(collector.getCollectionTime(), 0);
+        }
+        return totals;
+    }
+}
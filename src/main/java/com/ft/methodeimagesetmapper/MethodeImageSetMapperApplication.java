@@ -1,5 +1,7 @@
 package com.ft.methodeimagesetmapper;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.health.HealthCheckRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ft.api.util.buildinfo.BuildInfoResource;
@@ -9,12 +11,46 @@ import com.ft.message.consumer.MessageListener;
 import com.ft.message.consumer.MessageQueueConsumerInitializer;
 import com.ft.messagequeueproducer.MessageProducer;
 import com.ft.messagequeueproducer.QueueProxyProducer;
+import com.ft.methodeimagesetmapper.configuration.BatchMappingConfiguration;
+import com.ft.methodeimagesetmapper.configuration.BatchingConfiguration;
+import com.ft.methodeimagesetmapper.configuration.CommitConfiguration;
+import com.ft.methodeimagesetmapper.configuration.ConcurrencyLimitConfiguration;
 import com.ft.methodeimagesetmapper.configuration.ConsumerConfiguration;
+import com.ft.methodeimagesetmapper.configuration.DeduplicationConfiguration;
+import com.ft.methodeimagesetmapper.configuration.LaneConfiguration;
 import com.ft.methodeimagesetmapper.configuration.MethodeImageSetMapperConfiguration;
 import com.ft.methodeimagesetmapper.configuration.ProducerConfiguration;
+import com.ft.methodeimagesetmapper.configuration.PublicationLatencyConfiguration;
+import com.ft.methodeimagesetmapper.configuration.RedeliveryConfiguration;
+import com.ft.methodeimagesetmapper.configuration.RequestExecutorConfiguration;
+import com.ft.methodeimagesetmapper.configuration.SlowMessagesConfiguration;
+import com.ft.methodeimagesetmapper.configuration.SpoolConfiguration;
+import com.ft.methodeimagesetmapper.configuration.WarmUpConfiguration;
+import com.ft.methodeimagesetmapper.configuration.WorkerPoolConfiguration;
+import com.ft.methodeimagesetmapper.diagnostics.SlowMessageRecorder;
+import com.ft.methodeimagesetmapper.diagnostics.SlowMessagesServlet;
 import com.ft.methodeimagesetmapper.health.CanConnectToMessageQueueProducerProxyHealthcheck;
+import com.ft.methodeimagesetmapper.health.HealthcheckConfiguration;
+import com.ft.methodeimagesetmapper.health.OffsetCommitHealthcheck;
+import com.ft.methodeimagesetmapper.health.PublicationLatencyHealthcheck;
+import com.ft.methodeimagesetmapper.health.WarmUpGoodToGoChecker;
+import com.ft.methodeimagesetmapper.messaging.BatchingMessageProducer;
+import com.ft.methodeimagesetmapper.messaging.CommitCoordinator;
+import com.ft.methodeimagesetmapper.messaging.ConcurrencyLimitingMessageProducer;
+import com.ft.methodeimagesetmapper.messaging.KeyedWorkerPool;
+import com.ft.methodeimagesetmapper.messaging.LaneClassifier;
+import com.ft.methodeimagesetmapper.messaging.MappingWarmUp;
 import com.ft.methodeimagesetmapper.messaging.MessageProducingContentMapper;
+import com.ft.methodeimagesetmapper.messaging.MessageRejectionFilter;
+import com.ft.methodeimagesetmapper.messaging.MessageSpool;
 import com.ft.methodeimagesetmapper.messaging.NativeCmsPublicationEventsListener;
+import com.ft.methodeimagesetmapper.messaging.OffsetCommitFilter;
+import com.ft.methodeimagesetmapper.messaging.PublicationProgress;
+import com.ft.methodeimagesetmapper.messaging.PublishedFingerprintCache;
+import com.ft.methodeimagesetmapper.messaging.RedeliveryFilteringListener;
+import com.ft.methodeimagesetmapper.messaging.SpoolReplayer;
+import com.ft.methodeimagesetmapper.messaging.StartAfterWarmUp;
+import com.ft.methodeimagesetmapper.resource.BoundedRequestExecutor;
 import com.ft.methodeimagesetmapper.resource.MethodeImageSetResource;
 import com.ft.methodeimagesetmapper.service.MethodeImageSetMapper;
 import com.ft.methodeimagesetmapper.validation.PublishingValidator;
@@ -29,9 +65,18 @@ import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 
 import javax.ws.rs.core.UriBuilder;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class MethodeImageSetMapperApplication extends Application<MethodeImageSetMapperConfiguration> {
 
+    private final WarmUpGoodToGoChecker goodToGoChecker = new WarmUpGoodToGoChecker(new DefaultGoodToGoChecker());
+    private MessageSpool spool;
+    private MappingWarmUp warmUp;
+    private long warmUpMaxDurationMillis;
+
     public static void main(String[] args) throws Exception {
         new MethodeImageSetMapperApplication().run(args);
     }
@@ -39,10 +84,11 @@ public class MethodeImageSetMapperApplication extends Application<MethodeImageSe
     @Override
     public void initialize(Bootstrap<MethodeImageSetMapperConfiguration> bootstrap) {
         bootstrap.addBundle(new AdvancedHealthCheckBundle());
-        bootstrap.addBundle(new GoodToGoConfiguredBundle(new DefaultGoodToGoChecker()));
+        bootstrap.addBundle(new GoodToGoConfiguredBundle(goodToGoChecker));
+        bootstrap.addCommand(new ReplayCommand());
     }
 
-    public void run(MethodeImageSetMapperConfiguration configuration, Environment environment) {
+    public void run(MethodeImageSetMapperConfiguration configuration, Environment environment) throws IOException {
         JerseyEnvironment jersey = environment.jersey();
         jersey.register(new VersionResource());
         jersey.register(new BuildInfoResource());
@@ -50,30 +96,170 @@ public class MethodeImageSetMapperApplication extends Application<MethodeImageSe
         final ConsumerConfiguration consumerConfig = configuration.getConsumerConfiguration();
         final ObjectMapper objectMapper = environment.getObjectMapper();
 
+        final SpoolConfiguration spoolConfig = configuration.getProducerConfiguration().getSpoolConfiguration();
+        if (spoolConfig.isEnabled()) {
+            spool = new MessageSpool(Paths.get(spoolConfig.getPath()), spoolConfig.getMaxSize().toBytes(), objectMapper);
+        }
         final MessageProducer producer = configureMessageProducer(environment, configuration.getProducerConfiguration());
 
         final UriBuilder contentUriBuilder = UriBuilder.fromUri(configuration.getContentUriPrefix()).path("{uuid}");
 
-        MethodeImageSetMapper imageSetMapper = new MethodeImageSetMapper();
-        MessageProducingContentMapper contentMapper = new MessageProducingContentMapper(
+        final DeduplicationConfiguration deduplicationConfig = configuration.getProducerConfiguration().getDeduplicationConfiguration();
+        final PublishedFingerprintCache publishedFingerprints = deduplicationConfig.getMaximumSize() > 0
+                ? new PublishedFingerprintCache(deduplicationConfig.getMaximumSize(),
+                        deduplicationConfig.getTtl().toMilliseconds(),
+                        deduplicationConfig.getForcePublishTransactionIdPrefix(), environment.metrics())
+                : PublishedFingerprintCache.disabled();
+
+        MethodeImageSetMapper imageSetMapper = new MethodeImageSetMapper(environment.metrics());
+        MessageProducingContentMapper contentMapper = new MessageProducingContentMapper.Builder(
                 imageSetMapper,
                 objectMapper, consumerConfig.getSystemCode(),
-                producer, contentUriBuilder);
+                producer, contentUriBuilder)
+                .withMetrics(environment.metrics())
+                .withPublishedFingerprints(publishedFingerprints)
+                .withSpool(spool)
+                .build();
+        if (spool != null) {
+            environment.lifecycle().manage(new SpoolReplayer(spool, contentMapper, spoolConfig.getReplayBatchSize(),
+                    spoolConfig.getReplayInterval().toMilliseconds(),
+                    spoolConfig.getMaxReplayBackoff().toMilliseconds(), spoolConfig.getMaxReplayAttempts(),
+                    Paths.get(spoolConfig.getDeadLetterPath()), objectMapper, environment.metrics()));
+        }
+        final WarmUpConfiguration warmUpConfig = configuration.getWarmUpConfiguration();
+        if (warmUpConfig.getIterations() > 0) {
+            final MetricRegistry warmUpMetrics = new MetricRegistry();
+            final MethodeImageSetMapper warmUpImageSetMapper = new MethodeImageSetMapper(warmUpMetrics);
+            warmUpMaxDurationMillis = warmUpConfig.getMaxDuration().toMilliseconds();
+            warmUp = new MappingWarmUp(warmUpImageSetMapper,
+                    new MessageProducingContentMapper.Builder(warmUpImageSetMapper, objectMapper,
+                            consumerConfig.getSystemCode(), producer, contentUriBuilder)
+                            .withMetrics(warmUpMetrics)
+                            .build(),
+                    warmUpConfig.getIterations(), warmUpConfig.getLatencySamples(), warmUpMaxDurationMillis,
+                    environment.metrics());
+            goodToGoChecker.setWarm(warmUp::isComplete);
+            environment.lifecycle().manage(warmUp);
+        }
         PublishingValidator publishingValidator = new PublishingValidator();
 
-        MessageListener listener = new NativeCmsPublicationEventsListener(
+        final WorkerPoolConfiguration workerPoolConfig = consumerConfig.getWorkerPoolConfiguration();
+        final LaneConfiguration laneConfig = workerPoolConfig.getLaneConfiguration();
+        final KeyedWorkerPool workerPool = new KeyedWorkerPool(workerPoolConfig.getWorkerCount(),
+                workerPoolConfig.getQueueCapacity(),
+                laneConfig.getBulkQueueCapacity() == null
+                        ? workerPoolConfig.getQueueCapacity()
+                        : laneConfig.getBulkQueueCapacity(),
+                laneConfig.getLiveWeight(), laneConfig.getBulkRate(),
+                workerPoolConfig.getShutdownTimeout().toMilliseconds(), environment.metrics());
+        // managed before the consumer, so that on shutdown the consumer stops first and the workers then drain
+        environment.lifecycle().manage(workerPool);
+
+        final CommitConfiguration commitConfig = consumerConfig.getCommitConfiguration();
+        final CommitCoordinator commitCoordinator = commitConfig.isEnabled()
+                ? new CommitCoordinator(commitConfig.getMaxBatchSize(), commitConfig.getMaxInterval().toMilliseconds(),
+                        environment.metrics())
+                : null;
+        if (commitCoordinator != null && commitConfig.getHealthcheckConfiguration() != null) {
+            environment.healthChecks().register("OffsetCommits",
+                    new OffsetCommitHealthcheck(commitConfig.getHealthcheckConfiguration(), commitCoordinator));
+        }
+
+        final SlowMessagesConfiguration slowMessagesConfig = consumerConfig.getSlowMessagesConfiguration();
+        final SlowMessageRecorder slowMessages = new SlowMessageRecorder(slowMessagesConfig.getCapacity(),
+                slowMessagesConfig.getWindow().toMilliseconds());
+        environment.admin().addServlet("slow-messages", new SlowMessagesServlet(slowMessages, objectMapper))
+                .addMapping("/slow-messages");
+
+        final PublicationProgress publicationProgress = new PublicationProgress();
+        environment.metrics().register(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "lag-millis"),
+                (Gauge<Long>) publicationProgress::getLagMillis);
+        MessageListener listener = new NativeCmsPublicationEventsListener.Builder(
                 consumerConfig.getSystemCode(),
                 contentMapper,
                 objectMapper,
-                publishingValidator);
+                publishingValidator)
+                .withWorkerPool(workerPool)
+                .withRetries(workerPoolConfig.getMaxAttempts(), workerPoolConfig.getRetryBackoff().toMilliseconds())
+                .withMetrics(environment.metrics())
+                .withLaneClassifier(new LaneClassifier(laneConfig.getBulkTransactionIdPrefixes(), laneConfig.getBulkHeaders(),
+                        laneConfig.getMaxLiveAge() == null ? 0 : laneConfig.getMaxLiveAge().toMilliseconds()))
+                .withCommitCoordinator(commitCoordinator)
+                .withSlowMessages(slowMessages)
+                .withPublicationProgress(publicationProgress)
+                .build();
+        final PublicationLatencyConfiguration publicationLatencyConfig = consumerConfig.getPublicationLatencyConfiguration();
+        if (publicationLatencyConfig.getHealthcheckConfiguration() != null) {
+            environment.healthChecks().register("PublicationLatency",
+                    new PublicationLatencyHealthcheck(publicationLatencyConfig.getHealthcheckConfiguration(),
+                            environment.metrics().histogram(MetricRegistry.name(NativeCmsPublicationEventsListener.class,
+                                    "event-age-at-publication")),
+                            publicationProgress,
+                            publicationLatencyConfig.getSlo().toMilliseconds()));
+        }
+        final RedeliveryConfiguration redeliveryConfig = consumerConfig.getRedeliveryConfiguration();
+        if (redeliveryConfig.getExpectedMessages() > 0) {
+            listener = new RedeliveryFilteringListener(listener, redeliveryConfig.getExpectedMessages(),
+                    redeliveryConfig.getWindow().toMilliseconds(), redeliveryConfig.getFalsePositiveRate(),
+                    environment.metrics());
+        }
 
-        jersey.register(new MethodeImageSetResource(imageSetMapper, contentMapper, publishingValidator));
+        final BatchMappingConfiguration batchMappingConfig = configuration.getBatchMappingConfiguration();
+        final ExecutorService batchExecutor = environment.lifecycle().executorService("batch-mapping-%d")
+                .minThreads(batchMappingConfig.getParallelism())
+                .maxThreads(batchMappingConfig.getParallelism())
+                .build();
+        final RequestExecutorConfiguration requestExecutorConfig = configuration.getRequestExecutorConfiguration();
+        final BoundedRequestExecutor requestExecutor = new BoundedRequestExecutor(
+                requestExecutorConfig.getMaxConcurrency(), requestExecutorConfig.getQueueCapacity(),
+                requestExecutorConfig.getRequestTimeout().toMilliseconds(),
+                requestExecutorConfig.getRetryAfter().toSeconds(), environment.metrics());
+        environment.lifecycle().manage(requestExecutor);
+        jersey.register(new MethodeImageSetResource(imageSetMapper, contentMapper, publishingValidator,
+                objectMapper, batchExecutor, batchMappingConfig.getChunkSize(), requestExecutor));
 
-        Client consumerClient = getConsumerClient(environment, consumerConfig);
+        Client consumerClient = getConsumerClient(environment, consumerConfig, commitCoordinator);
         startListener(environment, listener, consumerConfig, consumerClient);
     }
 
     protected MessageProducer configureMessageProducer(Environment environment, ProducerConfiguration config) {
+        final QueueProxyProducer.BuildNeeded queueProxyBuilder = queueProxyProducer(environment, config);
+        final QueueProxyProducer producer = queueProxyBuilder.build();
+
+        final HealthcheckConfiguration healthcheckConfig = config.getHealthcheckConfiguration();
+        final CanConnectToMessageQueueProducerProxyHealthcheck producerHealthcheck =
+                new CanConnectToMessageQueueProducerProxyHealthcheck.Builder(queueProxyBuilder.buildHealthcheck(),
+                        healthcheckConfig)
+                        .withMetrics(environment.metrics())
+                        .withSpool(spool, config.getSpoolConfiguration().getMaxAge().toMilliseconds())
+                        .withRefreshedOutcome(healthcheckConfig.getRefreshInterval() == null
+                                ? 0 : healthcheckConfig.getMaxAge().toMilliseconds())
+                        .withSends(environment.metrics().timer(MetricRegistry.name(MessageProducingContentMapper.class, "send")),
+                                environment.metrics().counter(MetricRegistry.name(MessageProducingContentMapper.class, "failed", "send")))
+                        .build();
+        if (healthcheckConfig.getRefreshInterval() != null) {
+            environment.lifecycle().scheduledExecutorService("producer-healthcheck-%d").build()
+                    .scheduleWithFixedDelay(producerHealthcheck::refresh, 0,
+                            healthcheckConfig.getRefreshInterval().toMilliseconds(), TimeUnit.MILLISECONDS);
+        }
+        environment.healthChecks().register("KafkaProxyProducer", producerHealthcheck);
+
+        final BatchingConfiguration batchingConfig = config.getBatchingConfiguration();
+        if (batchingConfig.getMaxBatchSize() <= 1) {
+            return limitConcurrency(environment, producer, config.getConcurrencyLimitConfiguration());
+        }
+        final BatchingMessageProducer batchingProducer = new BatchingMessageProducer(producer,
+                batchingConfig.getMaxBatchSize(), batchingConfig.getLinger().toMilliseconds(),
+                batchingConfig.getSendTimeout().toMilliseconds(), environment.metrics());
+        environment.lifecycle().manage(batchingProducer);
+        // the batcher makes one call to the kafka-proxy at a time, so the limit applies to the sends waiting on it
+        return limitConcurrency(environment, batchingProducer, config.getConcurrencyLimitConfiguration());
+    }
+
+    /**
+     * @return a builder of producers sending straight to the kafka-proxy, with no batching, limiting or health check
+     */
+    static QueueProxyProducer.BuildNeeded queueProxyProducer(Environment environment, ProducerConfiguration config) {
         JerseyClientConfiguration jerseyConfig = config.getJerseyClientConfiguration();
         jerseyConfig.setGzipEnabled(false);
         jerseyConfig.setGzipEnabledForRequests(false);
@@ -83,18 +269,21 @@ public class MethodeImageSetMapperApplication extends Application<MethodeImageSe
                 .usingDNS()
                 .named("producer-client")
                 .build();
+        producerClient.addFilter(new MessageRejectionFilter());
 
-        final QueueProxyProducer.BuildNeeded queueProxyBuilder = QueueProxyProducer.builder()
+        return QueueProxyProducer.builder()
                 .withJerseyClient(producerClient)
                 .withQueueProxyConfiguration(config.getMessageQueueProducerConfiguration());
+    }
 
-        final QueueProxyProducer producer = queueProxyBuilder.build();
-
-        environment.healthChecks().register("KafkaProxyProducer",
-                new CanConnectToMessageQueueProducerProxyHealthcheck(queueProxyBuilder.buildHealthcheck(),
-                        config.getHealthcheckConfiguration(), environment.metrics()));
-
-        return producer;
+    private MessageProducer limitConcurrency(Environment environment, MessageProducer producer,
+                                             ConcurrencyLimitConfiguration config) {
+        if (config.getMaxLimit() <= 0) {
+            return producer;
+        }
+        return new ConcurrencyLimitingMessageProducer(producer, config.getInitialLimit(), config.getMinLimit(),
+                config.getMaxLimit(), config.getRttTolerance(), config.getBackoffRatio(), config.getRttWindow(),
+                config.getMaxQueueWait().toMilliseconds(), environment.metrics());
     }
 
     protected void startListener(Environment environment, MessageListener listener, ConsumerConfiguration config, Client consumerClient) {
@@ -108,18 +297,27 @@ public class MethodeImageSetMapperApplication extends Application<MethodeImageSe
                         config.getHealthcheckConfiguration(), environment.metrics()
                 ));
 
-        environment.lifecycle().manage(messageQueueConsumerInitializer);
+        environment.lifecycle().manage(warmUp == null
+                ? messageQueueConsumerInitializer
+                : new StartAfterWarmUp(messageQueueConsumerInitializer, warmUp, warmUpMaxDurationMillis));
     }
 
-    private Client getConsumerClient(Environment environment, ConsumerConfiguration config) {
+    private Client getConsumerClient(Environment environment, ConsumerConfiguration config,
+                                     CommitCoordinator commitCoordinator) {
         JerseyClientConfiguration jerseyConfig = config.getJerseyClientConfiguration();
         jerseyConfig.setGzipEnabled(false);
         jerseyConfig.setGzipEnabledForRequests(false);
 
-        return ResilientClientBuilder.in(environment)
+        final Client consumerClient = ResilientClientBuilder.in(environment)
                 .using(jerseyConfig)
                 .usingDNS()
                 .named("consumer-client")
                 .build();
+        if (commitCoordinator != null) {
+            final CommitConfiguration commitConfig = config.getCommitConfiguration();
+            consumerClient.addFilter(new OffsetCommitFilter(commitCoordinator, consumerClient.getMessageBodyWorkers(),
+                    commitConfig.getMaxDelay().toMilliseconds(), commitConfig.getCompletionTimeout().toMilliseconds()));
+        }
+        return consumerClient;
     }
 }
@@ -0,0 +1,144 @@
+package com.ft.methodeimagesetmapper;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ft.messagequeueproducer.MessageProducer;
+import com.ft.methodeimagesetmapper.configuration.MethodeImageSetMapperConfiguration;
+import com.ft.methodeimagesetmapper.messaging.MessageProducingContentMapper;
+import com.ft.methodeimagesetmapper.replay.CorpusReplayer;
+import com.ft.methodeimagesetmapper.replay.ReplaySummary;
+import com.ft.methodeimagesetmapper.service.MethodeImageSetMapper;
+import com.ft.methodeimagesetmapper.validation.PublishingValidator;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.setup.Bootstrap;
+import io.dropwizard.setup.Environment;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+
+import javax.ws.rs.core.UriBuilder;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Maps a corpus of native Methode messages without going through Kafka, for backfills and bulk republishes:
+ * <pre>
+ * java -jar methode-image-set-mapper.jar replay --input events.jsonl.gz --output image-sets.jsonl config.yaml
+ * </pre>
+ * The input holds one native message body per line and is gunzipped when its name ends in {@code .gz}, as is the
+ * output. With {@code --publish} the image sets are also published through the configured kafka-proxy.
+ * <p>
+ * Only the mapper, and the kafka-proxy producer when publishing, are built: the service itself is not, so replaying
+ * neither consumes nor commits native messages. Metrics of the replay go to a registry of its own.
+ */
+public class ReplayCommand extends ConfiguredCommand<MethodeImageSetMapperConfiguration> {
+
+    private static final String INPUT = "input";
+    private static final String OUTPUT = "output";
+    private static final String PUBLISH = "publish";
+    private static final String PARALLELISM = "parallelism";
+    private static final String CHUNK_SIZE = "chunkSize";
+    private static final String TRANSACTION_ID = "transactionId";
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    public ReplayCommand() {
+        super("replay", "Maps a file of native Methode messages, one per line");
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+        subparser.addArgument("-i", "--input").dest(INPUT).required(true)
+                .help("native Methode messages, one per line (gzipped if it ends in .gz)");
+        subparser.addArgument("-o", "--output").dest(OUTPUT)
+                .help("where to write the mapped image sets, one per line (gzipped if it ends in .gz)");
+        subparser.addArgument("--publish").dest(PUBLISH).action(Arguments.storeTrue())
+                .help("publish the mapped image sets through the configured kafka-proxy");
+        subparser.addArgument("--parallelism").dest(PARALLELISM).type(Integer.class)
+                .setDefault(Runtime.getRuntime().availableProcessors())
+                .help("number of mapping threads");
+        subparser.addArgument("--chunk-size").dest(CHUNK_SIZE).type(Integer.class).setDefault(50)
+                .help("messages mapped, and published, together");
+        subparser.addArgument("--transaction-id").dest(TRANSACTION_ID)
+                .setDefault("tid_replay_" + System.currentTimeMillis())
+                .help("publish reference of the mapped image sets");
+    }
+
+    @Override
+    protected void run(Bootstrap<MethodeImageSetMapperConfiguration> bootstrap, Namespace namespace,
+                       MethodeImageSetMapperConfiguration configuration) throws Exception {
+        final ObjectMapper objectMapper = bootstrap.getObjectMapper();
+        final MetricRegistry metrics = new MetricRegistry();
+        final int parallelism = namespace.getInt(PARALLELISM);
+        final MethodeImageSetMapper imageSetMapper = new MethodeImageSetMapper(metrics);
+
+        // owns nothing but the producer's HTTP client, if any
+        final ContainerLifeCycle lifecycle = new ContainerLifeCycle();
+        MessageProducingContentMapper publisher = null;
+        if (namespace.getBoolean(PUBLISH)) {
+            final Environment environment = new Environment(bootstrap.getApplication().getName(), objectMapper,
+                    bootstrap.getValidatorFactory().getValidator(), metrics, bootstrap.getClassLoader());
+            environment.lifecycle().attach(lifecycle);
+            final MessageProducer producer = MethodeImageSetMapperApplication.queueProxyProducer(environment,
+                    configuration.getProducerConfiguration()).build();
+            publisher = new MessageProducingContentMapper.Builder(imageSetMapper, objectMapper,
+                    configuration.getConsumerConfiguration().getSystemCode(), producer,
+                    UriBuilder.fromUri(configuration.getContentUriPrefix()).path("{uuid}"))
+                    .withMetrics(metrics)
+                    .build();
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("replay-%d").setDaemon(true).build());
+        final CorpusReplayer replayer = new CorpusReplayer(imageSetMapper, new PublishingValidator(), objectMapper,
+                publisher, executor, parallelism, namespace.getInt(CHUNK_SIZE), namespace.getString(TRANSACTION_ID));
+
+        final String output = namespace.getString(OUTPUT);
+        lifecycle.start();
+        try (BufferedReader corpus = openCorpus(Paths.get(namespace.getString(INPUT)));
+             Writer imageSets = output == null ? null : createOutput(Paths.get(output))) {
+            final ReplaySummary summary = replayer.replay(corpus, imageSets);
+            summary.print(System.out);
+        } finally {
+            executor.shutdownNow();
+            lifecycle.stop();
+        }
+    }
+
+    private static BufferedReader openCorpus(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        if (isGzipped(path)) {
+            in = new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        return new BufferedReader(new InputStreamReader(in, UTF_8), BUFFER_SIZE);
+    }
+
+    private static Writer createOutput(Path path) throws IOException {
+        OutputStream out = Files.newOutputStream(path);
+        if (isGzipped(path)) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, UTF_8), BUFFER_SIZE);
+    }
+
+    private static boolean isGzipped(Path path) {
+        return path.getFileName().toString().endsWith(".gz");
+    }
+}
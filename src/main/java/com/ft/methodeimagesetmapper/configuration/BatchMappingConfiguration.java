@@ -0,0 +1,33 @@
+package com.ft.methodeimagesetmapper.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class BatchMappingConfiguration {
+
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int DEFAULT_CHUNK_SIZE = 50;
+
+    private final int parallelism;
+    private final int chunkSize;
+
+    public BatchMappingConfiguration(@JsonProperty("parallelism") Integer parallelism,
+                                     @JsonProperty("chunkSize") Integer chunkSize) {
+        this.parallelism = parallelism == null ? DEFAULT_PARALLELISM : parallelism;
+        this.chunkSize = chunkSize == null ? DEFAULT_CHUNK_SIZE : chunkSize;
+    }
+
+    /**
+     * Number of threads mapping the images of batch requests, shared by all batch requests.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Number of images of a batch request read, mapped and (for ingestion) sent together before their results are
+     * written out; bounds the memory held per request.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+}
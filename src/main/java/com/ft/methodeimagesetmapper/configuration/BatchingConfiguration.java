@@ -0,0 +1,43 @@
+package com.ft.methodeimagesetmapper.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class BatchingConfiguration {
+
+    private static final Duration DEFAULT_LINGER = Duration.milliseconds(20);
+    private static final Duration DEFAULT_SEND_TIMEOUT = Duration.seconds(30);
+
+    private final int maxBatchSize;
+    private final Duration linger;
+    private final Duration sendTimeout;
+
+    public BatchingConfiguration(@JsonProperty("maxBatchSize") int maxBatchSize,
+                                 @JsonProperty("linger") Duration linger,
+                                 @JsonProperty("sendTimeout") Duration sendTimeout) {
+        this.maxBatchSize = maxBatchSize;
+        this.linger = linger == null ? DEFAULT_LINGER : linger;
+        this.sendTimeout = sendTimeout == null ? DEFAULT_SEND_TIMEOUT : sendTimeout;
+    }
+
+    /**
+     * Most messages sent to the kafka-proxy in one call; one or less sends every message as it comes.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * How long the first message of a batch may wait for others to join it before the batch is sent.
+     */
+    public Duration getLinger() {
+        return linger;
+    }
+
+    /**
+     * Longest time a send waits for its batch to go out, and shutdown waits for pending messages to be flushed.
+     */
+    public Duration getSendTimeout() {
+        return sendTimeout;
+    }
+}
@@ -0,0 +1,78 @@
+package com.ft.methodeimagesetmapper.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.ft.methodeimagesetmapper.health.HealthcheckConfiguration;
+import io.dropwizard.util.Duration;
+
+public class CommitConfiguration {
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    private static final Duration DEFAULT_MAX_INTERVAL = Duration.seconds(1);
+    private static final Duration DEFAULT_MAX_DELAY = Duration.seconds(30);
+    private static final Duration DEFAULT_COMPLETION_TIMEOUT = Duration.seconds(30);
+
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final Duration maxInterval;
+    private final Duration maxDelay;
+    private final Duration completionTimeout;
+    private final HealthcheckConfiguration healthcheckConfig;
+
+    public CommitConfiguration(@JsonProperty("enabled") Boolean enabled,
+                               @JsonProperty("maxBatchSize") Integer maxBatchSize,
+                               @JsonProperty("maxInterval") Duration maxInterval,
+                               @JsonProperty("maxDelay") Duration maxDelay,
+                               @JsonProperty("completionTimeout") Duration completionTimeout,
+                               @JsonProperty("healthCheck") HealthcheckConfiguration healthcheckConfig) {
+        this.enabled = enabled != null && enabled;
+        this.maxBatchSize = maxBatchSize == null ? DEFAULT_MAX_BATCH_SIZE : maxBatchSize;
+        this.maxInterval = maxInterval == null ? DEFAULT_MAX_INTERVAL : maxInterval;
+        this.maxDelay = maxDelay == null ? DEFAULT_MAX_DELAY : maxDelay;
+        this.completionTimeout = completionTimeout == null ? DEFAULT_COMPLETION_TIMEOUT : completionTimeout;
+        this.healthcheckConfig = healthcheckConfig;
+    }
+
+    /**
+     * Whether offsets are only committed once the messages they cover have been processed; needs the message
+     * consumer's {@code autoCommit} to be off.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Number of processed messages after which their offsets are committed.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Longest time processed messages wait for their offsets to be committed.
+     */
+    public Duration getMaxInterval() {
+        return maxInterval;
+    }
+
+    /**
+     * Longest time commits are put off because messages are still being processed, before the consumer waits for
+     * them.
+     */
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * Longest time a commit waits for the messages it covers to be processed before it is left to the next one.
+     */
+    public Duration getCompletionTimeout() {
+        return completionTimeout;
+    }
+
+    /**
+     * The health check reporting failed messages holding back commits; not set for no health check.
+     */
+    public HealthcheckConfiguration getHealthcheckConfiguration() {
+        return healthcheckConfig;
+    }
+}
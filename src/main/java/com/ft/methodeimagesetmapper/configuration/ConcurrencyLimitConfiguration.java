@@ -0,0 +1,82 @@
+package com.ft.methodeimagesetmapper.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class ConcurrencyLimitConfiguration {
+
+    private static final int DEFAULT_INITIAL_LIMIT = 8;
+    private static final int DEFAULT_MIN_LIMIT = 1;
+    private static final double DEFAULT_RTT_TOLERANCE = 2.0;
+    private static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    private static final int DEFAULT_RTT_WINDOW = 1000;
+    private static final Duration DEFAULT_MAX_QUEUE_WAIT = Duration.seconds(1);
+
+    private final int maxLimit;
+    private final int initialLimit;
+    private final int minLimit;
+    private final double rttTolerance;
+    private final double backoffRatio;
+    private final int rttWindow;
+    private final Duration maxQueueWait;
+
+    public ConcurrencyLimitConfiguration(@JsonProperty("maxLimit") int maxLimit,
+                                         @JsonProperty("initialLimit") Integer initialLimit,
+                                         @JsonProperty("minLimit") Integer minLimit,
+                                         @JsonProperty("rttTolerance") Double rttTolerance,
+                                         @JsonProperty("backoffRatio") Double backoffRatio,
+                                         @JsonProperty("rttWindow") Integer rttWindow,
+                                         @JsonProperty("maxQueueWait") Duration maxQueueWait) {
+        this.maxLimit = maxLimit;
+        this.initialLimit = initialLimit == null ? DEFAULT_INITIAL_LIMIT : initialLimit;
+        this.minLimit = minLimit == null ? DEFAULT_MIN_LIMIT : minLimit;
+        this.rttTolerance = rttTolerance == null ? DEFAULT_RTT_TOLERANCE : rttTolerance;
+        this.backoffRatio = backoffRatio == null ? DEFAULT_BACKOFF_RATIO : backoffRatio;
+        this.rttWindow = rttWindow == null ? DEFAULT_RTT_WINDOW : rttWindow;
+        this.maxQueueWait = maxQueueWait == null ? DEFAULT_MAX_QUEUE_WAIT : maxQueueWait;
+    }
+
+    /**
+     * Most sends to the kafka-proxy in flight at once, however well it copes; zero or less for no limit.
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * Multiple of the fastest recent send time beyond which a send counts as a sign of overload.
+     */
+    public double getRttTolerance() {
+        return rttTolerance;
+    }
+
+    /**
+     * Factor the limit is multiplied by after a failed or overly slow send.
+     */
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    /**
+     * Number of sends after which the fastest send time is measured afresh, so the limiter follows lasting changes in
+     * kafka-proxy latency.
+     */
+    public int getRttWindow() {
+        return rttWindow;
+    }
+
+    /**
+     * Longest time a send waits for the number of sends in flight to drop below the limit before it is rejected.
+     */
+    public Duration getMaxQueueWait() {
+        return maxQueueWait;
+    }
+}
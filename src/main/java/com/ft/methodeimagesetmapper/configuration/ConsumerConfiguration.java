@@ -11,16 +11,41 @@ public class ConsumerConfiguration {
     private final MessageQueueConsumerConfiguration consumerConfig;
     private final HealthcheckConfiguration healthcheckConfig;
     private final String systemCode;
+    private final WorkerPoolConfiguration workerPoolConfig;
+    private final CommitConfiguration commitConfig;
+    private final RedeliveryConfiguration redeliveryConfig;
+    private final SlowMessagesConfiguration slowMessagesConfig;
+    private final PublicationLatencyConfiguration publicationLatencyConfig;
 
     public ConsumerConfiguration(@JsonProperty("jerseyClient") JerseyClientConfiguration jerseyConfig,
                                  @JsonProperty("messageConsumer") MessageQueueConsumerConfiguration consumerConfig,
                                  @JsonProperty("healthCheck") HealthcheckConfiguration healthCheckConfig,
-                                 @JsonProperty("systemCode") String systemCode) {
+                                 @JsonProperty("systemCode") String systemCode,
+                                 @JsonProperty("workers") WorkerPoolConfiguration workerPoolConfig,
+                                 @JsonProperty("commits") CommitConfiguration commitConfig,
+                                 @JsonProperty("redelivery") RedeliveryConfiguration redeliveryConfig,
+                                 @JsonProperty("slowMessages") SlowMessagesConfiguration slowMessagesConfig,
+                                 @JsonProperty("publicationLatency") PublicationLatencyConfiguration publicationLatencyConfig) {
 
         this.jerseyConfig = jerseyConfig;
         this.consumerConfig = consumerConfig;
         this.healthcheckConfig = healthCheckConfig;
         this.systemCode = systemCode;
+        this.workerPoolConfig = workerPoolConfig == null
+                ? new WorkerPoolConfiguration(0, null, null, null, null, null)
+                : workerPoolConfig;
+        this.commitConfig = commitConfig == null
+                ? new CommitConfiguration(false, null, null, null, null, null)
+                : commitConfig;
+        this.redeliveryConfig = redeliveryConfig == null
+                ? new RedeliveryConfiguration(0, null, null)
+                : redeliveryConfig;
+        this.slowMessagesConfig = slowMessagesConfig == null
+                ? new SlowMessagesConfiguration(null, null)
+                : slowMessagesConfig;
+        this.publicationLatencyConfig = publicationLatencyConfig == null
+                ? new PublicationLatencyConfiguration(null, null)
+                : publicationLatencyConfig;
     }
 
     public JerseyClientConfiguration getJerseyClientConfiguration() {
@@ -38,4 +63,24 @@ public class ConsumerConfiguration {
     public String getSystemCode() {
         return systemCode;
     }
+
+    public WorkerPoolConfiguration getWorkerPoolConfiguration() {
+        return workerPoolConfig;
+    }
+
+    public CommitConfiguration getCommitConfiguration() {
+        return commitConfig;
+    }
+
+    public RedeliveryConfiguration getRedeliveryConfiguration() {
+        return redeliveryConfig;
+    }
+
+    public SlowMessagesConfiguration getSlowMessagesConfiguration() {
+        return slowMessagesConfig;
+    }
+
+    public PublicationLatencyConfiguration getPublicationLatencyConfiguration() {
+        return publicationLatencyConfig;
+    }
 }
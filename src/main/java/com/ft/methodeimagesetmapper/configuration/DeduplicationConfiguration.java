@@ -0,0 +1,45 @@
+package com.ft.methodeimagesetmapper.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class DeduplicationConfiguration {
+
+    private static final Duration DEFAULT_TTL = Duration.hours(1);
+    private static final String DEFAULT_FORCE_PUBLISH_PREFIX = "republish_";
+
+    private final long maximumSize;
+    private final Duration ttl;
+    private final String forcePublishTransactionIdPrefix;
+
+    public DeduplicationConfiguration(@JsonProperty("maximumSize") long maximumSize,
+                                      @JsonProperty("ttl") Duration ttl,
+                                      @JsonProperty("forcePublishTransactionIdPrefix") String forcePublishTransactionIdPrefix) {
+        this.maximumSize = maximumSize;
+        this.ttl = ttl == null ? DEFAULT_TTL : ttl;
+        this.forcePublishTransactionIdPrefix = forcePublishTransactionIdPrefix == null
+                ? DEFAULT_FORCE_PUBLISH_PREFIX
+                : forcePublishTransactionIdPrefix;
+    }
+
+    /**
+     * Number of image sets whose last published input is remembered; zero or less publishes every event.
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * How long a published input is remembered, after which the next identical event is published again.
+     */
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Events whose transaction id starts with this prefix are always published.
+     */
+    public String getForcePublishTransactionIdPrefix() {
+        return forcePublishTransactionIdPrefix;
+    }
+}
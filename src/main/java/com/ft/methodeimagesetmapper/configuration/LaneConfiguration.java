@@ -0,0 +1,80 @@
+package com.ft.methodeimagesetmapper.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class LaneConfiguration {
+
+    private static final int DEFAULT_LIVE_WEIGHT = 4;
+
+    private final List<String> bulkTransactionIdPrefixes;
+    private final Map<String, String> bulkHeaders;
+    private final Duration maxLiveAge;
+    private final int liveWeight;
+    private final Integer bulkQueueCapacity;
+    private final double bulkRate;
+
+    public LaneConfiguration(@JsonProperty("bulkTransactionIdPrefixes") List<String> bulkTransactionIdPrefixes,
+                             @JsonProperty("bulkHeaders") Map<String, String> bulkHeaders,
+                             @JsonProperty("maxLiveAge") Duration maxLiveAge,
+                             @JsonProperty("liveWeight") Integer liveWeight,
+                             @JsonProperty("bulkQueueCapacity") Integer bulkQueueCapacity,
+                             @JsonProperty("bulkRate") Double bulkRate) {
+        this.bulkTransactionIdPrefixes = bulkTransactionIdPrefixes == null
+                ? Collections.emptyList()
+                : bulkTransactionIdPrefixes;
+        this.bulkHeaders = bulkHeaders == null ? Collections.emptyMap() : bulkHeaders;
+        this.maxLiveAge = maxLiveAge;
+        this.liveWeight = liveWeight == null ? DEFAULT_LIVE_WEIGHT : liveWeight;
+        this.bulkQueueCapacity = bulkQueueCapacity;
+        this.bulkRate = bulkRate == null ? 0 : bulkRate;
+    }
+
+    /**
+     * Transaction id prefixes of bulk republishes; none by default.
+     */
+    public List<String> getBulkTransactionIdPrefixes() {
+        return bulkTransactionIdPrefixes;
+    }
+
+    /**
+     * Message headers, and their values, that mark bulk republishes.
+     */
+    public Map<String, String> getBulkHeaders() {
+        return bulkHeaders;
+    }
+
+    /**
+     * Images last modified longer ago than this are bulk republishes; not set to never classify by age.
+     */
+    public Duration getMaxLiveAge() {
+        return maxLiveAge;
+    }
+
+    /**
+     * Live messages processed for every bulk one while both are waiting.
+     */
+    public int getLiveWeight() {
+        return liveWeight;
+    }
+
+    /**
+     * Number of bulk messages each worker may have waiting; not set for the same as live messages. Once a worker's
+     * bulk queue is full, the consumer waits for room before reading further messages, live ones included.
+     */
+    public Integer getBulkQueueCapacity() {
+        return bulkQueueCapacity;
+    }
+
+    /**
+     * Bulk messages processed per second across all workers; zero or less for no limit. A limit fills the bulk queues
+     * sooner during a republish, and then holds up the consumer.
+     */
+    public double getBulkRate() {
+        return bulkRate;
+    }
+}
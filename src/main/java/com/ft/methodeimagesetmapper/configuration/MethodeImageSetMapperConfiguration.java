@@ -13,6 +13,9 @@ public class MethodeImageSetMapperConfiguration extends Configuration implements
     private final ConsumerConfiguration consumer;
     private final ProducerConfiguration producer;
     private final String contentUriPrefix;
+    private final BatchMappingConfiguration batchMapping;
+    private final RequestExecutorConfiguration requestExecutor;
+    private final WarmUpConfiguration warmUp;
 
     @JsonProperty
     private AppInfo appInfo = new AppInfo();
@@ -21,10 +24,18 @@ public class MethodeImageSetMapperConfiguration extends Configuration implements
 
     public MethodeImageSetMapperConfiguration(@JsonProperty("consumer") ConsumerConfiguration consumer,
                                               @JsonProperty("producer") ProducerConfiguration producer,
-                                              @JsonProperty("contentUriPrefix") String contentUriPrefix) {
+                                              @JsonProperty("contentUriPrefix") String contentUriPrefix,
+                                              @JsonProperty("batchMapping") BatchMappingConfiguration batchMapping,
+                                              @JsonProperty("requestExecutor") RequestExecutorConfiguration requestExecutor,
+                                              @JsonProperty("warmUp") WarmUpConfiguration warmUp) {
         this.consumer = consumer;
         this.producer = producer;
         this.contentUriPrefix = contentUriPrefix;
+        this.batchMapping = batchMapping == null ? new BatchMappingConfiguration(null, null) : batchMapping;
+        this.requestExecutor = requestExecutor == null
+                ? new RequestExecutorConfiguration(null, null, null, null)
+                : requestExecutor;
+        this.warmUp = warmUp == null ? new WarmUpConfiguration(null, null, null) : warmUp;
     }
 
     public ConsumerConfiguration getConsumerConfiguration() {
@@ -39,6 +50,18 @@ public class MethodeImageSetMapperConfiguration extends Configuration implements
         return contentUriPrefix;
     }
 
+    public BatchMappingConfiguration getBatchMappingConfiguration() {
+        return batchMapping;
+    }
+
+    public RequestExecutorConfiguration getRequestExecutorConfiguration() {
+        return requestExecutor;
+    }
+
+    public WarmUpConfiguration getWarmUpConfiguration() {
+        return warmUp;
+    }
+
     @Override
     public AppInfo getAppInfo() {
         return appInfo;
@@ -10,14 +10,34 @@ public class ProducerConfiguration {
     private final JerseyClientConfiguration jerseyConfig;
     private final QueueProxyConfiguration producerConfig;
     private final HealthcheckConfiguration healthcheckConfig;
+    private final BatchingConfiguration batchingConfig;
+    private final DeduplicationConfiguration deduplicationConfig;
+    private final SpoolConfiguration spoolConfig;
+    private final ConcurrencyLimitConfiguration concurrencyLimitConfig;
 
     public ProducerConfiguration(@JsonProperty("jerseyClient") JerseyClientConfiguration jerseyConfig,
                                  @JsonProperty("messageProducer") QueueProxyConfiguration producerConfig,
-                                 @JsonProperty("healthCheck") HealthcheckConfiguration healthcheckConfig) {
+                                 @JsonProperty("healthCheck") HealthcheckConfiguration healthcheckConfig,
+                                 @JsonProperty("batching") BatchingConfiguration batchingConfig,
+                                 @JsonProperty("deduplication") DeduplicationConfiguration deduplicationConfig,
+                                 @JsonProperty("spool") SpoolConfiguration spoolConfig,
+                                 @JsonProperty("concurrencyLimit") ConcurrencyLimitConfiguration concurrencyLimitConfig) {
 
         this.jerseyConfig = jerseyConfig;
         this.producerConfig = producerConfig;
         this.healthcheckConfig = healthcheckConfig;
+        this.batchingConfig = batchingConfig == null
+                ? new BatchingConfiguration(1, null, null)
+                : batchingConfig;
+        this.deduplicationConfig = deduplicationConfig == null
+                ? new DeduplicationConfiguration(0, null, null)
+                : deduplicationConfig;
+        this.spoolConfig = spoolConfig == null
+                ? new SpoolConfiguration(null, null, null, null, null, null, null)
+                : spoolConfig;
+        this.concurrencyLimitConfig = concurrencyLimitConfig == null
+                ? new ConcurrencyLimitConfiguration(0, null, null, null, null, null, null)
+                : concurrencyLimitConfig;
     }
 
     public JerseyClientConfiguration getJerseyClientConfiguration() {
@@ -31,4 +51,20 @@ public class ProducerConfiguration {
     public HealthcheckConfiguration getHealthcheckConfiguration() {
         return healthcheckConfig;
     }
+
+    public BatchingConfiguration getBatchingConfiguration() {
+        return batchingConfig;
+    }
+
+    public DeduplicationConfiguration getDeduplicationConfiguration() {
+        return deduplicationConfig;
+    }
+
+    public SpoolConfiguration getSpoolConfiguration() {
+        return spoolConfig;
+    }
+
+    public ConcurrencyLimitConfiguration getConcurrencyLimitConfiguration() {
+        return concurrencyLimitConfig;
+    }
 }
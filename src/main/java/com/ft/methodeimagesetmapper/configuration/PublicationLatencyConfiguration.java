@@ -0,0 +1,33 @@
+package com.ft.methodeimagesetmapper.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.ft.methodeimagesetmapper.health.HealthcheckConfiguration;
+import io.dropwizard.util.Duration;
+
+public class PublicationLatencyConfiguration {
+
+    private static final Duration DEFAULT_SLO = Duration.minutes(5);
+
+    private final Duration slo;
+    private final HealthcheckConfiguration healthcheckConfig;
+
+    public PublicationLatencyConfiguration(@JsonProperty("slo") Duration slo,
+                                           @JsonProperty("healthCheck") HealthcheckConfiguration healthcheckConfig) {
+        this.slo = slo == null ? DEFAULT_SLO : slo;
+        this.healthcheckConfig = healthcheckConfig;
+    }
+
+    /**
+     * Age of a native event by which its image set should have been published, in 99% of cases.
+     */
+    public Duration getSlo() {
+        return slo;
+    }
+
+    /**
+     * The health check reporting publication latency against the objective; not set for no health check.
+     */
+    public HealthcheckConfiguration getHealthcheckConfiguration() {
+        return healthcheckConfig;
+    }
+}
@@ -0,0 +1,44 @@
+package com.ft.methodeimagesetmapper.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class RedeliveryConfiguration {
+
+    private static final Duration DEFAULT_WINDOW = Duration.minutes(10);
+    private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.000001;
+
+    private final int expectedMessages;
+    private final Duration window;
+    private final double falsePositiveRate;
+
+    public RedeliveryConfiguration(@JsonProperty("expectedMessages") int expectedMessages,
+                                   @JsonProperty("window") Duration window,
+                                   @JsonProperty("falsePositiveRate") Double falsePositiveRate) {
+        this.expectedMessages = expectedMessages;
+        this.window = window == null ? DEFAULT_WINDOW : window;
+        this.falsePositiveRate = falsePositiveRate == null ? DEFAULT_FALSE_POSITIVE_RATE : falsePositiveRate;
+    }
+
+    /**
+     * Number of messages expected within a window, which sizes the filter; zero or less processes every delivery.
+     */
+    public int getExpectedMessages() {
+        return expectedMessages;
+    }
+
+    /**
+     * How long a message id is remembered at least; it is forgotten after at most twice as long.
+     */
+    public Duration getWindow() {
+        return window;
+    }
+
+    /**
+     * Chance of a new message being taken for a redelivery and dropped, while a window holds no more than the
+     * expected number of messages.
+     */
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+}
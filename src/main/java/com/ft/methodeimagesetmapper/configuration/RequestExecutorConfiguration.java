@@ -0,0 +1,55 @@
+package com.ft.methodeimagesetmapper.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class RequestExecutorConfiguration {
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 8;
+    private static final int DEFAULT_QUEUE_CAPACITY = 16;
+    private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.seconds(30);
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.seconds(5);
+
+    private final int maxConcurrency;
+    private final int queueCapacity;
+    private final Duration requestTimeout;
+    private final Duration retryAfter;
+
+    public RequestExecutorConfiguration(@JsonProperty("maxConcurrency") Integer maxConcurrency,
+                                        @JsonProperty("queueCapacity") Integer queueCapacity,
+                                        @JsonProperty("requestTimeout") Duration requestTimeout,
+                                        @JsonProperty("retryAfter") Duration retryAfter) {
+        this.maxConcurrency = maxConcurrency == null ? DEFAULT_MAX_CONCURRENCY : maxConcurrency;
+        this.queueCapacity = queueCapacity == null ? DEFAULT_QUEUE_CAPACITY : queueCapacity;
+        this.requestTimeout = requestTimeout == null ? DEFAULT_REQUEST_TIMEOUT : requestTimeout;
+        this.retryAfter = retryAfter == null ? DEFAULT_RETRY_AFTER : retryAfter;
+    }
+
+    /**
+     * Number of mapping requests processed at the same time.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Number of mapping requests allowed to wait for a free slot; any more are rejected with a 503.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * How long a request may wait and run before it is answered with a 504.
+     */
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Sent as {@code Retry-After} with rejected requests.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,34 @@
+package com.ft.methodeimagesetmapper.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class SlowMessagesConfiguration {
+
+    private static final int DEFAULT_CAPACITY = 20;
+    private static final Duration DEFAULT_WINDOW = Duration.minutes(15);
+
+    private final int capacity;
+    private final Duration window;
+
+    public SlowMessagesConfiguration(@JsonProperty("capacity") Integer capacity,
+                                     @JsonProperty("window") Duration window) {
+        this.capacity = capacity == null ? DEFAULT_CAPACITY : capacity;
+        this.window = window == null ? DEFAULT_WINDOW : window;
+    }
+
+    /**
+     * Number of slowest messages whose timings are kept for the admin {@code /slow-messages} endpoint; zero or less
+     * records none.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * How long the timings of a slow message are kept.
+     */
+    public Duration getWindow() {
+        return window;
+    }
+}
@@ -0,0 +1,102 @@
+package com.ft.methodeimagesetmapper.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+
+public class SpoolConfiguration {
+
+    private static final Size DEFAULT_MAX_SIZE = Size.megabytes(256);
+    private static final int DEFAULT_REPLAY_BATCH_SIZE = 50;
+    private static final Duration DEFAULT_REPLAY_INTERVAL = Duration.seconds(1);
+    private static final Duration DEFAULT_MAX_REPLAY_BACKOFF = Duration.minutes(1);
+    private static final int DEFAULT_MAX_REPLAY_ATTEMPTS = 10;
+    private static final String DEAD_LETTER_SUFFIX = ".dead-letter";
+    private static final Duration DEFAULT_MAX_AGE = Duration.minutes(5);
+
+    private final String path;
+    private final Size maxSize;
+    private final int replayBatchSize;
+    private final Duration replayInterval;
+    private final Duration maxReplayBackoff;
+    private final int maxReplayAttempts;
+    private final Duration maxAge;
+
+    public SpoolConfiguration(@JsonProperty("path") String path,
+                              @JsonProperty("maxSize") Size maxSize,
+                              @JsonProperty("replayBatchSize") Integer replayBatchSize,
+                              @JsonProperty("replayInterval") Duration replayInterval,
+                              @JsonProperty("maxReplayBackoff") Duration maxReplayBackoff,
+                              @JsonProperty("maxReplayAttempts") Integer maxReplayAttempts,
+                              @JsonProperty("maxAge") Duration maxAge) {
+        this.path = path;
+        this.maxSize = maxSize == null ? DEFAULT_MAX_SIZE : maxSize;
+        this.replayBatchSize = replayBatchSize == null ? DEFAULT_REPLAY_BATCH_SIZE : replayBatchSize;
+        this.replayInterval = replayInterval == null ? DEFAULT_REPLAY_INTERVAL : replayInterval;
+        this.maxReplayBackoff = maxReplayBackoff == null ? DEFAULT_MAX_REPLAY_BACKOFF : maxReplayBackoff;
+        this.maxReplayAttempts = maxReplayAttempts == null ? DEFAULT_MAX_REPLAY_ATTEMPTS : maxReplayAttempts;
+        this.maxAge = maxAge == null ? DEFAULT_MAX_AGE : maxAge;
+    }
+
+    /**
+     * Spool file for messages that could not be sent to the kafka-proxy; without it, send failures fail the message.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isEnabled() {
+        return path != null && !path.isEmpty();
+    }
+
+    /**
+     * File that spooled messages which keep failing to replay are moved to, one JSON object per line.
+     */
+    public String getDeadLetterPath() {
+        return path + DEAD_LETTER_SUFFIX;
+    }
+
+    /**
+     * Size of the spool file; once it is full, send failures fail the message again.
+     */
+    public Size getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Most spooled messages sent to the kafka-proxy in one call when replaying.
+     */
+    public int getReplayBatchSize() {
+        return replayBatchSize;
+    }
+
+    /**
+     * How often the spool is checked for messages to replay, and the first wait after a failed replay.
+     */
+    public Duration getReplayInterval() {
+        return replayInterval;
+    }
+
+    /**
+     * Longest wait between replay attempts while the kafka-proxy keeps failing.
+     */
+    public Duration getMaxReplayBackoff() {
+        return maxReplayBackoff;
+    }
+
+    /**
+     * Number of times in a row the kafka-proxy may reject a spooled message with a client error before it is moved to
+     * the dead letter file, so that it does not hold up the messages behind it. Messages that fail to replay for any
+     * other reason, such as the kafka-proxy being unreachable or failing, are never moved.
+     */
+    public int getMaxReplayAttempts() {
+        return maxReplayAttempts;
+    }
+
+    /**
+     * Age of the oldest spooled message beyond which the producer health check fails.
+     */
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+}
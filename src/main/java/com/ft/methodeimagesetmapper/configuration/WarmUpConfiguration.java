@@ -0,0 +1,45 @@
+package com.ft.methodeimagesetmapper.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class WarmUpConfiguration {
+
+    private static final int DEFAULT_ITERATIONS = 0;
+    private static final int DEFAULT_LATENCY_SAMPLES = 100;
+    private static final Duration DEFAULT_MAX_DURATION = Duration.minutes(2);
+
+    private final int iterations;
+    private final int latencySamples;
+    private final Duration maxDuration;
+
+    public WarmUpConfiguration(@JsonProperty("iterations") Integer iterations,
+                               @JsonProperty("latencySamples") Integer latencySamples,
+                               @JsonProperty("maxDuration") Duration maxDuration) {
+        this.iterations = iterations == null ? DEFAULT_ITERATIONS : iterations;
+        this.latencySamples = latencySamples == null ? DEFAULT_LATENCY_SAMPLES : latencySamples;
+        this.maxDuration = maxDuration == null ? DEFAULT_MAX_DURATION : maxDuration;
+    }
+
+    /**
+     * Number of synthetic images mapped and serialized before the service reports good to go; zero or less, the
+     * default, to skip warming up.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Number of synthetic images timed once warm, as a sample of the warmed up mapping latency.
+     */
+    public int getLatencySamples() {
+        return latencySamples;
+    }
+
+    /**
+     * Longest time spent warming up; the service reports good to go once it has passed, warm or not.
+     */
+    public Duration getMaxDuration() {
+        return maxDuration;
+    }
+}
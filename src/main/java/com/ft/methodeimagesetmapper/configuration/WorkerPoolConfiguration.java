@@ -0,0 +1,72 @@
+package com.ft.methodeimagesetmapper.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+public class WorkerPoolConfiguration {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 100;
+    private static final Duration DEFAULT_SHUTDOWN_TIMEOUT = Duration.seconds(30);
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final Duration DEFAULT_RETRY_BACKOFF = Duration.seconds(1);
+
+    private final int workerCount;
+    private final int queueCapacity;
+    private final Duration shutdownTimeout;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final LaneConfiguration laneConfig;
+
+    public WorkerPoolConfiguration(@JsonProperty("workerCount") int workerCount,
+                                   @JsonProperty("queueCapacity") Integer queueCapacity,
+                                   @JsonProperty("shutdownTimeout") Duration shutdownTimeout,
+                                   @JsonProperty("maxAttempts") Integer maxAttempts,
+                                   @JsonProperty("retryBackoff") Duration retryBackoff,
+                                   @JsonProperty("lanes") LaneConfiguration laneConfig) {
+        this.workerCount = workerCount;
+        this.queueCapacity = queueCapacity == null ? DEFAULT_QUEUE_CAPACITY : queueCapacity;
+        this.shutdownTimeout = shutdownTimeout == null ? DEFAULT_SHUTDOWN_TIMEOUT : shutdownTimeout;
+        this.maxAttempts = maxAttempts == null ? DEFAULT_MAX_ATTEMPTS : maxAttempts;
+        this.retryBackoff = retryBackoff == null ? DEFAULT_RETRY_BACKOFF : retryBackoff;
+        this.laneConfig = laneConfig == null
+                ? new LaneConfiguration(null, null, null, null, null, null)
+                : laneConfig;
+    }
+
+    /**
+     * Number of mapping workers; zero or less maps each message on the consumer thread.
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Number of messages each worker may have waiting before the consumer thread is made to wait.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public Duration getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    /**
+     * Number of times a message is mapped and published before its failure holds back offset commits; failures the
+     * message itself causes are not retried.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Wait before the first retry, doubled for each one after it. The worker, and every key queued on it, waits too.
+     */
+    public Duration getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public LaneConfiguration getLaneConfiguration() {
+        return laneConfig;
+    }
+}
@@ -0,0 +1,125 @@
+package com.ft.methodeimagesetmapper.diagnostics;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long each stage of processing a native message took, in microseconds when serialized. Stages a message did not
+ * reach are zero. Filled in by the listener thread, then by the worker it hands the message to.
+ */
+@JsonPropertyOrder({"transactionId", "uuid", "receivedAt", "outcome", "messageBodySize", "imageSize", "totalMicros",
+        "deserializeMicros", "validateMicros", "uuidDeriveMicros", "queueWaitMicros", "mapAndPublishMicros"})
+public class MessageTimings {
+
+    private final String transactionId;
+    private final long receivedAt = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final int messageBodySize;
+    private String uuid;
+    private int imageSize;
+    private String outcome;
+    private long deserializeNanos;
+    private long validateNanos;
+    private long uuidDeriveNanos;
+    private long queueWaitNanos;
+    private long mapAndPublishNanos;
+    private long totalNanos;
+
+    public MessageTimings(String transactionId, int messageBodySize) {
+        this.transactionId = transactionId;
+        this.messageBodySize = messageBodySize;
+    }
+
+    public void deserialized(long nanos, int imageSize) {
+        this.deserializeNanos = nanos;
+        this.imageSize = imageSize;
+    }
+
+    public void validated(long nanos) {
+        this.validateNanos = nanos;
+    }
+
+    public void uuidDerived(long nanos, String uuid) {
+        this.uuidDeriveNanos = nanos;
+        this.uuid = uuid;
+    }
+
+    public void mappedAndPublished(long queueWaitNanos, long nanos) {
+        this.queueWaitNanos = queueWaitNanos;
+        this.mapAndPublishNanos = nanos;
+    }
+
+    /**
+     * Ends the record, with what became of the message.
+     */
+    public MessageTimings finished(String outcome) {
+        this.outcome = outcome;
+        this.totalNanos = System.nanoTime() - startNanos;
+        return this;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public Date getReceivedAt() {
+        return new Date(receivedAt);
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public int getMessageBodySize() {
+        return messageBodySize;
+    }
+
+    public int getImageSize() {
+        return imageSize;
+    }
+
+    public long getTotalMicros() {
+        return micros(totalNanos);
+    }
+
+    public long getDeserializeMicros() {
+        return micros(deserializeNanos);
+    }
+
+    public long getValidateMicros() {
+        return micros(validateNanos);
+    }
+
+    public long getUuidDeriveMicros() {
+        return micros(uuidDeriveNanos);
+    }
+
+    public long getQueueWaitMicros() {
+        return micros(queueWaitNanos);
+    }
+
+    public long getMapAndPublishMicros() {
+        return micros(mapAndPublishNanos);
+    }
+
+    @JsonIgnore
+    long getReceivedAtMillis() {
+        return receivedAt;
+    }
+
+    @JsonIgnore
+    long getTotalNanos() {
+        return totalNanos;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
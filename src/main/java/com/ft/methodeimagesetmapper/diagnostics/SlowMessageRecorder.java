@@ -0,0 +1,76 @@
+package com.ft.methodeimagesetmapper.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the {@code capacity} slowest messages processed within the last {@code windowMillis}, in a fixed array of
+ * slots updated by compare-and-set, so that recording never blocks. A finished message takes an empty or expired slot,
+ * or else the slot of the fastest message kept if it was slower; a message losing a race for a slot is simply not
+ * kept, which only matters if it was among the slowest.
+ */
+public class SlowMessageRecorder {
+
+    private static final SlowMessageRecorder DISABLED = new SlowMessageRecorder(0, 0);
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final AtomicReferenceArray<MessageTimings> slots;
+    private final long windowMillis;
+
+    public SlowMessageRecorder(int capacity, long windowMillis) {
+        this.slots = new AtomicReferenceArray<>(Math.max(capacity, 0));
+        this.windowMillis = windowMillis;
+    }
+
+    public static SlowMessageRecorder disabled() {
+        return DISABLED;
+    }
+
+    public void record(MessageTimings timings) {
+        if (slots.length() == 0) {
+            return;
+        }
+        final long expiredBefore = System.currentTimeMillis() - windowMillis;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int victim = -1;
+            MessageTimings victimTimings = null;
+            for (int i = 0; i < slots.length(); i++) {
+                final MessageTimings kept = slots.get(i);
+                if (kept == null || kept.getReceivedAtMillis() < expiredBefore) {
+                    victim = i;
+                    victimTimings = kept;
+                    break;
+                }
+                if (victimTimings == null || kept.getTotalNanos() < victimTimings.getTotalNanos()) {
+                    victim = i;
+                    victimTimings = kept;
+                }
+            }
+            final boolean free = victimTimings == null || victimTimings.getReceivedAtMillis() < expiredBefore;
+            if (!free && victimTimings.getTotalNanos() >= timings.getTotalNanos()) {
+                return;
+            }
+            if (slots.compareAndSet(victim, victimTimings, timings)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the slowest messages of the window, slowest first
+     */
+    public List<MessageTimings> getSlowest() {
+        final long expiredBefore = System.currentTimeMillis() - windowMillis;
+        final List<MessageTimings> slowest = new ArrayList<>(slots.length());
+        for (int i = 0; i < slots.length(); i++) {
+            final MessageTimings kept = slots.get(i);
+            if (kept != null && kept.getReceivedAtMillis() >= expiredBefore) {
+                slowest.add(kept);
+            }
+        }
+        slowest.sort(Comparator.comparingLong(MessageTimings::getTotalNanos).reversed());
+        return slowest;
+    }
+}
@@ -0,0 +1,31 @@
+package com.ft.methodeimagesetmapper.diagnostics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+
+/**
+ * Lists the slowest recently processed messages, slowest first, with their timings per stage.
+ */
+public class SlowMessagesServlet extends HttpServlet {
+
+    private final SlowMessageRecorder recorder;
+    private final ObjectMapper objectMapper;
+
+    public SlowMessagesServlet(SlowMessageRecorder recorder, ObjectMapper objectMapper) {
+        this.recorder = recorder;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON);
+        response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+        objectMapper.writeValue(response.getOutputStream(), recorder.getSlowest());
+    }
+}
@@ -0,0 +1,9 @@
+package com.ft.methodeimagesetmapper.exception;
+
+public class ProducerOverloadedException
+        extends RuntimeException {
+
+    public ProducerOverloadedException(String msg) {
+        super(msg);
+    }
+}
@@ -1,38 +1,47 @@
 package com.ft.methodeimagesetmapper.health;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.ft.messagequeueproducer.health.QueueProxyHealthcheck;
+import com.ft.methodeimagesetmapper.messaging.MessageSpool;
 import com.ft.platform.dropwizard.AdvancedHealthCheck;
 import com.ft.platform.dropwizard.AdvancedResult;
 
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 public class CanConnectToMessageQueueProducerProxyHealthcheck
         extends AdvancedHealthCheck {
 
     private final QueueProxyHealthcheck queueProxyHealthcheck;
     private final HealthcheckConfiguration healthcheckConfiguration;
-    private Timer timer;
+    private final MessageSpool spool;
+    private final long maxSpoolAgeMillis;
+    private final long maxAgeMillis;
+    private final Timer sends;
+    private final Counter sendFailures;
+    private final Timer timer;
+    private volatile CheckedOutcome lastOutcome;
+    private long lastSends;
+    private long lastSendFailures;
 
-    public CanConnectToMessageQueueProducerProxyHealthcheck(final QueueProxyHealthcheck queueProxyHealthcheck,
-                                                            final HealthcheckConfiguration healthcheckConfiguration,
-                                                            final MetricRegistry metrics) {
-
-        super(healthcheckConfiguration.getName());
-        this.queueProxyHealthcheck = queueProxyHealthcheck;
-        this.healthcheckConfiguration = healthcheckConfiguration;
-        if (metrics != null) {
-            timer = metrics.timer(MetricRegistry.name(CanConnectToMessageQueueProducerProxyHealthcheck.class, "checkAdvanced"));
-        } else {
-            timer = new Timer();
-        }
+    private CanConnectToMessageQueueProducerProxyHealthcheck(final Builder builder) {
+        super(builder.healthcheckConfiguration.getName());
+        this.queueProxyHealthcheck = builder.queueProxyHealthcheck;
+        this.healthcheckConfiguration = builder.healthcheckConfiguration;
+        this.spool = builder.spool;
+        this.maxSpoolAgeMillis = builder.maxSpoolAgeMillis;
+        this.maxAgeMillis = builder.maxAgeMillis;
+        this.sends = builder.sends;
+        this.sendFailures = builder.sendFailures;
+        this.timer = builder.metrics.timer(MetricRegistry.name(CanConnectToMessageQueueProducerProxyHealthcheck.class, "checkAdvanced"));
     }
 
     @Override
     protected AdvancedResult checkAdvanced() throws Exception {
-        try (Timer.Context t = timer.time()) {
-            Optional<QueueProxyHealthcheck.Unhealthy> health = queueProxyHealthcheck.check();
+        if (maxAgeMillis <= 0) {
+            final Optional<QueueProxyHealthcheck.Unhealthy> health = probe();
             if (health.isPresent()) {
                 final QueueProxyHealthcheck.Unhealthy unhealthy = health.get();
                 if (unhealthy.getThrowable() != null) {
@@ -41,8 +50,78 @@ public class CanConnectToMessageQueueProducerProxyHealthcheck
                     return AdvancedResult.error(this, unhealthy.getMessage());
                 }
             }
-            return AdvancedResult.healthy();
+            return checkSpool();
+        }
+        CheckedOutcome outcome = lastOutcome;
+        if (outcome == null) {
+            refresh();
+            outcome = lastOutcome;
+        }
+        final long age = System.currentTimeMillis() - outcome.checkedAt;
+        if (age > maxAgeMillis) {
+            return AdvancedResult.error(this, String.format("Last checked %ds ago, checks are no longer being refreshed",
+                    TimeUnit.MILLISECONDS.toSeconds(age)));
         }
+        if (outcome.error != null) {
+            return AdvancedResult.error(this, String.format("%s (checked %ds ago)", outcome.error,
+                    TimeUnit.MILLISECONDS.toSeconds(age)));
+        }
+        return checkSpool();
+    }
+
+    /**
+     * Checks the kafka-proxy and keeps the outcome for {@link #checkAdvanced()}. Sends that succeeded since the last
+     * refresh, with none failing, are taken as proof enough that the kafka-proxy can be reached; if only failures were
+     * seen, the check fails even when the kafka-proxy itself reports healthy. Every send counted by the sends timer
+     * and failures counter counts, whether it carries live traffic, a spool replay or a batch publication, as each
+     * one reached the kafka-proxy or failed to.
+     */
+    public synchronized void refresh() {
+        final long checkedAt = System.currentTimeMillis();
+        long newSuccesses = 0;
+        long newFailures = 0;
+        if (sends != null) {
+            final long sendCount = sends.getCount();
+            final long failures = sendFailures.getCount();
+            newFailures = failures - lastSendFailures;
+            newSuccesses = sendCount - lastSends - newFailures;
+            lastSends = sendCount;
+            lastSendFailures = failures;
+        }
+        String error;
+        if (newSuccesses > 0 && newFailures == 0) {
+            error = null;
+        } else {
+            try {
+                error = probe().map(unhealthy -> unhealthy.getThrowable() != null
+                        ? String.valueOf(unhealthy.getThrowable())
+                        : unhealthy.getMessage()).orElse(null);
+            } catch (RuntimeException e) {
+                error = String.valueOf(e);
+            }
+            if (error == null && newFailures > 0 && newSuccesses == 0) {
+                error = String.format("%d sends to the kafka-proxy failed since the last check", newFailures);
+            }
+        }
+        lastOutcome = new CheckedOutcome(error, checkedAt);
+    }
+
+    private Optional<QueueProxyHealthcheck.Unhealthy> probe() {
+        try (Timer.Context t = timer.time()) {
+            return queueProxyHealthcheck.check();
+        }
+    }
+
+    private AdvancedResult checkSpool() {
+        if (spool != null) {
+            final long oldest = spool.getOldestSpooledAt();
+            final long age = oldest == 0 ? 0 : System.currentTimeMillis() - oldest;
+            if (age > maxSpoolAgeMillis) {
+                return AdvancedResult.error(this, String.format("%d messages waiting in spool for %ds",
+                        spool.size(), TimeUnit.MILLISECONDS.toSeconds(age)));
+            }
+        }
+        return AdvancedResult.healthy();
     }
 
     @Override
@@ -64,4 +143,68 @@ public class CanConnectToMessageQueueProducerProxyHealthcheck
     protected String panicGuideUrl() {
         return healthcheckConfiguration.getPanicGuideUrl();
     }
+
+    public static class Builder {
+        private final QueueProxyHealthcheck queueProxyHealthcheck;
+        private final HealthcheckConfiguration healthcheckConfiguration;
+        private MetricRegistry metrics = new MetricRegistry();
+        private MessageSpool spool;
+        private long maxSpoolAgeMillis;
+        private long maxAgeMillis;
+        private Timer sends;
+        private Counter sendFailures;
+
+        public Builder(QueueProxyHealthcheck queueProxyHealthcheck, HealthcheckConfiguration healthcheckConfiguration) {
+            this.queueProxyHealthcheck = queueProxyHealthcheck;
+            this.healthcheckConfiguration = healthcheckConfiguration;
+        }
+
+        public Builder withMetrics(MetricRegistry metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Also reports unhealthy while messages have been waiting in the spool for longer than {@code maxSpoolAgeMillis}.
+         */
+        public Builder withSpool(MessageSpool spool, long maxSpoolAgeMillis) {
+            this.spool = spool;
+            this.maxSpoolAgeMillis = maxSpoolAgeMillis;
+            return this;
+        }
+
+        /**
+         * With a positive {@code maxAgeMillis}, reports the outcome of the last {@link #refresh()} instead of calling
+         * the kafka-proxy on every check, and reports unhealthy once that outcome is older than {@code maxAgeMillis}.
+         */
+        public Builder withRefreshedOutcome(long maxAgeMillis) {
+            this.maxAgeMillis = maxAgeMillis;
+            return this;
+        }
+
+        /**
+         * @param sends        timer of the sends to the kafka-proxy, failed ones included
+         * @param sendFailures counter of the sends that failed, which {@link #refresh()} weighs against the sends
+         */
+        public Builder withSends(Timer sends, Counter sendFailures) {
+            this.sends = sends;
+            this.sendFailures = sendFailures;
+            return this;
+        }
+
+        public CanConnectToMessageQueueProducerProxyHealthcheck build() {
+            return new CanConnectToMessageQueueProducerProxyHealthcheck(this);
+        }
+    }
+
+    private static class CheckedOutcome {
+
+        private final String error;
+        private final long checkedAt;
+
+        CheckedOutcome(String error, long checkedAt) {
+            this.error = error;
+            this.checkedAt = checkedAt;
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.ft.methodeimagesetmapper.health;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
 
 import javax.validation.constraints.NotNull;
 
@@ -26,6 +27,12 @@ public class HealthcheckConfiguration {
     @JsonProperty
     private String panicGuideUrl;
 
+    @JsonProperty
+    private Duration refreshInterval;
+
+    @JsonProperty
+    private Duration maxAge;
+
     public HealthcheckConfiguration() {
     }
 
@@ -57,4 +64,22 @@ public class HealthcheckConfiguration {
     public String getName() {
         return name;
     }
+
+    /**
+     * How often the check is refreshed in the background, its last result being served in between; not set to run
+     * the check on every request.
+     */
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * Age beyond which the last result is reported as stale and unhealthy; not set for three refresh intervals.
+     */
+    public Duration getMaxAge() {
+        if (maxAge == null && refreshInterval != null) {
+            return Duration.milliseconds(refreshInterval.toMilliseconds() * 3);
+        }
+        return maxAge;
+    }
 }
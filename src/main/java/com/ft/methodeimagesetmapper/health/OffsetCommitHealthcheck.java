@@ -0,0 +1,53 @@
+package com.ft.methodeimagesetmapper.health;
+
+import com.ft.methodeimagesetmapper.messaging.CommitCoordinator;
+import com.ft.platform.dropwizard.AdvancedHealthCheck;
+import com.ft.platform.dropwizard.AdvancedResult;
+
+/**
+ * Reports unhealthy while messages that failed to be processed hold back offset commits, which is until kafka-proxy
+ * delivers them again and they are processed.
+ */
+public class OffsetCommitHealthcheck
+        extends AdvancedHealthCheck {
+
+    private final HealthcheckConfiguration healthcheckConfiguration;
+    private final CommitCoordinator coordinator;
+
+    public OffsetCommitHealthcheck(final HealthcheckConfiguration healthcheckConfiguration,
+                                   final CommitCoordinator coordinator) {
+        super(healthcheckConfiguration.getName());
+        this.healthcheckConfiguration = healthcheckConfiguration;
+        this.coordinator = coordinator;
+    }
+
+    @Override
+    protected AdvancedResult checkAdvanced() throws Exception {
+        final int failed = coordinator.getFailed();
+        if (failed > 0) {
+            return AdvancedResult.error(this, String.format("%d messages failed and hold back offset commits, %d messages in flight",
+                    failed, coordinator.getInFlight()));
+        }
+        return AdvancedResult.healthy();
+    }
+
+    @Override
+    protected int severity() {
+        return healthcheckConfiguration.getSeverity();
+    }
+
+    @Override
+    protected String businessImpact() {
+        return healthcheckConfiguration.getBusinessImpact();
+    }
+
+    @Override
+    protected String technicalSummary() {
+        return healthcheckConfiguration.getTechnicalSummary();
+    }
+
+    @Override
+    protected String panicGuideUrl() {
+        return healthcheckConfiguration.getPanicGuideUrl();
+    }
+}
@@ -0,0 +1,69 @@
+package com.ft.methodeimagesetmapper.health;
+
+import com.codahale.metrics.Histogram;
+import com.ft.platform.dropwizard.AdvancedHealthCheck;
+import com.ft.methodeimagesetmapper.messaging.PublicationProgress;
+import com.ft.platform.dropwizard.AdvancedResult;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports unhealthy while the 99th percentile of the age of native events when their image set is published exceeds
+ * {@code sloMillis}, that is while publishing falls too far behind Methode. As the histogram only changes when image sets
+ * are published, the check also reports unhealthy once events have been waiting longer than {@code sloMillis} with
+ * nothing published.
+ */
+public class PublicationLatencyHealthcheck
+        extends AdvancedHealthCheck {
+
+    private final HealthcheckConfiguration healthcheckConfiguration;
+    private final Histogram eventAgesAtPublication;
+    private final PublicationProgress progress;
+    private final long sloMillis;
+
+    public PublicationLatencyHealthcheck(final HealthcheckConfiguration healthcheckConfiguration,
+                                         final Histogram eventAgesAtPublication,
+                                         final PublicationProgress progress,
+                                         final long sloMillis) {
+        super(healthcheckConfiguration.getName());
+        this.healthcheckConfiguration = healthcheckConfiguration;
+        this.eventAgesAtPublication = eventAgesAtPublication;
+        this.progress = progress;
+        this.sloMillis = sloMillis;
+    }
+
+    @Override
+    protected AdvancedResult checkAdvanced() throws Exception {
+        final long stalledMillis = progress.getStalledMillis();
+        if (stalledMillis > sloMillis) {
+            return AdvancedResult.error(this, String.format("No image set published for %ds while %d events are waiting, above the %ds objective",
+                    TimeUnit.MILLISECONDS.toSeconds(stalledMillis), progress.getWaiting(), TimeUnit.MILLISECONDS.toSeconds(sloMillis)));
+        }
+        final double p99 = eventAgesAtPublication.getSnapshot().get99thPercentile();
+        if (p99 > sloMillis) {
+            return AdvancedResult.error(this, String.format("99th percentile of event age at publication is %ds, above the %ds objective",
+                    TimeUnit.MILLISECONDS.toSeconds((long) p99), TimeUnit.MILLISECONDS.toSeconds(sloMillis)));
+        }
+        return AdvancedResult.healthy();
+    }
+
+    @Override
+    protected int severity() {
+        return healthcheckConfiguration.getSeverity();
+    }
+
+    @Override
+    protected String businessImpact() {
+        return healthcheckConfiguration.getBusinessImpact();
+    }
+
+    @Override
+    protected String technicalSummary() {
+        return healthcheckConfiguration.getTechnicalSummary();
+    }
+
+    @Override
+    protected String panicGuideUrl() {
+        return healthcheckConfiguration.getPanicGuideUrl();
+    }
+}
@@ -0,0 +1,38 @@
+package com.ft.methodeimagesetmapper.health;
+
+import com.ft.platform.dropwizard.GoodToGoChecker;
+import com.ft.platform.dropwizard.GoodToGoResult;
+import io.dropwizard.setup.Environment;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Reports not good to go while the service is warming up, and defers to the delegate checker afterwards.
+ */
+public class WarmUpGoodToGoChecker implements GoodToGoChecker {
+
+    private static final String WARMING_UP = "Warming up";
+
+    private final GoodToGoChecker delegate;
+    private volatile BooleanSupplier warm = () -> true;
+
+    public WarmUpGoodToGoChecker(GoodToGoChecker delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Holds back good to go until {@code warm} is true. The checker is created with the bundles, before whatever warms
+     * the service up, hence the setter.
+     */
+    public void setWarm(BooleanSupplier warm) {
+        this.warm = warm;
+    }
+
+    @Override
+    public GoodToGoResult runCheck(Environment environment) {
+        if (!warm.getAsBoolean()) {
+            return new GoodToGoResult(false, WARMING_UP);
+        }
+        return delegate.runCheck(environment);
+    }
+}
@@ -0,0 +1,236 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.ft.messagequeueproducer.MessageProducer;
+import com.ft.messaging.standards.message.v1.Message;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Collects messages from concurrent callers and sends them to the delegate producer in batches of up to
+ * {@code maxBatchSize}, waiting at most {@code lingerMillis} after the first message of a batch for others to join.
+ * <p>
+ * {@link #publish(Message)} returns a future completed when the batch holding the message has been sent (or has
+ * failed); {@link #send(List)} keeps the blocking contract of {@link MessageProducer} on top of it, waiting at most
+ * {@code sendTimeoutMillis}. When that wait times out, the messages not yet handed to the delegate are withdrawn so
+ * that they are never sent, and only those already being sent may still be published. Messages still pending on
+ * {@link #stop()} are flushed before it returns, unless that takes longer than {@code sendTimeoutMillis}, in which
+ * case the messages left are failed.
+ */
+public class BatchingMessageProducer implements MessageProducer, Managed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchingMessageProducer.class);
+    private static final long POLL_MILLIS = 100;
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS);
+
+    private final MessageProducer delegate;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final long sendTimeoutMillis;
+    private final BlockingQueue<PendingMessage> pending;
+    private final Histogram batchSizes;
+    private final Histogram lingerTimes;
+    private final Timer flushes;
+    private final Thread flusher;
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private volatile boolean running;
+
+    public BatchingMessageProducer(MessageProducer delegate, int maxBatchSize, long lingerMillis,
+                                   long sendTimeoutMillis, MetricRegistry metrics) {
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        this.pending = new LinkedBlockingQueue<>(maxBatchSize * 10);
+        this.batchSizes = metrics.histogram(MetricRegistry.name(BatchingMessageProducer.class, "batch-size"));
+        this.lingerTimes = metrics.histogram(MetricRegistry.name(BatchingMessageProducer.class, "linger-millis"));
+        this.flushes = metrics.timer(MetricRegistry.name(BatchingMessageProducer.class, "flush"));
+        this.flusher = new Thread(this::flushContinuously, "producer-batcher");
+        this.flusher.setDaemon(true);
+    }
+
+    @Override
+    public void send(List<Message> messages) {
+        final List<PendingMessage> enqueued = new ArrayList<>(messages.size());
+        final List<CompletableFuture<Void>> results = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            final PendingMessage pendingMessage = enqueue(message);
+            enqueued.add(pendingMessage);
+            results.add(pendingMessage.result);
+        }
+        try {
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()]))
+                    .get(sendTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            int withdrawn = 0;
+            for (PendingMessage pendingMessage : enqueued) {
+                if (pendingMessage.withdraw()) {
+                    pending.remove(pendingMessage);
+                    withdrawn++;
+                }
+            }
+            throw new IllegalStateException(String.format("Messages not sent within %d ms, %d of %d withdrawn",
+                    sendTimeoutMillis, withdrawn, enqueued.size()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for messages to be sent", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+    }
+
+    public CompletableFuture<Void> publish(Message message) {
+        return enqueue(message).result;
+    }
+
+    private PendingMessage enqueue(Message message) {
+        final PendingMessage pendingMessage = new PendingMessage(message);
+        // held while enqueuing, so that stop() cannot let the flusher finish in between the check and the put
+        lifecycle.readLock().lock();
+        try {
+            if (!running) {
+                pendingMessage.result.completeExceptionally(new IllegalStateException("Producer is not running"));
+                return pendingMessage;
+            }
+            pending.put(pendingMessage);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pendingMessage.result.completeExceptionally(e);
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+        return pendingMessage;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        flusher.start();
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        lifecycle.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+        flusher.join(sendTimeoutMillis);
+        if (flusher.isAlive()) {
+            LOG.warn("Pending messages not flushed within {} ms.", sendTimeoutMillis);
+            flusher.interrupt();
+        }
+        final List<PendingMessage> leftovers = new ArrayList<>();
+        pending.drainTo(leftovers);
+        for (PendingMessage unsent : leftovers) {
+            unsent.result.completeExceptionally(new IllegalStateException("Producer stopped before message was sent"));
+        }
+    }
+
+    private void flushContinuously() {
+        final List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (running || !pending.isEmpty()) {
+                final PendingMessage first = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                final long deadline = first.enqueuedAt + lingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    // stops lingering once stopped, only taking the messages already pending
+                    final long wait = running ? Math.min(deadline - System.nanoTime(), POLL_NANOS) : 0;
+                    final PendingMessage next = pending.poll(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    } else if (!running || System.nanoTime() >= deadline) {
+                        break;
+                    }
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (PendingMessage unsent : batch) {
+                unsent.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void flush(List<PendingMessage> lingered) {
+        final List<PendingMessage> batch = new ArrayList<>(lingered.size());
+        for (PendingMessage pendingMessage : lingered) {
+            if (pendingMessage.claim()) {
+                batch.add(pendingMessage);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        final List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pendingMessage : batch) {
+            messages.add(pendingMessage.message);
+        }
+        batchSizes.update(batch.size());
+        lingerTimes.update(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batch.get(0).enqueuedAt));
+        try (Timer.Context t = flushes.time()) {
+            delegate.send(messages);
+            for (PendingMessage pendingMessage : batch) {
+                pendingMessage.result.complete(null);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Failed sending a batch of {} messages.", batch.size(), e);
+            for (PendingMessage pendingMessage : batch) {
+                pendingMessage.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static class PendingMessage {
+
+        private final Message message;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final AtomicBoolean taken = new AtomicBoolean();
+
+        PendingMessage(Message message) {
+            this.message = message;
+        }
+
+        /**
+         * @return whether the message is to be sent, as it has not been withdrawn
+         */
+        boolean claim() {
+            return taken.compareAndSet(false, true);
+        }
+
+        /**
+         * @return whether the message will not be sent, as it had not been claimed for a batch yet
+         */
+        boolean withdraw() {
+            if (!taken.compareAndSet(false, true)) {
+                return false;
+            }
+            result.completeExceptionally(new IllegalStateException("Message withdrawn before it was sent"));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks which consumed messages have finished processing, so that their offsets are only committed once they have
+ * been published, spooled or rejected for good.
+ * <p>
+ * Messages are numbered in the order they are consumed, and the watermark is the highest number up to which every
+ * message has completed, whatever order they completed in. A kafka-proxy commit cannot name offsets, it covers
+ * everything consumed so far, so one can only be made while the watermark is at the last consumed message. Commits
+ * are batched: one is only due once {@code maxBatchSize} messages are uncommitted, or {@code maxIntervalMillis} after
+ * the previous commit.
+ * <p>
+ * A message that {@linkplain Ticket#fail() failed} holds the watermark below it until it is consumed again, under the
+ * same message id, and completes; the consumer retries a message whose processing failed on its own thread. Until
+ * then no commit is made, so that if the service restarts instead, the kafka-proxy delivers the message again along
+ * with everything consumed after it. The {@code failed} gauge counts such messages.
+ */
+public class CommitCoordinator {
+
+    private final int maxBatchSize;
+    private final long maxIntervalMillis;
+    private final TreeSet<Long> completedAboveWatermark = new TreeSet<>();
+    private final TreeSet<Long> failed = new TreeSet<>();
+    private final Map<UUID, Long> failedByMessageId = new HashMap<>();
+    private final Timer commitWaits;
+    private final Timer commits;
+    private final Meter heldCommits;
+    private final Meter deferredCommits;
+    private long consumed;
+    private long watermark;
+    private long committed;
+    private long lastCommitAt = System.currentTimeMillis();
+
+    public CommitCoordinator(int maxBatchSize, long maxIntervalMillis, MetricRegistry metrics) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.commitWaits = metrics.timer(MetricRegistry.name(CommitCoordinator.class, "commit-wait"));
+        this.commits = metrics.timer(MetricRegistry.name(CommitCoordinator.class, "commit"));
+        this.heldCommits = metrics.meter(MetricRegistry.name(CommitCoordinator.class, "held-commits"));
+        this.deferredCommits = metrics.meter(MetricRegistry.name(CommitCoordinator.class, "deferred-commits"));
+        metrics.register(MetricRegistry.name(CommitCoordinator.class, "in-flight"), (Gauge<Long>) this::getInFlight);
+        metrics.register(MetricRegistry.name(CommitCoordinator.class, "uncommitted"), (Gauge<Long>) this::getUncommitted);
+        metrics.register(MetricRegistry.name(CommitCoordinator.class, "failed"), (Gauge<Integer>) this::getFailed);
+    }
+
+    /**
+     * Registers a consumed message whose processing will complete later.
+     *
+     * @return the ticket to complete once the message has been processed
+     */
+    public Ticket consumed() {
+        return consumed(null);
+    }
+
+    /**
+     * Registers a consumed message whose processing will complete later. A message consumed again after it failed
+     * takes the place of the failed one, so that completing it lets commits past it.
+     *
+     * @param messageId the id of the message, or {@code null} if it has none
+     * @return the ticket to complete once the message has been processed
+     */
+    public synchronized Ticket consumed(UUID messageId) {
+        final Long retried = messageId == null ? null : failedByMessageId.remove(messageId);
+        if (retried != null) {
+            failed.remove(retried);
+            return new Ticket(retried, messageId);
+        }
+        return new Ticket(++consumed, messageId);
+    }
+
+    /**
+     * @return whether enough messages are uncommitted, or enough time has passed, for a commit
+     */
+    public synchronized boolean isCommitDue() {
+        return consumed - committed >= maxBatchSize
+                || (consumed > committed && System.currentTimeMillis() - lastCommitAt >= maxIntervalMillis);
+    }
+
+    /**
+     * @return the number of messages a commit made now covers, or {@code -1} if some have not completed yet
+     */
+    public synchronized long committable() {
+        if (watermark < consumed) {
+            (failed.isEmpty() ? deferredCommits : heldCommits).mark();
+            return -1;
+        }
+        return consumed;
+    }
+
+    /**
+     * Waits until every message consumed so far has completed. This is called on the consumer thread, which cannot
+     * read further messages meanwhile, so it stalls consumption until all the messages in flight have drained from
+     * the workers, for up to {@code timeoutMillis}: it is only worth it once commits have been put off for long.
+     *
+     * @return the number of messages a commit made now covers, or {@code -1} if they did not complete in time or a
+     * message has failed
+     */
+    public long awaitCompletion(long timeoutMillis) throws InterruptedException {
+        try (Timer.Context waiting = commitWaits.time()) {
+            synchronized (this) {
+                final long target = consumed;
+                final long deadline = System.currentTimeMillis() + timeoutMillis;
+                while (watermark < target) {
+                    final long remaining = deadline - System.currentTimeMillis();
+                    if (!failed.isEmpty() || remaining <= 0) {
+                        heldCommits.mark();
+                        return -1;
+                    }
+                    wait(remaining);
+                }
+                return target;
+            }
+        }
+    }
+
+    /**
+     * Records a commit of the messages up to {@code upTo}, as returned by {@link #awaitCompletion(long)}.
+     */
+    public synchronized void committed(long upTo, long durationNanos) {
+        committed = Math.max(committed, upTo);
+        lastCommitAt = System.currentTimeMillis();
+        commits.update(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized long getInFlight() {
+        return consumed - watermark;
+    }
+
+    public synchronized long getUncommitted() {
+        return consumed - committed;
+    }
+
+    /**
+     * @return how long ago the last commit was made, or the coordinator created if none has been
+     */
+    public synchronized long getMillisSinceCommit() {
+        return System.currentTimeMillis() - lastCommitAt;
+    }
+
+    /**
+     * @return the number of failed messages holding back commits
+     */
+    public synchronized int getFailed() {
+        return failed.size();
+    }
+
+    private synchronized void completed(long sequence) {
+        if (sequence != watermark + 1) {
+            completedAboveWatermark.add(sequence);
+            return;
+        }
+        watermark = sequence;
+        while (!completedAboveWatermark.isEmpty() && completedAboveWatermark.first() == watermark + 1) {
+            watermark = completedAboveWatermark.pollFirst();
+        }
+        notifyAll();
+    }
+
+    public class Ticket {
+
+        private final long sequence;
+        private final UUID messageId;
+        private boolean completed;
+
+        private Ticket(long sequence, UUID messageId) {
+            this.sequence = sequence;
+            this.messageId = messageId;
+        }
+
+        /**
+         * Marks the message as processed, so that commits can cover it; completing or failing again has no effect.
+         */
+        public void complete() {
+            synchronized (CommitCoordinator.this) {
+                if (!completed) {
+                    completed = true;
+                    completed(sequence);
+                }
+            }
+        }
+
+        /**
+         * Marks the message as failed, so that no commit covers it until it is consumed again and completes;
+         * completing or failing again has no effect.
+         */
+        public void fail() {
+            synchronized (CommitCoordinator.this) {
+                if (!completed) {
+                    completed = true;
+                    failed.add(sequence);
+                    if (messageId != null) {
+                        failedByMessageId.put(messageId, sequence);
+                    }
+                    CommitCoordinator.this.notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.ft.messagequeueproducer.MessageProducer;
+import com.ft.messaging.standards.message.v1.Message;
+import com.ft.methodeimagesetmapper.exception.ProducerOverloadedException;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of sends in flight to the delegate producer, adapting the limit to how the kafka-proxy copes.
+ * <p>
+ * The limit follows AIMD on round trip times: it grows by one over every {@code limit} sends that complete while it
+ * is actually being used, and is multiplied by {@code backoffRatio} when a send fails or takes longer than
+ * {@code rttTolerance} times the fastest send of the current window of {@code rttWindow} sends. It backs off at most
+ * once per round trip: sends that were already in flight when it last backed off do not make it back off again, as
+ * they reflect the load from before. Sends beyond the limit
+ * wait up to {@code maxQueueWaitMillis} for one in flight to complete, and are then rejected with a
+ * {@link ProducerOverloadedException}.
+ */
+public class ConcurrencyLimitingMessageProducer implements MessageProducer {
+
+    private final MessageProducer delegate;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final double backoffRatio;
+    private final int rttWindow;
+    private final long maxQueueWaitMillis;
+    private final Timer rtts;
+    private final Meter rejected;
+    private double limit;
+    private int inFlight;
+    private long minRttNanos = Long.MAX_VALUE;
+    private long windowMinRttNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private long lastBackoffAt;
+
+    public ConcurrencyLimitingMessageProducer(MessageProducer delegate, int initialLimit, int minLimit, int maxLimit,
+                                              double rttTolerance, double backoffRatio, int rttWindow,
+                                              long maxQueueWaitMillis, MetricRegistry metrics) {
+        this.delegate = delegate;
+        this.minLimit = Math.max(minLimit, 1);
+        this.maxLimit = Math.max(maxLimit, this.minLimit);
+        this.rttTolerance = rttTolerance;
+        this.backoffRatio = backoffRatio;
+        this.rttWindow = rttWindow;
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+        this.limit = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+        this.lastBackoffAt = System.nanoTime();
+        this.rtts = metrics.timer(MetricRegistry.name(ConcurrencyLimitingMessageProducer.class, "rtt"));
+        this.rejected = metrics.meter(MetricRegistry.name(ConcurrencyLimitingMessageProducer.class, "rejected"));
+        metrics.register(MetricRegistry.name(ConcurrencyLimitingMessageProducer.class, "limit"), (Gauge<Integer>) this::getLimit);
+        metrics.register(MetricRegistry.name(ConcurrencyLimitingMessageProducer.class, "in-flight"), (Gauge<Integer>) this::getInFlight);
+        metrics.register(MetricRegistry.name(ConcurrencyLimitingMessageProducer.class, "min-rtt-millis"),
+                (Gauge<Long>) this::getMinRttMillis);
+    }
+
+    @Override
+    public void send(List<Message> messages) {
+        acquire();
+        final long start = System.nanoTime();
+        boolean sent = false;
+        try {
+            delegate.send(messages);
+            sent = true;
+        } finally {
+            release(start, System.nanoTime() - start, sent);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized long getMinRttMillis() {
+        return minRttNanos == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(minRttNanos);
+    }
+
+    private synchronized void acquire() {
+        final long deadline = System.currentTimeMillis() + maxQueueWaitMillis;
+        try {
+            while (inFlight >= (int) limit) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    rejected.mark();
+                    throw new ProducerOverloadedException(String.format(
+                            "%d sends to the kafka-proxy already in flight, the current limit", inFlight));
+                }
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProducerOverloadedException("Interrupted while waiting to send to the kafka-proxy");
+        }
+        inFlight++;
+    }
+
+    private synchronized void release(long startNanos, long rttNanos, boolean sent) {
+        final boolean limited = inFlight * 2 >= (int) limit;
+        inFlight--;
+        rtts.update(rttNanos, TimeUnit.NANOSECONDS);
+
+        if (sent) {
+            windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+            minRttNanos = Math.min(minRttNanos, rttNanos);
+            if (++windowSamples >= rttWindow) {
+                minRttNanos = windowMinRttNanos;
+                windowMinRttNanos = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+        }
+        if (!sent || rttNanos > minRttNanos * rttTolerance) {
+            if (startNanos - lastBackoffAt >= 0) {
+                limit = Math.max(limit * backoffRatio, minLimit);
+                lastBackoffAt = System.nanoTime();
+            }
+        } else if (limited) {
+            limit = Math.min(limit + 1 / limit, maxLimit);
+        }
+        notifyAll();
+    }
+}
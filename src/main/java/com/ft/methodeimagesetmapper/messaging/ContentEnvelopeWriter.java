@@ -0,0 +1,82 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ft.content.model.Content;
+
+import javax.ws.rs.core.UriBuilder;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static java.time.ZoneOffset.UTC;
+
+/**
+ * Writes the body of a {@code cms-content-published} message, {@code {"contentUri":...,"payload":...,"lastModified":...}},
+ * straight from the {@link Content} into a per-thread buffer, instead of serializing an intermediate map.
+ * <p>
+ * The content URI is made by splicing the uuid into a template built once from the content URI builder, which gives
+ * the same URI as building it for a uuid, since a uuid has nothing to encode. Anything else is still built by a copy of
+ * the builder. The output is the same as serializing the map with the given {@link ObjectMapper}, and instances are
+ * safe to share between threads.
+ */
+public class ContentEnvelopeWriter {
+
+    private static final DateTimeFormatter RFC3339_FMT =
+            DateTimeFormatter.ISO_OFFSET_DATE_TIME.withResolverStyle(ResolverStyle.STRICT);
+    private static final Pattern UUID_CHARACTERS = Pattern.compile("[0-9a-fA-F-]+");
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private static final ThreadLocal<CharArrayWriter> BUFFER = ThreadLocal.withInitial(() -> new CharArrayWriter(2048));
+
+    private final ObjectMapper objectMapper;
+    private final UriBuilder contentUriBuilder;
+    private final String contentUriPrefix;
+    private final String contentUriSuffix;
+
+    public ContentEnvelopeWriter(ObjectMapper objectMapper, UriBuilder contentUriBuilder) {
+        this.objectMapper = objectMapper;
+        this.contentUriBuilder = contentUriBuilder.clone();
+        final String marker = UUID.randomUUID().toString();
+        final String template = contentUriBuilder.clone().build(marker).toString();
+        final int markerAt = template.indexOf(marker);
+        this.contentUriPrefix = template.substring(0, markerAt);
+        this.contentUriSuffix = template.substring(markerAt + marker.length());
+    }
+
+    public String write(Content content) throws IOException {
+        final CharArrayWriter buffer = BUFFER.get();
+        buffer.reset();
+        try {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+                if (objectMapper.isEnabled(SerializationFeature.INDENT_OUTPUT)) {
+                    generator.useDefaultPrettyPrinter();
+                }
+                generator.writeStartObject();
+                generator.writeStringField("contentUri", contentUri(content.getUuid()));
+                generator.writeFieldName("payload");
+                objectMapper.writeValue(generator, content);
+                generator.writeStringField("lastModified",
+                        RFC3339_FMT.format(OffsetDateTime.ofInstant(content.getLastModified().toInstant(), UTC)));
+                generator.writeEndObject();
+            }
+            return buffer.toString();
+        } finally {
+            if (buffer.size() > MAX_RETAINED_BUFFER) {
+                BUFFER.remove();
+            }
+        }
+    }
+
+    String contentUri(String uuid) {
+        if (uuid != null && UUID_CHARACTERS.matcher(uuid).matches()) {
+            return contentUriPrefix + uuid + contentUriSuffix;
+        }
+        return contentUriBuilder.clone().build(uuid).toString();
+    }
+}
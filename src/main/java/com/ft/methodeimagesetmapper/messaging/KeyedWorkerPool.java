@@ -0,0 +1,314 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.RateLimiter;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs tasks on a fixed set of single-threaded workers, each with its own bounded queue. Tasks with the same key always
+ * go to the same worker, so they run one at a time and in submission order, while tasks for different keys run in
+ * parallel. A full queue makes the submitting thread wait, which pushes back on the consumer.
+ * <p>
+ * Each worker queues {@link Lane#LIVE live} and {@link Lane#BULK bulk} tasks separately. While both have tasks waiting
+ * it runs up to {@code liveWeight} live tasks for every bulk one, and bulk tasks across all workers are limited to
+ * {@code bulkRate} per second when that is positive. A task whose key still has tasks waiting in the other lane joins
+ * them there instead, so that tasks for the same key never overtake each other.
+ * <p>
+ * Lanes only reorder the tasks already queued. The submitting thread waits whenever the queue its task goes to is
+ * full, so a full bulk queue holds up the live tasks submitted after it just as much; the {@code <lane>.blocked}
+ * timer records these waits. Bulk queues therefore need room for the bursts a republish brings, all the more when
+ * {@code bulkRate} limits how fast they empty.
+ * <p>
+ * With no workers configured, tasks run on the submitting thread and their exceptions propagate to it. Otherwise a
+ * task that throws, errors included, is logged and counted as {@code failed}, and the worker moves on: tasks are not
+ * retried, so a task that needs its failure retried or handled, such as holding back offset commits, must do so
+ * itself. Once {@link #stop()} is called no task is accepted, and tasks still queued when it times out are dropped and
+ * counted as {@code dropped}.
+ */
+public class KeyedWorkerPool implements Managed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KeyedWorkerPool.class);
+    private static final long RATE_LIMITED_POLL_MILLIS = 10;
+
+    private final Worker[] workers;
+    private final int liveWeight;
+    private final RateLimiter bulkLimiter;
+    private final Map<Lane, Integer> queueCapacities = new EnumMap<>(Lane.class);
+    private final Map<Lane, Timer> queueWaits = new EnumMap<>(Lane.class);
+    private final Map<Lane, Timer> processing = new EnumMap<>(Lane.class);
+    private final Map<Lane, Timer> blocked = new EnumMap<>(Lane.class);
+    private final Map<Lane, Counter> failures = new EnumMap<>(Lane.class);
+    private final Counter dropped;
+    private final long shutdownTimeoutMillis;
+    private volatile boolean accepting = true;
+
+    public KeyedWorkerPool(int workerCount, int queueCapacity, long shutdownTimeoutMillis) {
+        this(workerCount, queueCapacity, queueCapacity, 1, 0, shutdownTimeoutMillis, new MetricRegistry());
+    }
+
+    public KeyedWorkerPool(int workerCount, int liveQueueCapacity, int bulkQueueCapacity, int liveWeight,
+                           double bulkRate, long shutdownTimeoutMillis, MetricRegistry metrics) {
+        this.liveWeight = Math.max(liveWeight, 1);
+        this.bulkLimiter = bulkRate > 0 ? RateLimiter.create(bulkRate) : null;
+        this.queueCapacities.put(Lane.LIVE, liveQueueCapacity);
+        this.queueCapacities.put(Lane.BULK, bulkQueueCapacity);
+        for (Lane lane : Lane.values()) {
+            queueWaits.put(lane, metrics.timer(MetricRegistry.name(KeyedWorkerPool.class, lane.metricName(), "queue-wait")));
+            processing.put(lane, metrics.timer(MetricRegistry.name(KeyedWorkerPool.class, lane.metricName(), "processing")));
+            blocked.put(lane, metrics.timer(MetricRegistry.name(KeyedWorkerPool.class, lane.metricName(), "blocked")));
+            failures.put(lane, metrics.counter(MetricRegistry.name(KeyedWorkerPool.class, lane.metricName(), "failed")));
+            metrics.register(MetricRegistry.name(KeyedWorkerPool.class, lane.metricName(), "queue-depth"),
+                    (Gauge<Integer>) () -> getQueueDepth(lane));
+        }
+        this.dropped = metrics.counter(MetricRegistry.name(KeyedWorkerPool.class, "dropped"));
+        this.workers = new Worker[Math.max(workerCount, 0)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker("mapping-worker-" + i);
+        }
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    public static KeyedWorkerPool inline() {
+        return new KeyedWorkerPool(0, 1, 0);
+    }
+
+    public void execute(String key, Runnable task) throws InterruptedException {
+        execute(key, Lane.LIVE, task);
+    }
+
+    public void execute(String key, Lane lane, Runnable task) throws InterruptedException {
+        if (workers.length == 0) {
+            task.run();
+            return;
+        }
+        if (!accepting) {
+            throw new IllegalStateException("Worker pool is shutting down");
+        }
+        final Map<String, String> context = MDC.getCopyOfContextMap();
+        workers[Math.floorMod(key.hashCode(), workers.length)].put(key, lane, () -> runWithContext(context, task));
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : Lane.values()) {
+            depth += getQueueDepth(lane);
+        }
+        return depth;
+    }
+
+    public int getQueueDepth(Lane lane) {
+        int depth = 0;
+        for (Worker worker : workers) {
+            depth += worker.size(lane);
+        }
+        return depth;
+    }
+
+    @Override
+    public void start() {
+        for (Worker worker : workers) {
+            worker.start();
+        }
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        accepting = false;
+        final long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+        for (Worker worker : workers) {
+            worker.drain();
+        }
+        for (Worker worker : workers) {
+            worker.join(Math.max(deadline - System.currentTimeMillis(), 1));
+            if (worker.isAlive()) {
+                final int unprocessed = worker.size(Lane.LIVE) + worker.size(Lane.BULK);
+                LOG.warn("{} did not drain within {} ms, {} messages left unprocessed.",
+                        worker.getName(), shutdownTimeoutMillis, unprocessed);
+                dropped.inc(unprocessed);
+                worker.interrupt();
+            }
+        }
+    }
+
+    private static void runWithContext(Map<String, String> context, Runnable task) {
+        if (context != null) {
+            MDC.setContextMap(context);
+        }
+        try {
+            task.run();
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private static class Task {
+
+        private final String key;
+        private final Lane lane;
+        private final Runnable runnable;
+        private final long submittedAt = System.nanoTime();
+
+        Task(String key, Lane lane, Runnable runnable) {
+            this.key = key;
+            this.lane = lane;
+            this.runnable = runnable;
+        }
+    }
+
+    /**
+     * Which lane the waiting tasks of a key are in, and how many there are.
+     */
+    private static class PendingKey {
+
+        private final Lane lane;
+        private int count;
+
+        PendingKey(Lane lane) {
+            this.lane = lane;
+        }
+    }
+
+    private class Worker extends Thread {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private final Map<Lane, ArrayDeque<Task>> queues = new EnumMap<>(Lane.class);
+        private final Map<String, PendingKey> pendingKeys = new HashMap<>();
+        private int liveStreak;
+        private boolean draining;
+
+        Worker(String name) {
+            super(name);
+            for (Lane lane : Lane.values()) {
+                queues.put(lane, new ArrayDeque<>());
+            }
+            setDaemon(true);
+        }
+
+        void put(String key, Lane requestedLane, Runnable runnable) throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                long blockedSince = 0;
+                while (true) {
+                    if (draining) {
+                        throw new IllegalStateException("Worker pool is shutting down");
+                    }
+                    final PendingKey pending = pendingKeys.get(key);
+                    final Lane lane = pending == null ? requestedLane : pending.lane;
+                    final ArrayDeque<Task> queue = queues.get(lane);
+                    if (queue.size() < queueCapacities.get(lane)) {
+                        queue.add(new Task(key, lane, runnable));
+                        pendingKeys.computeIfAbsent(key, k -> new PendingKey(lane)).count++;
+                        notEmpty.signal();
+                        if (blockedSince != 0) {
+                            blocked.get(lane).update(System.nanoTime() - blockedSince, TimeUnit.NANOSECONDS);
+                        }
+                        return;
+                    }
+                    if (blockedSince == 0) {
+                        blockedSince = System.nanoTime();
+                    }
+                    notFull.await();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size(Lane lane) {
+            lock.lock();
+            try {
+                return queues.get(lane).size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void drain() {
+            lock.lock();
+            try {
+                draining = true;
+                notEmpty.signalAll();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the next task to run, or {@code null} once draining and there are none left
+         */
+        private Task take() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (true) {
+                    final ArrayDeque<Task> live = queues.get(Lane.LIVE);
+                    final ArrayDeque<Task> bulk = queues.get(Lane.BULK);
+                    if (!live.isEmpty() && (bulk.isEmpty() || liveStreak < liveWeight)) {
+                        liveStreak++;
+                        return poll(live);
+                    }
+                    if (!bulk.isEmpty() && (bulkLimiter == null || bulkLimiter.tryAcquire())) {
+                        liveStreak = 0;
+                        return poll(bulk);
+                    }
+                    if (!live.isEmpty()) {
+                        return poll(live);
+                    }
+                    if (bulk.isEmpty() && draining) {
+                        return null;
+                    }
+                    if (bulk.isEmpty()) {
+                        notEmpty.await();
+                    } else {
+                        notEmpty.await(RATE_LIMITED_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Task poll(ArrayDeque<Task> queue) {
+            final Task task = queue.poll();
+            final PendingKey pending = pendingKeys.get(task.key);
+            if (--pending.count == 0) {
+                pendingKeys.remove(task.key);
+            }
+            notFull.signalAll();
+            return task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Task task = take(); task != null; task = take()) {
+                    queueWaits.get(task.lane).update(System.nanoTime() - task.submittedAt, TimeUnit.NANOSECONDS);
+                    try (Timer.Context timing = processing.get(task.lane).time()) {
+                        task.runnable.run();
+                    } catch (Throwable e) {
+                        failures.get(task.lane).inc();
+                        LOG.error("Failed processing message.", e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
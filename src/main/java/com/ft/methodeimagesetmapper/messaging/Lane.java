@@ -0,0 +1,15 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import java.util.Locale;
+
+/**
+ * The lanes of the {@link KeyedWorkerPool}: live publishes are scheduled ahead of bulk republishes.
+ */
+public enum Lane {
+    LIVE,
+    BULK;
+
+    String metricName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
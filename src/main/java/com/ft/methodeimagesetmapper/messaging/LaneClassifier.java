@@ -0,0 +1,55 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.ft.messaging.standards.message.v1.Message;
+import com.ft.methodeimagesetmapper.model.EomFile;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tells bulk republishes from live publishes, so that the {@link KeyedWorkerPool} can schedule live images first. An
+ * event is bulk when its transaction id starts with one of the bulk prefixes, when it carries one of the bulk headers
+ * with the given value, or when the image was last modified more than {@code maxLiveAgeMillis} ago.
+ */
+public class LaneClassifier {
+
+    private final List<String> bulkTransactionIdPrefixes;
+    private final Map<String, String> bulkHeaders;
+    private final long maxLiveAgeMillis;
+
+    /**
+     * @param maxLiveAgeMillis zero or less not to classify by age
+     */
+    public LaneClassifier(List<String> bulkTransactionIdPrefixes, Map<String, String> bulkHeaders, long maxLiveAgeMillis) {
+        this.bulkTransactionIdPrefixes = bulkTransactionIdPrefixes;
+        this.bulkHeaders = bulkHeaders;
+        this.maxLiveAgeMillis = maxLiveAgeMillis;
+    }
+
+    public static LaneClassifier allLive() {
+        return new LaneClassifier(Collections.emptyList(), Collections.emptyMap(), 0);
+    }
+
+    public Lane classify(Message message, String transactionId, EomFile methodeContent) {
+        if (transactionId != null) {
+            for (String prefix : bulkTransactionIdPrefixes) {
+                if (transactionId.startsWith(prefix)) {
+                    return Lane.BULK;
+                }
+            }
+        }
+        for (Map.Entry<String, String> header : bulkHeaders.entrySet()) {
+            if (header.getValue().equalsIgnoreCase(message.getCustomMessageHeader(header.getKey()))) {
+                return Lane.BULK;
+            }
+        }
+        final Date lastModified = methodeContent.getLastModified();
+        if (maxLiveAgeMillis > 0 && lastModified != null
+                && System.currentTimeMillis() - lastModified.getTime() > maxLiveAgeMillis) {
+            return Lane.BULK;
+        }
+        return Lane.LIVE;
+    }
+}
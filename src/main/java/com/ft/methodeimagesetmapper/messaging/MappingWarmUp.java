@@ -0,0 +1,126 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.ft.content.model.Content;
+import com.ft.methodeimagesetmapper.model.EomFile;
+import com.ft.methodeimagesetmapper.model.EomFileContentType;
+import com.ft.methodeimagesetmapper.service.MethodeImageSetMapper;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps and serializes synthetic images on startup, without publishing them, so that XML factory lookups, Jackson
+ * serializer construction and JIT compilation of the mapping path happen before the service takes traffic rather
+ * than on it. Warming up is best effort: it completes after {@code iterations} images, after {@code maxDurationMillis}
+ * or on the first failure, whichever comes first. Once warm, another {@code latencySamples} images are timed.
+ * <p>
+ * The mappers should be instances of their own, registered with a throwaway {@link MetricRegistry}, so that the
+ * synthetic images do not show up in the timers of real traffic; sharing the {@code ObjectMapper} still warms the
+ * Jackson serializers used by the service.
+ */
+public class MappingWarmUp implements Managed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappingWarmUp.class);
+
+    private static final String ATTRIBUTES = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+            + "<meta><picture><web_information><caption>Warm-up caption %d</caption><alt_tag>Warm-up alt text</alt_tag>"
+            + "<online-source>Warm-up source</online-source><manual-source></manual-source></web_information>"
+            + "</picture><markDeleted>False</markDeleted></meta>";
+    private static final String SYSTEM_ATTRIBUTES = "<props><imageInfo><width>%d</width><height>1152</height>"
+            + "<fileType>JPEG</fileType></imageInfo></props>";
+    private static final String USAGE_TICKETS = "<?xml version='1.0' encoding='UTF-8'?><tl><t><id>1</id>"
+            + "<tp>web_publication</tp><c>warm-up</c><cd>20140317120800</cd></t></tl>";
+    private static final byte[] VALUE = new byte[]{1};
+
+    private final MethodeImageSetMapper imageSetMapper;
+    private final MessageProducingContentMapper contentMapper;
+    private final int iterations;
+    private final int latencySamples;
+    private final long maxDurationMillis;
+    private final Timer warmLatencies;
+    private final Thread warmer;
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private volatile long durationMillis;
+    private volatile boolean complete;
+
+    public MappingWarmUp(MethodeImageSetMapper imageSetMapper, MessageProducingContentMapper contentMapper,
+                         int iterations, int latencySamples, long maxDurationMillis, MetricRegistry metrics) {
+        this.imageSetMapper = imageSetMapper;
+        this.contentMapper = contentMapper;
+        this.iterations = iterations;
+        this.latencySamples = latencySamples;
+        this.maxDurationMillis = maxDurationMillis;
+        this.warmLatencies = metrics.timer(MetricRegistry.name(MappingWarmUp.class, "warm-latency"));
+        this.warmer = new Thread(this::warmUp, "mapping-warm-up");
+        this.warmer.setDaemon(true);
+
+        metrics.register(MetricRegistry.name(MappingWarmUp.class, "duration-millis"), (Gauge<Long>) () -> durationMillis);
+    }
+
+    @Override
+    public void start() {
+        warmer.start();
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        warmer.interrupt();
+        warmer.join();
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return whether warm-up completed within the timeout
+     */
+    public boolean awaitCompletion(long timeoutMillis) throws InterruptedException {
+        return completed.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void warmUp() {
+        final long start = System.currentTimeMillis();
+        final long deadline = start + maxDurationMillis;
+        int mapped = 0;
+        try {
+            while (mapped < iterations && System.currentTimeMillis() < deadline && !Thread.currentThread().isInterrupted()) {
+                mapAndSerialize(mapped++);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Warm-up failed after {} images, reporting good to go regardless.", mapped, e);
+        } finally {
+            durationMillis = System.currentTimeMillis() - start;
+            complete = true;
+            completed.countDown();
+        }
+        LOG.info("Warmed up mapping {} images in {} ms.", mapped, durationMillis);
+
+        try {
+            for (int i = 0; i < latencySamples && !Thread.currentThread().isInterrupted(); i++) {
+                final long sampleStart = System.nanoTime();
+                mapAndSerialize(mapped + i);
+                warmLatencies.update(System.nanoTime() - sampleStart, TimeUnit.NANOSECONDS);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Failed sampling warmed up mapping latency.", e);
+        }
+    }
+
+    private void mapAndSerialize(int iteration) {
+        final String uuid = UUID.randomUUID().toString();
+        final EomFile eomFile = new EomFile(uuid, EomFileContentType.IMAGE.getContentType(), VALUE,
+                String.format(ATTRIBUTES, iteration), "", String.format(SYSTEM_ATTRIBUTES, 1024 + iteration % 1024),
+                USAGE_TICKETS, new Date());
+        final Content content = imageSetMapper.mapImageSet(uuid, eomFile, "warm-up_" + iteration, new Date());
+        contentMapper.createMessage(content);
+    }
+}
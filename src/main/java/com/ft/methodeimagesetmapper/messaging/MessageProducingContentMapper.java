@@ -1,81 +1,225 @@
 package com.ft.methodeimagesetmapper.messaging;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ft.content.model.Content;
 import com.ft.messagequeueproducer.MessageProducer;
 import com.ft.messagequeueproducer.model.KeyedMessage;
 import com.ft.messaging.standards.message.v1.Message;
 import com.ft.methodeimagesetmapper.exception.ContentMapperException;
+import com.ft.methodeimagesetmapper.exception.ProducerOverloadedException;
 import com.ft.methodeimagesetmapper.model.EomFile;
 import com.ft.methodeimagesetmapper.service.MethodeImageSetMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.UriBuilder;
-import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.ResolverStyle;
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
 import static com.ft.api.util.transactionid.TransactionIdUtils.TRANSACTION_ID_HEADER;
-import static java.time.ZoneOffset.UTC;
 
 public class MessageProducingContentMapper {
 
     private static final Logger LOG = LoggerFactory.getLogger(MessageProducingContentMapper.class);
     private static final String CMS_CONTENT_PUBLISHED = "cms-content-published";
-    private static final DateTimeFormatter RFC3339_FMT =
-            DateTimeFormatter.ISO_OFFSET_DATE_TIME.withResolverStyle(ResolverStyle.STRICT);
 
     private final MethodeImageSetMapper delegate;
     private final MessageProducer producer;
-    private final ObjectMapper objectMapper;
     private final String systemId;
-    private final UriBuilder contentUriBuilder;
+    private final ContentEnvelopeWriter envelopeWriter;
+    private final MetricRegistry metrics;
+    private final Timer serializeTimer;
+    private final Timer sendTimer;
+    private final PublishedFingerprintCache publishedFingerprints;
+    private final MessageSpool spool;
 
     public MessageProducingContentMapper(MethodeImageSetMapper delegate, ObjectMapper objectMapper, String systemId,
                                          MessageProducer producer, UriBuilder contentUriBuilder) {
-        this.delegate = delegate;
-        this.objectMapper = objectMapper;
-        this.systemId = systemId;
-        this.producer = producer;
-        this.contentUriBuilder = contentUriBuilder;
+        this(new Builder(delegate, objectMapper, systemId, producer, contentUriBuilder));
     }
 
-    public Content mapImageSet(String uuid, EomFile eomFile, String transactionId, Date lastModifiedDate) {
-        List<Content> contents = Collections.singletonList(delegate.mapImageSet(uuid, eomFile, transactionId, lastModifiedDate));
-        producer.send(contents.stream().map(this::createMessage).collect(Collectors.toList()));
-        LOG.info("sent {} messages", contents.size());
-        return contents.get(0);
+    private MessageProducingContentMapper(Builder builder) {
+        final MetricRegistry metrics = builder.metrics;
+        this.delegate = builder.delegate;
+        this.systemId = builder.systemId;
+        this.producer = builder.producer;
+        this.envelopeWriter = new ContentEnvelopeWriter(builder.objectMapper, builder.contentUriBuilder);
+        this.metrics = metrics;
+        this.serializeTimer = metrics.timer(MetricRegistry.name(MessageProducingContentMapper.class, "serialize"));
+        this.sendTimer = metrics.timer(MetricRegistry.name(MessageProducingContentMapper.class, "send"));
+        this.publishedFingerprints = builder.publishedFingerprints;
+        this.spool = builder.spool;
     }
 
-    private Message createMessage(Content content) {
-        LOG.info("Last Modified Date is: " + content.getLastModified());
-        Map<String, Object> messageBody = new LinkedHashMap<>();
-        messageBody.put("contentUri", contentUriBuilder.build(content.getUuid()).toString());
-        messageBody.put("payload", content);
-        String lastModified = RFC3339_FMT.format(OffsetDateTime.ofInstant(content.getLastModified().toInstant(), UTC));
-        messageBody.put("lastModified", lastModified);
+    /**
+     * Maps and publishes the image set, unless it was already published from identical input. If there is a spool,
+     * the message is spooled instead when it cannot be sent, or when earlier messages are still waiting in the spool.
+     */
+    public PublishOutcome mapImageSet(String uuid, EomFile eomFile, String transactionId, Date lastModifiedDate) {
+        final PendingPublication publication = prepare(uuid, eomFile, transactionId, lastModifiedDate);
+        return publication == null ? PublishOutcome.UNCHANGED : publish(Collections.singletonList(publication));
+    }
+
+    /**
+     * Maps the image set, so that it can be published together with others.
+     *
+     * @return the publication to pass to {@link #publish(List)}, or {@code null} if the image set was already
+     * published from identical input
+     */
+    public PendingPublication prepare(String uuid, EomFile eomFile, String transactionId, Date lastModifiedDate) {
+        final long fingerprint = PublishedFingerprintCache.fingerprint(eomFile);
+        if (publishedFingerprints.isUnchanged(uuid, fingerprint, transactionId)) {
+            LOG.info("Skip publishing image set [{}], unchanged since it was last published.", uuid);
+            return null;
+        }
+        final Content content = delegate.mapImageSet(uuid, eomFile, transactionId, lastModifiedDate);
+        return new PendingPublication(uuid, fingerprint, createMessage(content));
+    }
+
+    /**
+     * Publishes the image sets in a single producer call, or spools them all as {@link #mapImageSet} does.
+     */
+    public PublishOutcome publish(List<PendingPublication> publications) {
+        final PublishOutcome outcome = sendOrSpool(publications.stream().map(PendingPublication::getMessage)
+                .collect(Collectors.toList()));
+        if (outcome == PublishOutcome.SENT) {
+            for (PendingPublication publication : publications) {
+                publishedFingerprints.recordPublished(publication.getUuid(), publication.getFingerprint());
+            }
+        }
+        return outcome;
+    }
 
-        Message msg;
+    private PublishOutcome sendOrSpool(List<Message> messages) {
+        if (spool != null && !spool.isEmpty()) {
+            // sending directly would overtake the older messages for the same image sets still in the spool
+            if (!spool(messages)) {
+                throw new ProducerOverloadedException("Spool is full, cannot queue messages behind those waiting to be replayed");
+            }
+            LOG.info("Spooled {} messages behind messages waiting to be replayed.", messages.size());
+            return PublishOutcome.SPOOLED;
+        }
         try {
+            send(messages);
+            return PublishOutcome.SENT;
+        } catch (RuntimeException e) {
+            if (spool == null || !spool(messages)) {
+                throw e;
+            }
+            LOG.warn("Spooled {} messages that could not be sent.", messages.size(), e);
+            return PublishOutcome.SPOOLED;
+        }
+    }
 
-            msg = new Message.Builder().withMessageId(UUID.randomUUID())
-                    .withMessageType(CMS_CONTENT_PUBLISHED)
-                    .withMessageTimestamp(new Date())
-                    .withOriginSystemId(systemId)
-                    .withContentType("application/json")
-                    .withMessageBody(objectMapper.writeValueAsString(messageBody))
-                    .build();
-
-            msg.addCustomMessageHeader(TRANSACTION_ID_HEADER, content.getPublishReference());
-            msg = KeyedMessage.forMessageAndKey(msg, content.getUuid());
-        } catch (JsonProcessingException e) {
+    private boolean spool(List<Message> messages) {
+        final List<SpooledMessage> spooled = messages.stream().map(this::toSpooledMessage).collect(Collectors.toList());
+        try {
+            if (spool.append(spooled)) {
+                metrics.counter(MetricRegistry.name(MessageProducingContentMapper.class, "spooled")).inc(spooled.size());
+                return true;
+            }
+            LOG.error("Spool is full, cannot spool {} messages.", spooled.size());
+        } catch (IOException e) {
+            LOG.error("Failed spooling {} messages.", spooled.size(), e);
+        }
+        return false;
+    }
+
+    /**
+     * Sends messages created by {@link #createMessage(Content)} in a single producer call.
+     */
+    public void send(List<Message> messages) {
+        try (Timer.Context sending = sendTimer.time()) {
+            producer.send(messages);
+        } catch (RuntimeException e) {
+            metrics.counter(MetricRegistry.name(MessageProducingContentMapper.class, "failed", "send")).inc();
+            throw e;
+        }
+        LOG.info("sent {} messages", messages.size());
+    }
+
+    public Message createMessage(Content content) {
+        LOG.debug("Last Modified Date is: {}", content.getLastModified());
+
+        try (Timer.Context serializing = serializeTimer.time()) {
+            return buildMessage(UUID.randomUUID(), new Date(), content.getPublishReference(), content.getUuid(),
+                    envelopeWriter.write(content));
+        } catch (IOException e) {
+            metrics.counter(MetricRegistry.name(MessageProducingContentMapper.class, "failed", "serialization")).inc();
             LOG.error("unable to write JSON for message", e);
             throw new ContentMapperException("unable to write JSON for message", e);
         }
-        return msg;
+    }
+
+    /**
+     * Recreates a message taken out of the spool.
+     */
+    public Message toMessage(SpooledMessage spooled) {
+        return buildMessage(UUID.fromString(spooled.getMessageId()), new Date(spooled.getMessageTimestamp()),
+                spooled.getTransactionId(), spooled.getKey(), spooled.getBody());
+    }
+
+    private SpooledMessage toSpooledMessage(Message message) {
+        final String key = message instanceof KeyedMessage ? ((KeyedMessage) message).getKey() : null;
+        return new SpooledMessage(key, message.getMessageId().toString(), message.getMessageTimestamp().getTime(),
+                message.getCustomMessageHeader(TRANSACTION_ID_HEADER), message.getMessageBody());
+    }
+
+    private Message buildMessage(UUID messageId, Date messageTimestamp, String transactionId, String key, String body) {
+        Message msg = new Message.Builder().withMessageId(messageId)
+                .withMessageType(CMS_CONTENT_PUBLISHED)
+                .withMessageTimestamp(messageTimestamp)
+                .withOriginSystemId(systemId)
+                .withContentType("application/json")
+                .withMessageBody(body)
+                .build();
+
+        msg.addCustomMessageHeader(TRANSACTION_ID_HEADER, transactionId);
+        return KeyedMessage.forMessageAndKey(msg, key);
+    }
+
+    public static class Builder {
+        private final MethodeImageSetMapper delegate;
+        private final ObjectMapper objectMapper;
+        private final String systemId;
+        private final MessageProducer producer;
+        private final UriBuilder contentUriBuilder;
+        private MetricRegistry metrics = new MetricRegistry();
+        private PublishedFingerprintCache publishedFingerprints = PublishedFingerprintCache.disabled();
+        private MessageSpool spool;
+
+        public Builder(MethodeImageSetMapper delegate, ObjectMapper objectMapper, String systemId,
+                       MessageProducer producer, UriBuilder contentUriBuilder) {
+            this.delegate = delegate;
+            this.objectMapper = objectMapper;
+            this.systemId = systemId;
+            this.producer = producer;
+            this.contentUriBuilder = contentUriBuilder;
+        }
+
+        public Builder withMetrics(MetricRegistry metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder withPublishedFingerprints(PublishedFingerprintCache publishedFingerprints) {
+            this.publishedFingerprints = publishedFingerprints;
+            return this;
+        }
+
+        /**
+         * @param spool where messages go when the kafka-proxy cannot be reached. Without one, they fail instead.
+         */
+        public Builder withSpool(MessageSpool spool) {
+            this.spool = spool;
+            return this;
+        }
+
+        public MessageProducingContentMapper build() {
+            return new MessageProducingContentMapper(this);
+        }
     }
 }
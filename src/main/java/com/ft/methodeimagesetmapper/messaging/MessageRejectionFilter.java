@@ -0,0 +1,46 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.UniformInterfaceException;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+import javax.ws.rs.HttpMethod;
+
+/**
+ * Fails messages posted to the kafka-proxy that it answers with a client error with a
+ * {@link UniformInterfaceException} carrying the response, so that a message the kafka-proxy rejects can be told apart
+ * from one it could not take at the time; see {@link #isRejection(Throwable)}.
+ */
+public class MessageRejectionFilter extends ClientFilter {
+
+    private static final int REQUEST_TIMEOUT = 408;
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        final ClientResponse response = getNext().handle(request);
+        if (HttpMethod.POST.equals(request.getMethod()) && isClientError(response.getStatus())) {
+            throw new UniformInterfaceException(response);
+        }
+        return response;
+    }
+
+    /**
+     * @return whether the failure, or one of its causes, is the kafka-proxy rejecting the messages themselves, so that
+     * sending them again cannot succeed; connection failures, server errors and throttling are not rejections
+     */
+    public static boolean isRejection(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UniformInterfaceException) {
+                return isClientError(((UniformInterfaceException) cause).getResponse().getStatus());
+            }
+        }
+        return false;
+    }
+
+    private static boolean isClientError(int status) {
+        return status >= 400 && status < 500 && status != REQUEST_TIMEOUT && status != TOO_MANY_REQUESTS;
+    }
+}
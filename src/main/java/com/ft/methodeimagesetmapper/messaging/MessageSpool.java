@@ -0,0 +1,186 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An append-only queue of {@link SpooledMessage}s in a memory-mapped file, which survives restarts.
+ * <p>
+ * The file starts with the read offset, write offset and number of queued messages, followed by the records, each
+ * made of its length, the time it was spooled and its JSON. Messages are taken off the front by {@link #peek(int)} and
+ * {@link #remove(Batch)} only once they have been sent; when the spool empties, writing starts again at the front.
+ * <p>
+ * While messages keep being spooled behind others being replayed, the spool may never empty. So when a message does
+ * not fit at the end, the messages still queued are moved back to the front, provided the space already replayed
+ * can hold all of them: the copy then never overwrites a message still queued, and the old offsets stay valid until
+ * the copy is on disk, so a crash midway loses nothing.
+ * <p>
+ * Every change is forced to disk before the method returns.
+ */
+public class MessageSpool implements Closeable {
+
+    private static final int READ_OFFSET = 0;
+    private static final int WRITE_OFFSET = 8;
+    private static final int COUNT = 16;
+    private static final int HEADER_SIZE = 24;
+    private static final int RECORD_HEADER_SIZE = 12;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+
+    public MessageSpool(Path file, long maxSize, ObjectMapper objectMapper) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final long size = Math.min(Math.max(maxSize, channel.size()), Integer.MAX_VALUE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        this.writer = objectMapper.writerWithType(SpooledMessage.class);
+        this.reader = objectMapper.reader(SpooledMessage.class);
+        if (buffer.getLong(WRITE_OFFSET) < HEADER_SIZE) {
+            reset();
+            buffer.force();
+        }
+    }
+
+    /**
+     * @return whether the messages were spooled; none are if they do not all fit
+     */
+    public synchronized boolean append(List<SpooledMessage> messages) throws IOException {
+        final long spooledAt = System.currentTimeMillis();
+        final List<byte[]> records = new ArrayList<>(messages.size());
+        long required = 0;
+        for (SpooledMessage message : messages) {
+            final byte[] record = writer.writeValueAsBytes(message);
+            records.add(record);
+            required += RECORD_HEADER_SIZE + record.length;
+        }
+        if (buffer.getLong(WRITE_OFFSET) + required > buffer.capacity()
+                && (getUsedBytes() + required > buffer.capacity() - HEADER_SIZE || !compact())) {
+            return false;
+        }
+        int position = (int) buffer.getLong(WRITE_OFFSET);
+        for (byte[] record : records) {
+            buffer.putInt(position, record.length);
+            buffer.putLong(position + 4, spooledAt);
+            ((ByteBuffer) buffer.duplicate().position(position + RECORD_HEADER_SIZE)).put(record);
+            position += RECORD_HEADER_SIZE + record.length;
+        }
+        buffer.putLong(WRITE_OFFSET, position);
+        buffer.putLong(COUNT, buffer.getLong(COUNT) + records.size());
+        buffer.force();
+        return true;
+    }
+
+    /**
+     * @return up to {@code max} messages from the front of the spool, which stay there until removed
+     */
+    public synchronized Batch peek(int max) throws IOException {
+        final int end = (int) buffer.getLong(WRITE_OFFSET);
+        int position = (int) buffer.getLong(READ_OFFSET);
+        final List<SpooledMessage> messages = new ArrayList<>();
+        while (position < end && messages.size() < max) {
+            final int length = buffer.getInt(position);
+            final byte[] record = new byte[length];
+            ((ByteBuffer) buffer.duplicate().position(position + RECORD_HEADER_SIZE)).get(record);
+            messages.add(reader.readValue(record));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return new Batch(messages, position);
+    }
+
+    public synchronized void remove(Batch batch) {
+        final long remaining = buffer.getLong(COUNT) - batch.getMessages().size();
+        if (remaining <= 0) {
+            reset();
+        } else {
+            buffer.putLong(READ_OFFSET, batch.end);
+            buffer.putLong(COUNT, remaining);
+        }
+        buffer.force();
+    }
+
+    public synchronized long size() {
+        return buffer.getLong(COUNT);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public synchronized long getUsedBytes() {
+        return buffer.getLong(WRITE_OFFSET) - buffer.getLong(READ_OFFSET);
+    }
+
+    /**
+     * @return when the oldest message still in the spool was spooled, or {@code 0} if the spool is empty
+     */
+    public synchronized long getOldestSpooledAt() {
+        if (buffer.getLong(COUNT) == 0) {
+            return 0;
+        }
+        return buffer.getLong((int) buffer.getLong(READ_OFFSET) + 4);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Moves the queued messages to the front of the file, if that can be done without overwriting any of them.
+     *
+     * @return whether they were moved
+     */
+    private boolean compact() {
+        final int read = (int) buffer.getLong(READ_OFFSET);
+        final int used = (int) buffer.getLong(WRITE_OFFSET) - read;
+        if (read == HEADER_SIZE || used > read - HEADER_SIZE) {
+            return false;
+        }
+        final ByteBuffer queued = (ByteBuffer) buffer.duplicate().position(read).limit(read + used);
+        ((ByteBuffer) buffer.duplicate().position(HEADER_SIZE)).put(queued);
+        buffer.force();
+        buffer.putLong(READ_OFFSET, HEADER_SIZE);
+        buffer.putLong(WRITE_OFFSET, HEADER_SIZE + used);
+        buffer.force();
+        return true;
+    }
+
+    private void reset() {
+        buffer.putLong(READ_OFFSET, HEADER_SIZE);
+        buffer.putLong(WRITE_OFFSET, HEADER_SIZE);
+        buffer.putLong(COUNT, 0);
+    }
+
+    public static class Batch {
+
+        private final List<SpooledMessage> messages;
+        private final int end;
+
+        private Batch(List<SpooledMessage> messages, int end) {
+            this.messages = Collections.unmodifiableList(messages);
+            this.end = end;
+        }
+
+        public List<SpooledMessage> getMessages() {
+            return messages;
+        }
+
+        public boolean isEmpty() {
+            return messages.isEmpty();
+        }
+    }
+}
@@ -1,11 +1,20 @@
 package com.ft.methodeimagesetmapper.messaging;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ft.message.consumer.MessageListener;
 import com.ft.messaging.standards.message.v1.Message;
 import com.ft.messaging.standards.message.v1.SystemId;
+import com.ft.methodeimagesetmapper.diagnostics.MessageTimings;
+import com.ft.methodeimagesetmapper.diagnostics.SlowMessageRecorder;
+import com.ft.methodeimagesetmapper.exception.ContentMapperException;
 import com.ft.methodeimagesetmapper.exception.IngesterException;
+import com.ft.methodeimagesetmapper.exception.MethodeContentNotSupportedException;
+import com.ft.methodeimagesetmapper.exception.TransformationException;
 import com.ft.methodeimagesetmapper.model.EomFile;
+import com.ft.methodeimagesetmapper.model.EomFileContentType;
 import com.ft.methodeimagesetmapper.validation.PublishingValidator;
 import com.ft.uuidutils.DeriveUUID;
 import com.ft.uuidutils.DeriveUUID.Salts;
@@ -14,7 +23,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 
 public class NativeCmsPublicationEventsListener implements MessageListener {
@@ -23,45 +34,348 @@ public class NativeCmsPublicationEventsListener implements MessageListener {
 
     private final Predicate<Message> filter;
     private final MessageProducingContentMapper mapper;
-    private final ObjectMapper objectMapper;
+    private final NativeEomFileReader eomFileReader;
     private final SystemId systemId;
     private final PublishingValidator publishingValidator;
+    private final KeyedWorkerPool workerPool;
+    private final LaneClassifier laneClassifier;
+    private final CommitCoordinator commitCoordinator;
+    private final SlowMessageRecorder slowMessages;
+    private final PublicationProgress progress;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final MetricRegistry metrics;
+    private final Timer consumeTimer;
+    private final Timer deserializeTimer;
+    private final Timer validateTimer;
+    private final Timer uuidDeriveTimer;
+    private final Histogram messageBodySizes;
+    private final Histogram imageSizes;
+    private final Histogram eventAgesAtReceipt;
+    private final Histogram eventAgesAtPublication;
+    private final Histogram modificationAgesAtPublication;
 
     public NativeCmsPublicationEventsListener(String systemCode, MessageProducingContentMapper mapper, ObjectMapper objectMapper,
                                               PublishingValidator publishingValidator) {
-        this.systemId = SystemId.systemIdFromCode(systemCode);
+        this(new Builder(systemCode, mapper, objectMapper, publishingValidator));
+    }
+
+    private NativeCmsPublicationEventsListener(Builder builder) {
+        final MetricRegistry metrics = builder.metrics;
+        this.systemId = SystemId.systemIdFromCode(builder.systemCode);
         this.filter = msg -> (systemId.equals(msg.getOriginSystemId()));
-        this.mapper = mapper;
-        this.objectMapper = objectMapper;
-        this.publishingValidator = publishingValidator;
+        this.mapper = builder.mapper;
+        this.eomFileReader = new NativeEomFileReader(builder.objectMapper);
+        this.publishingValidator = builder.publishingValidator;
+        this.workerPool = builder.workerPool;
+        this.laneClassifier = builder.laneClassifier;
+        this.commitCoordinator = builder.commitCoordinator;
+        this.slowMessages = builder.slowMessages;
+        this.progress = builder.progress;
+        this.maxAttempts = Math.max(builder.maxAttempts, 1);
+        this.retryBackoffMillis = builder.retryBackoffMillis;
+        this.metrics = metrics;
+        this.consumeTimer = metrics.timer(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "consume"));
+        this.deserializeTimer = metrics.timer(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "deserialize"));
+        this.validateTimer = metrics.timer(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "validate"));
+        this.uuidDeriveTimer = metrics.timer(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "uuid-derive"));
+        this.messageBodySizes = metrics.histogram(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "message-body-size"));
+        this.imageSizes = metrics.histogram(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "image-size"));
+        this.eventAgesAtReceipt = metrics.histogram(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "event-age-at-receipt"));
+        this.eventAgesAtPublication = metrics.histogram(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "event-age-at-publication"));
+        this.modificationAgesAtPublication = metrics.histogram(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "modification-age-at-publication"));
     }
 
     @Override
     public boolean onMessage(Message message, String transactionId) {
-        if (filter.test(message)) {
-            LOG.info("process message");
+        try (Timer.Context consuming = consumeTimer.time()) {
+            if (filter.test(message)) {
+                LOG.info("process message");
+                process(message, transactionId);
+            } else {
+                LOG.info("Skip message from [{}]", message.getOriginSystemId());
+                skipped("origin-system");
+            }
+        }
+        return true;
+    }
 
-            try {
-                EomFile methodeContent = objectMapper.reader(EomFile.class).readValue(message.getMessageBody());
-                UUIDValidation.of(methodeContent.getUuid());
-                if (publishingValidator.isValidForPublishing(methodeContent)) {
+    private void process(Message message, String transactionId) {
+        final Date messageTimestamp = message.getMessageTimestamp();
+        if (messageTimestamp != null) {
+            eventAgesAtReceipt.update(System.currentTimeMillis() - messageTimestamp.getTime());
+        }
+        final String messageBody = message.getMessageBody();
+        final Processing processing = new Processing(
+                new MessageTimings(transactionId, messageBody == null ? 0 : messageBody.length()),
+                progress.received(messageTimestamp));
+        final MessageTimings timings = processing.timings;
+        String outcome = "failed";
+        boolean handingOver = false;
+        boolean handedOver = false;
+        try {
+            messageBodySizes.update(messageBody == null ? 0 : messageBody.length());
+
+            long stageStart = System.nanoTime();
+            final EomFile methodeContent;
+            try (Timer.Context deserializing = deserializeTimer.time()) {
+                methodeContent = eomFileReader.read(messageBody);
+            }
+            timings.deserialized(System.nanoTime() - stageStart, methodeContent.getValueLength());
+            stageStart = System.nanoTime();
+            final boolean validForPublishing;
+            try (Timer.Context validating = validateTimer.time()) {
+                validForPublishing = publishingValidator.isValidForPublishing(methodeContent);
+            }
+            timings.validated(System.nanoTime() - stageStart);
+            if (validForPublishing) {
+                imageSizes.update(methodeContent.getValueLength());
+                stageStart = System.nanoTime();
+                final String uuid;
+                try (Timer.Context deriving = uuidDeriveTimer.time()) {
+                    UUIDValidation.of(methodeContent.getUuid());
                     final UUID methodeUuid = UUID.fromString(methodeContent.getUuid());
-                    final UUID imageSetUuid = DeriveUUID.with(Salts.IMAGE_SET).from(methodeUuid);
-                    final String uuid = imageSetUuid.toString();
-                    LOG.info("Importing content [{}] of type [{}] as image set [{}].",
-                            methodeContent.getUuid(), methodeContent.getType(), uuid);
-                    LOG.info("Event for {}.", methodeContent.getUuid());
-                    mapper.mapImageSet(uuid, methodeContent, transactionId, message.getMessageTimestamp());
-                } else {
-                    LOG.info("Skip message [{}] of type [{}]", methodeContent.getUuid(), methodeContent.getType());
+                    uuid = DeriveUUID.with(Salts.IMAGE_SET).from(methodeUuid).toString();
                 }
-            } catch (IOException e) {
-                throw new IngesterException("Unable to parse Methode content message", e);
+                timings.uuidDerived(System.nanoTime() - stageStart, uuid);
+                final Lane lane = laneClassifier.classify(message, transactionId, methodeContent);
+                LOG.info("Importing content [{}] of type [{}] as image set [{}] in {} lane.",
+                        methodeContent.getUuid(), methodeContent.getType(), uuid, lane.metricName());
+                LOG.info("Event for {}.", methodeContent.getUuid());
+                final long handedOverAt = System.nanoTime();
+                handingOver = true;
+                handOver(uuid, lane, message.getMessageId(), () -> {
+                    final long startedAt = System.nanoTime();
+                    PublishOutcome published = null;
+                    try {
+                        published = mapWithRetries(uuid, methodeContent, transactionId, messageTimestamp);
+                        if (published == PublishOutcome.SENT) {
+                            published(messageTimestamp, methodeContent.getLastModified());
+                        }
+                    } finally {
+                        timings.mappedAndPublished(startedAt - handedOverAt, System.nanoTime() - startedAt);
+                        processing.finished(published);
+                    }
+                });
+                handedOver = true;
+            } else {
+                LOG.info("Skip message [{}] of type [{}]", methodeContent.getUuid(), methodeContent.getType());
+                outcome = "skipped";
+                skipped(EomFileContentType.IMAGE.getContentType().equals(methodeContent.getType())
+                        ? "not-valid-for-publishing" : "not-an-image");
+            }
+        } catch (IOException e) {
+            failed("unparseable");
+            throw new IngesterException("Unable to parse Methode content message", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed("interrupted");
+            throw new IngesterException("Interrupted while handing over Methode content message", e);
+        } catch (RuntimeException e) {
+            if (!handingOver) {
+                // failures of handed over tasks are counted by the task itself
+                failed(e.getClass().getSimpleName());
+            }
+            throw e;
+        } finally {
+            if (!handedOver) {
+                processing.finished(outcome, false);
             }
-        } else {
-            LOG.info("Skip message from [{}]", message.getOriginSystemId());
         }
-        return true;
     }
 
+    /**
+     * Maps and publishes the image set, retrying up to {@code maxAttempts} times in all with a doubling backoff, unless
+     * the message itself cannot be mapped. The backoff holds up the thread, so that later messages for the same image
+     * set do not overtake this one.
+     */
+    private PublishOutcome mapWithRetries(String uuid, EomFile methodeContent, String transactionId, Date messageTimestamp) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return mapper.mapImageSet(uuid, methodeContent, transactionId, messageTimestamp);
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts || isUnmappable(e)) {
+                    throw e;
+                }
+                final long backoffMillis = retryBackoffMillis << (attempt - 1);
+                LOG.warn("Attempt {} of {} to publish image set [{}] failed, retrying in {} ms.",
+                        attempt, maxAttempts, uuid, backoffMillis, e);
+                metrics.counter(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "retried",
+                        e.getClass().getSimpleName())).inc();
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands the task over to the workers. With a commit coordinator, the message is completed once the task has
+     * published or spooled it, or has found it cannot be mapped; any other failure holds back commits until the message
+     * is consumed again under the same id and processed, so that it is delivered again after a restart.
+     */
+    private void handOver(String uuid, Lane lane, UUID messageId, Runnable task) throws InterruptedException {
+        final CommitCoordinator.Ticket ticket = commitCoordinator == null ? null : commitCoordinator.consumed(messageId);
+        try {
+            workerPool.execute(uuid, lane, () -> {
+                try {
+                    task.run();
+                } catch (RuntimeException | Error e) {
+                    failed(e.getClass().getSimpleName());
+                    if (ticket != null && !isUnmappable(e)) {
+                        ticket.fail();
+                    }
+                    throw e;
+                } finally {
+                    if (ticket != null) {
+                        ticket.complete();
+                    }
+                }
+            });
+        } catch (InterruptedException | RuntimeException e) {
+            if (ticket != null) {
+                ticket.fail();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return whether the message itself cannot be published, so that delivering it again would not help
+     */
+    private static boolean isUnmappable(Throwable e) {
+        return e instanceof MethodeContentNotSupportedException
+                || e instanceof TransformationException
+                || e instanceof ContentMapperException
+                || e instanceof IllegalArgumentException;
+    }
+
+    private void published(Date messageTimestamp, Date lastModified) {
+        final long now = System.currentTimeMillis();
+        if (messageTimestamp != null) {
+            eventAgesAtPublication.update(now - messageTimestamp.getTime());
+        }
+        if (lastModified != null) {
+            modificationAgesAtPublication.update(now - lastModified.getTime());
+        }
+    }
+
+    /**
+     * What is left to record about a message once it is finished with, on whichever thread that happens first.
+     */
+    private class Processing {
+
+        private final MessageTimings timings;
+        private final long receipt;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        Processing(MessageTimings timings, long receipt) {
+            this.timings = timings;
+            this.receipt = receipt;
+        }
+
+        void finished(PublishOutcome published) {
+            if (published == null) {
+                finished("failed", false);
+            } else if (published == PublishOutcome.SENT) {
+                finished("published", true);
+            } else if (published == PublishOutcome.UNCHANGED) {
+                finished("unchanged", true);
+            } else {
+                finished("spooled", false);
+            }
+        }
+
+        void finished(String outcome, boolean published) {
+            if (finished.compareAndSet(false, true)) {
+                slowMessages.record(timings.finished(outcome));
+                progress.finished(receipt, published);
+            }
+        }
+    }
+
+    private void skipped(String reason) {
+        metrics.counter(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "skipped", reason)).inc();
+    }
+
+    private void failed(String reason) {
+        metrics.counter(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "failed", reason)).inc();
+    }
+
+    public static class Builder {
+        private final String systemCode;
+        private final MessageProducingContentMapper mapper;
+        private final ObjectMapper objectMapper;
+        private final PublishingValidator publishingValidator;
+        private KeyedWorkerPool workerPool = KeyedWorkerPool.inline();
+        private MetricRegistry metrics = new MetricRegistry();
+        private LaneClassifier laneClassifier = LaneClassifier.allLive();
+        private CommitCoordinator commitCoordinator;
+        private SlowMessageRecorder slowMessages = SlowMessageRecorder.disabled();
+        private PublicationProgress progress = new PublicationProgress();
+        private int maxAttempts = 1;
+        private long retryBackoffMillis;
+
+        public Builder(String systemCode, MessageProducingContentMapper mapper, ObjectMapper objectMapper,
+                       PublishingValidator publishingValidator) {
+            this.systemCode = systemCode;
+            this.mapper = mapper;
+            this.objectMapper = objectMapper;
+            this.publishingValidator = publishingValidator;
+        }
+
+        public Builder withWorkerPool(KeyedWorkerPool workerPool) {
+            this.workerPool = workerPool;
+            return this;
+        }
+
+        public Builder withMetrics(MetricRegistry metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder withLaneClassifier(LaneClassifier laneClassifier) {
+            this.laneClassifier = laneClassifier;
+            return this;
+        }
+
+        /**
+         * @param commitCoordinator told when each handed over message has been processed. Without one, offsets are
+         *                          committed as soon as messages are consumed.
+         */
+        public Builder withCommitCoordinator(CommitCoordinator commitCoordinator) {
+            this.commitCoordinator = commitCoordinator;
+            return this;
+        }
+
+        public Builder withSlowMessages(SlowMessageRecorder slowMessages) {
+            this.slowMessages = slowMessages;
+            return this;
+        }
+
+        /**
+         * @param progress told of every message received and finished with, to work out the lag behind Methode
+         */
+        public Builder withPublicationProgress(PublicationProgress progress) {
+            this.progress = progress;
+            return this;
+        }
+
+        /**
+         * @param maxAttempts        number of times to map and publish a message before giving up on it
+         * @param retryBackoffMillis wait before the first retry, doubled for each one after it
+         */
+        public Builder withRetries(int maxAttempts, long retryBackoffMillis) {
+            this.maxAttempts = maxAttempts;
+            this.retryBackoffMillis = retryBackoffMillis;
+            return this;
+        }
+
+        public NativeCmsPublicationEventsListener build() {
+            return new NativeCmsPublicationEventsListener(this);
+        }
+    }
 }
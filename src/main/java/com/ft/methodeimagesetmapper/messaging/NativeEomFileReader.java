@@ -0,0 +1,67 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserSequence;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.ft.methodeimagesetmapper.model.EomFile;
+import com.ft.methodeimagesetmapper.model.EomFileContentType;
+
+import java.io.IOException;
+
+/**
+ * Reads the {@link EomFile} carried by a native Methode message, using a single cached reader.
+ * <p>
+ * The body is streamed until the {@code type} field is found. If the content is not an image, reading stops there and
+ * only the uuid (when it came before the type) and type are returned, so the attributes, usage tickets and image
+ * bytes of other content are never parsed. Otherwise the fields read so far are replayed ahead of the rest of the
+ * stream into the full {@link EomFile}.
+ */
+public class NativeEomFileReader {
+
+    private static final String UUID_FIELD = "uuid";
+    private static final String TYPE_FIELD = "type";
+
+    private final ObjectReader reader;
+
+    public NativeEomFileReader(ObjectMapper objectMapper) {
+        this.reader = objectMapper.reader(EomFile.class);
+    }
+
+    public EomFile read(String messageBody) throws IOException {
+        final JsonParser parser = reader.getFactory().createParser(messageBody);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return reader.readValue(parser);
+            }
+
+            final TokenBuffer prefix = new TokenBuffer(parser);
+            prefix.writeStartObject();
+            String uuid = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken valueToken = parser.nextToken();
+                if (TYPE_FIELD.equals(field)) {
+                    final String type = valueToken == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    if (!EomFileContentType.IMAGE.getContentType().equals(type)) {
+                        return new EomFile.Builder().withUuid(uuid).withType(type).build();
+                    }
+                    prefix.writeFieldName(field);
+                    prefix.copyCurrentEvent(parser);
+                    return reader.readValue(JsonParserSequence.createFlattened(prefix.asParser(parser), parser));
+                }
+                if (UUID_FIELD.equals(field) && valueToken == JsonToken.VALUE_STRING) {
+                    uuid = parser.getText();
+                }
+                prefix.writeFieldName(field);
+                prefix.copyCurrentStructure(parser);
+            }
+            prefix.writeEndObject();
+            return reader.readValue(prefix.asParser(parser));
+        } finally {
+            parser.close();
+        }
+    }
+}
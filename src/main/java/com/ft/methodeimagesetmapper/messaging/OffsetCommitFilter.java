@@ -0,0 +1,91 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import com.sun.jersey.core.header.InBoundHeaders;
+import com.sun.jersey.spi.MessageBodyWorkers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Holds back the offset commits the consumer sends to the kafka-proxy until the messages they cover have been
+ * processed, as tracked by the {@link CommitCoordinator}, and batches them.
+ * <p>
+ * A kafka-proxy commit covers everything the consumer instance has read so far, so a commit that is not yet due, or
+ * whose messages have not all completed, is answered locally as if it had succeeded and left to the next one. While a
+ * failed message has not been consumed again and completed, every commit is answered that way.
+ * <p>
+ * Commits are sent from the consumer thread. A due commit goes ahead if every message consumed has completed by then,
+ * without waiting for any. Only once commits have been put off for {@code maxDelayMillis} does a due commit block the
+ * consumer, for up to {@code completionTimeoutMillis}, until the messages in flight have been processed, so that
+ * commits are still made under sustained load.
+ */
+public class OffsetCommitFilter extends ClientFilter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OffsetCommitFilter.class);
+    private static final String OFFSETS_PATH = "/offsets";
+    private static final byte[] NO_OFFSETS = "[]".getBytes(StandardCharsets.UTF_8);
+
+    private final CommitCoordinator coordinator;
+    private final MessageBodyWorkers workers;
+    private final long maxDelayMillis;
+    private final long completionTimeoutMillis;
+
+    public OffsetCommitFilter(CommitCoordinator coordinator, MessageBodyWorkers workers, long maxDelayMillis,
+                              long completionTimeoutMillis) {
+        this.coordinator = coordinator;
+        this.workers = workers;
+        this.maxDelayMillis = maxDelayMillis;
+        this.completionTimeoutMillis = completionTimeoutMillis;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        if (!HttpMethod.POST.equals(request.getMethod()) || !request.getURI().getPath().endsWith(OFFSETS_PATH)) {
+            return getNext().handle(request);
+        }
+        if (!coordinator.isCommitDue()) {
+            return deferred();
+        }
+        final long upTo;
+        if (coordinator.getMillisSinceCommit() < maxDelayMillis) {
+            upTo = coordinator.committable();
+            if (upTo < 0) {
+                LOG.debug("Deferring offset commit, {} messages not processed yet.", coordinator.getInFlight());
+                return deferred();
+            }
+        } else {
+            try {
+                upTo = coordinator.awaitCompletion(completionTimeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ClientHandlerException("Interrupted while waiting for messages to be processed", e);
+            }
+            if (upTo < 0) {
+                LOG.warn("Deferring offset commit, {} messages not processed after {} ms, of which {} failed.",
+                        coordinator.getInFlight(), completionTimeoutMillis, coordinator.getFailed());
+                return deferred();
+            }
+        }
+        final long start = System.nanoTime();
+        final ClientResponse response = getNext().handle(request);
+        if (response.getStatus() < 300) {
+            coordinator.committed(upTo, System.nanoTime() - start);
+        }
+        return response;
+    }
+
+    private ClientResponse deferred() {
+        final InBoundHeaders headers = new InBoundHeaders();
+        headers.putSingle(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON);
+        return new ClientResponse(200, headers, new ByteArrayInputStream(NO_OFFSETS), workers);
+    }
+}
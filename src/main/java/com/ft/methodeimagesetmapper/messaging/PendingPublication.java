@@ -0,0 +1,32 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.ft.messaging.standards.message.v1.Message;
+
+/**
+ * An image set mapped and ready to be published by {@link MessageProducingContentMapper#publish(java.util.List)},
+ * together with whatever other image sets it is published with.
+ */
+public class PendingPublication {
+
+    private final String uuid;
+    private final long fingerprint;
+    private final Message message;
+
+    PendingPublication(String uuid, long fingerprint, Message message) {
+        this.uuid = uuid;
+        this.fingerprint = fingerprint;
+        this.message = message;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    long getFingerprint() {
+        return fingerprint;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+}
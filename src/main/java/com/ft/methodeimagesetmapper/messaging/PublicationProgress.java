@@ -0,0 +1,78 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Follows native events from their receipt until they are finished with, so that how far publishing lags behind
+ * Methode is known as of the moment it is asked, even while nothing moves.
+ * <p>
+ * The lag is the age of the oldest event received and not yet finished with or, when there is none, of the last event
+ * received. Publishing has stalled while events are waiting and no image set has been published since the oldest of
+ * them was received; an image set found unchanged counts as published, one spooled does not.
+ */
+public class PublicationProgress {
+
+    private final Map<Long, Receipt> waiting = new LinkedHashMap<>();
+    private long received;
+    private long lastEventTime;
+    private long lastPublishedAt;
+
+    /**
+     * @param eventTimestamp when the event happened in Methode, or {@code null} if unknown
+     * @return the receipt to pass to {@link #finished(long, boolean)}
+     */
+    public synchronized long received(Date eventTimestamp) {
+        final long now = System.currentTimeMillis();
+        lastEventTime = eventTimestamp == null ? now : eventTimestamp.getTime();
+        waiting.put(++received, new Receipt(lastEventTime, now));
+        return received;
+    }
+
+    /**
+     * Marks the event as finished with; finishing it again has no effect.
+     *
+     * @param published whether its image set was published, or already had been
+     */
+    public synchronized void finished(long receipt, boolean published) {
+        if (waiting.remove(receipt) != null && published) {
+            lastPublishedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized long getLagMillis() {
+        if (received == 0) {
+            return 0;
+        }
+        final Iterator<Receipt> oldest = waiting.values().iterator();
+        return System.currentTimeMillis() - (oldest.hasNext() ? oldest.next().eventTime : lastEventTime);
+    }
+
+    /**
+     * @return how long events have been waiting with no image set published, or {@code 0} if none is waiting
+     */
+    public synchronized long getStalledMillis() {
+        final Iterator<Receipt> oldest = waiting.values().iterator();
+        if (!oldest.hasNext()) {
+            return 0;
+        }
+        return System.currentTimeMillis() - Math.max(oldest.next().receivedAt, lastPublishedAt);
+    }
+
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    private static class Receipt {
+
+        private final long eventTime;
+        private final long receivedAt;
+
+        Receipt(long eventTime, long receivedAt) {
+            this.eventTime = eventTime;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
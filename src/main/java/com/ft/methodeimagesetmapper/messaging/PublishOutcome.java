@@ -0,0 +1,13 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+/**
+ * What {@link MessageProducingContentMapper} did with an image set it was asked to publish.
+ */
+public enum PublishOutcome {
+    /** Sent to the kafka-proxy. */
+    SENT,
+    /** Spooled, to be sent once the kafka-proxy can be reached again. */
+    SPOOLED,
+    /** Not sent, as it was already published from identical input. */
+    UNCHANGED
+}
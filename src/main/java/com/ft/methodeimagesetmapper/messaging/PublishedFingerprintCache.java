@@ -0,0 +1,87 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.ft.methodeimagesetmapper.model.EomFile;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers, per image set, a fingerprint of the Methode fields the published image set is built from, so that events
+ * that would produce the same image set again (workflow changes, re-saves, republish sweeps) can be skipped before
+ * their XML is parsed.
+ * <p>
+ * The cache is bounded and entries expire, so an unchanged image is still published again once its entry is evicted.
+ * Events whose transaction id starts with the configured prefix are always published.
+ */
+public class PublishedFingerprintCache {
+
+    private static final HashFunction FINGERPRINT = Hashing.murmur3_128();
+
+    private final Cache<String, Long> published;
+    private final String forcePublishPrefix;
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter forced;
+
+    public PublishedFingerprintCache(long maximumSize, long ttlMillis, String forcePublishPrefix, MetricRegistry metrics) {
+        this.published = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(maximumSize, 0))
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .build();
+        this.forcePublishPrefix = forcePublishPrefix;
+        this.hits = metrics.meter(MetricRegistry.name(PublishedFingerprintCache.class, "hits"));
+        this.misses = metrics.meter(MetricRegistry.name(PublishedFingerprintCache.class, "misses"));
+        this.forced = metrics.meter(MetricRegistry.name(PublishedFingerprintCache.class, "forced"));
+        metrics.register(MetricRegistry.name(PublishedFingerprintCache.class, "size"), (Gauge<Long>) published::size);
+    }
+
+    public static PublishedFingerprintCache disabled() {
+        return new PublishedFingerprintCache(0, 0, null, new MetricRegistry());
+    }
+
+    public static long fingerprint(EomFile eomFile) {
+        final Hasher hasher = FINGERPRINT.newHasher();
+        putNullable(hasher, eomFile.getAttributes());
+        putNullable(hasher, eomFile.getSystemAttributes());
+        putNullable(hasher, eomFile.getUsageTickets());
+        hasher.putBoolean(eomFile.hasValue());
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * @return whether the image set was last published from input with the same fingerprint, and the event is not a
+     * forced publish
+     */
+    public boolean isUnchanged(String imageSetUuid, long fingerprint, String transactionId) {
+        if (forcePublishPrefix != null && transactionId != null && transactionId.startsWith(forcePublishPrefix)) {
+            forced.mark();
+            return false;
+        }
+        final Long last = published.getIfPresent(imageSetUuid);
+        if (last != null && last == fingerprint) {
+            hits.mark();
+            return true;
+        }
+        misses.mark();
+        return false;
+    }
+
+    public void recordPublished(String imageSetUuid, long fingerprint) {
+        published.put(imageSetUuid, fingerprint);
+    }
+
+    private static void putNullable(Hasher hasher, String value) {
+        if (value == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(value.length()).putUnencodedChars(value);
+        }
+    }
+}
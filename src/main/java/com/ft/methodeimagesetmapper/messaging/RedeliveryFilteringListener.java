@@ -0,0 +1,97 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.ft.message.consumer.MessageListener;
+import com.ft.messaging.standards.message.v1.Message;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.UUID;
+
+/**
+ * Drops messages redelivered after consumer rebalances or kafka-proxy retries before the delegate listener parses
+ * them, by remembering the ids of recently consumed messages.
+ * <p>
+ * The ids are kept in two Bloom filters, each sized for {@code expectedMessages} at {@code falsePositiveRate}, so
+ * memory use is fixed whatever the traffic. New ids go into the current filter; once it has been filled for
+ * {@code windowMillis} or holds {@code expectedMessages} ids, it becomes the previous filter and the old previous
+ * one is cleared. An id is thus remembered for at least one window and forgotten after at most two. A false positive
+ * drops a new message, hence the low default rate.
+ * <p>
+ * An id is only remembered once the delegate has handled the message without throwing, so that a message the
+ * consumer delivers again after a failure is not dropped.
+ */
+public class RedeliveryFilteringListener implements MessageListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RedeliveryFilteringListener.class);
+    private static final Funnel<UUID> MESSAGE_ID_FUNNEL = (messageId, into) -> into
+            .putLong(messageId.getMostSignificantBits())
+            .putLong(messageId.getLeastSignificantBits());
+
+    private final MessageListener delegate;
+    private final int expectedMessages;
+    private final long windowMillis;
+    private final double falsePositiveRate;
+    private final Counter suppressed;
+    private final Counter rotations;
+    private BloomFilter<UUID> current;
+    private BloomFilter<UUID> previous;
+    private int currentCount;
+    private long currentSince;
+
+    public RedeliveryFilteringListener(MessageListener delegate, int expectedMessages, long windowMillis,
+                                       double falsePositiveRate, MetricRegistry metrics) {
+        this.delegate = delegate;
+        this.expectedMessages = expectedMessages;
+        this.windowMillis = windowMillis;
+        this.falsePositiveRate = falsePositiveRate;
+        this.suppressed = metrics.counter(MetricRegistry.name(RedeliveryFilteringListener.class, "suppressed"));
+        this.rotations = metrics.counter(MetricRegistry.name(RedeliveryFilteringListener.class, "rotations"));
+        this.current = newFilter();
+        this.previous = newFilter();
+        this.currentSince = System.currentTimeMillis();
+    }
+
+    @Override
+    public boolean onMessage(Message message, String transactionId) {
+        final UUID messageId = message.getMessageId();
+        if (messageId == null) {
+            return delegate.onMessage(message, transactionId);
+        }
+        if (alreadyDelivered(messageId)) {
+            suppressed.inc();
+            LOG.info("Skip message [{}], already delivered.", messageId);
+            return true;
+        }
+        final boolean handled = delegate.onMessage(message, transactionId);
+        if (handled) {
+            delivered(messageId);
+        }
+        return handled;
+    }
+
+    private synchronized boolean alreadyDelivered(UUID messageId) {
+        final long now = System.currentTimeMillis();
+        if (currentCount >= expectedMessages || now - currentSince >= windowMillis) {
+            previous = current;
+            current = newFilter();
+            currentCount = 0;
+            currentSince = now;
+            rotations.inc();
+        }
+        return current.mightContain(messageId) || previous.mightContain(messageId);
+    }
+
+    private synchronized void delivered(UUID messageId) {
+        if (current.put(messageId)) {
+            currentCount++;
+        }
+    }
+
+    private BloomFilter<UUID> newFilter() {
+        return BloomFilter.create(MESSAGE_ID_FUNNEL, expectedMessages, falsePositiveRate);
+    }
+}
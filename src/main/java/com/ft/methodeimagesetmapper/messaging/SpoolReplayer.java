@@ -0,0 +1,165 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.ft.messaging.standards.message.v1.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Replays spooled messages to the kafka-proxy, oldest first, in batches of up to {@code batchSize}. A batch leaves
+ * the spool only once it has been sent; after a failure the replayer backs off exponentially up to
+ * {@code maxBackoffMillis} before trying again, with the oldest message alone.
+ * <p>
+ * Once the kafka-proxy has {@linkplain MessageRejectionFilter#isRejection(Throwable) rejected} the oldest message
+ * {@code maxAttempts} times in a row, or right away if it cannot even be turned back into a message, it is appended to
+ * the {@code deadLetters} file as a line of JSON and taken out of the spool, so that it does not hold up the ones
+ * behind it. Connection failures, server errors and any other failure are only ever retried, however long an outage
+ * lasts: messages are not dead-lettered for being old.
+ */
+public class SpoolReplayer implements Managed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SpoolReplayer.class);
+
+    private final MessageSpool spool;
+    private final MessageProducingContentMapper mapper;
+    private final int batchSize;
+    private final long intervalMillis;
+    private final long maxBackoffMillis;
+    private final int maxAttempts;
+    private final Path deadLetters;
+    private final ObjectWriter deadLetterWriter;
+    private final MetricRegistry metrics;
+    private final Thread replayer;
+    private volatile boolean running;
+    private int failedAttempts;
+    private int rejections;
+
+    public SpoolReplayer(MessageSpool spool, MessageProducingContentMapper mapper, int batchSize,
+                         long intervalMillis, long maxBackoffMillis, int maxAttempts, Path deadLetters,
+                         ObjectMapper objectMapper, MetricRegistry metrics) {
+        this.spool = spool;
+        this.mapper = mapper;
+        this.batchSize = batchSize;
+        this.intervalMillis = intervalMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxAttempts = maxAttempts;
+        this.deadLetters = deadLetters;
+        this.deadLetterWriter = objectMapper.writerWithType(SpooledMessage.class);
+        this.metrics = metrics;
+        this.replayer = new Thread(this::replayContinuously, "spool-replayer");
+        this.replayer.setDaemon(true);
+
+        metrics.register(MetricRegistry.name(MessageSpool.class, "depth"), (Gauge<Long>) spool::size);
+        metrics.register(MetricRegistry.name(MessageSpool.class, "used-bytes"), (Gauge<Long>) spool::getUsedBytes);
+        metrics.register(MetricRegistry.name(MessageSpool.class, "oldest-age-millis"), (Gauge<Long>) () -> {
+            final long oldest = spool.getOldestSpooledAt();
+            return oldest == 0 ? 0 : System.currentTimeMillis() - oldest;
+        });
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        replayer.start();
+    }
+
+    @Override
+    public void stop() throws Exception {
+        running = false;
+        replayer.interrupt();
+        replayer.join();
+        spool.close();
+    }
+
+    private void replayContinuously() {
+        long backoff = intervalMillis;
+        while (running) {
+            try {
+                if (replayOnce()) {
+                    backoff = intervalMillis;
+                    continue;
+                }
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                metrics.counter(MetricRegistry.name(SpoolReplayer.class, "failed")).inc();
+                LOG.warn("Failed replaying spooled messages, retrying in {} ms.", backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, maxBackoffMillis);
+            }
+        }
+    }
+
+    /**
+     * @return whether a batch was replayed
+     */
+    boolean replayOnce() throws IOException {
+        final MessageSpool.Batch batch = spool.peek(failedAttempts == 0 ? batchSize : 1);
+        if (batch.isEmpty()) {
+            return false;
+        }
+        final List<Message> messages;
+        try {
+            messages = batch.getMessages().stream().map(mapper::toMessage).collect(Collectors.toList());
+        } catch (RuntimeException e) {
+            if (batch.getMessages().size() == 1) {
+                deadLetter(batch, e);
+                return true;
+            }
+            failedAttempts++;
+            throw e;
+        }
+        try {
+            mapper.send(messages);
+        } catch (RuntimeException e) {
+            failedAttempts++;
+            rejections = messages.size() == 1 && MessageRejectionFilter.isRejection(e) ? rejections + 1 : 0;
+            if (rejections >= maxAttempts) {
+                deadLetter(batch, e);
+                return true;
+            }
+            throw e;
+        }
+        failedAttempts = 0;
+        rejections = 0;
+        spool.remove(batch);
+        metrics.counter(MetricRegistry.name(SpoolReplayer.class, "replayed")).inc(messages.size());
+        LOG.info("Replayed {} spooled messages, {} left in spool.", messages.size(), spool.size());
+        return true;
+    }
+
+    private void deadLetter(MessageSpool.Batch batch, RuntimeException failure) throws IOException {
+        final ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        for (SpooledMessage message : batch.getMessages()) {
+            lines.write(deadLetterWriter.writeValueAsBytes(message));
+            lines.write('\n');
+        }
+        Files.write(deadLetters, lines.toByteArray(), StandardOpenOption.CREATE, StandardOpenOption.APPEND,
+                StandardOpenOption.SYNC);
+        spool.remove(batch);
+        metrics.counter(MetricRegistry.name(SpoolReplayer.class, "dead-lettered")).inc(batch.getMessages().size());
+        LOG.error("Moved spooled message [{}] to {} after {} failed attempts to replay it.",
+                batch.getMessages().get(0).getMessageId(), deadLetters, failedAttempts, failure);
+        failedAttempts = 0;
+        rejections = 0;
+    }
+}
@@ -0,0 +1,55 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The parts of a published message that vary per image set, as kept in the {@link MessageSpool}; the rest is the same
+ * for every message this service publishes.
+ */
+public class SpooledMessage {
+
+    private final String key;
+    private final String messageId;
+    private final long messageTimestamp;
+    private final String transactionId;
+    private final String body;
+
+    @JsonCreator
+    public SpooledMessage(@JsonProperty("key") String key,
+                          @JsonProperty("messageId") String messageId,
+                          @JsonProperty("messageTimestamp") long messageTimestamp,
+                          @JsonProperty("transactionId") String transactionId,
+                          @JsonProperty("body") String body) {
+        this.key = key;
+        this.messageId = messageId;
+        this.messageTimestamp = messageTimestamp;
+        this.transactionId = transactionId;
+        this.body = body;
+    }
+
+    @JsonProperty
+    public String getKey() {
+        return key;
+    }
+
+    @JsonProperty
+    public String getMessageId() {
+        return messageId;
+    }
+
+    @JsonProperty
+    public long getMessageTimestamp() {
+        return messageTimestamp;
+    }
+
+    @JsonProperty
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    @JsonProperty
+    public String getBody() {
+        return body;
+    }
+}
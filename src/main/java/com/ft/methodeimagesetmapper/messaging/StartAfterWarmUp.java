@@ -0,0 +1,69 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts the delegate once warm-up has completed, or after {@code timeoutMillis} at the latest. The wait happens on a
+ * thread of its own, so the rest of the service, {@code /__health} and {@code /__gtg} included, starts meanwhile.
+ * Keeps the consumer from taking messages while the mapping path is still cold and competing with warm-up for CPU.
+ */
+public class StartAfterWarmUp implements Managed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartAfterWarmUp.class);
+
+    private final Managed delegate;
+    private final MappingWarmUp warmUp;
+    private final long timeoutMillis;
+    private final Thread starter;
+    private boolean started;
+    private boolean stopped;
+
+    public StartAfterWarmUp(Managed delegate, MappingWarmUp warmUp, long timeoutMillis) {
+        this.delegate = delegate;
+        this.warmUp = warmUp;
+        this.timeoutMillis = timeoutMillis;
+        this.starter = new Thread(this::startWhenWarm, "start-after-warm-up");
+        this.starter.setDaemon(true);
+    }
+
+    @Override
+    public void start() {
+        starter.start();
+    }
+
+    @Override
+    public void stop() throws Exception {
+        synchronized (this) {
+            stopped = true;
+        }
+        starter.interrupt();
+        starter.join();
+        if (started) {
+            delegate.stop();
+        }
+    }
+
+    private void startWhenWarm() {
+        try {
+            if (!warmUp.awaitCompletion(timeoutMillis)) {
+                LOG.warn("Warm-up not complete after {} ms, starting regardless.", timeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            LOG.info("Stopped while warming up, not starting.");
+            return;
+        }
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            try {
+                delegate.start();
+                started = true;
+            } catch (Exception e) {
+                LOG.error("Failed starting after warm-up.", e);
+            }
+        }
+    }
+}
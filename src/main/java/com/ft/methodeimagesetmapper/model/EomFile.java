@@ -1,7 +1,9 @@
 package com.ft.methodeimagesetmapper.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import java.util.Date;
 
@@ -10,24 +12,35 @@ public class EomFile {
 
     private final String uuid;
     private final String type;
-    private final byte[] value;
+    private final int valueLength;
     private final String attributes;
     private final String workflowStatus;
     private final String systemAttributes;
     private final String usageTickets;
     private Date lastModified;
 
-    public EomFile(@JsonProperty("uuid") String uuid,
-                   @JsonProperty("type") String type,
-                   @JsonProperty("value") byte[] bytes,
-                   @JsonProperty("attributes") String attributes,
-                   @JsonProperty("workflowStatus") String workflowStatus,
-                   @JsonProperty("systemAttributes") String systemAttributes,
-                   @JsonProperty("usageTickets") String usageTickets,
-                   @JsonProperty("lastModified") Date lastModified) {
+    public EomFile(String uuid,
+                   String type,
+                   byte[] bytes,
+                   String attributes,
+                   String workflowStatus,
+                   String systemAttributes,
+                   String usageTickets,
+                   Date lastModified) {
+        this(uuid, type, bytes == null ? 0 : bytes.length, attributes, workflowStatus, systemAttributes, usageTickets, lastModified);
+    }
+
+    private EomFile(String uuid,
+                    String type,
+                    int valueLength,
+                    String attributes,
+                    String workflowStatus,
+                    String systemAttributes,
+                    String usageTickets,
+                    Date lastModified) {
         this.uuid = uuid;
         this.type = type;
-        this.value = bytes;
+        this.valueLength = valueLength;
         this.attributes = attributes;
         this.workflowStatus = workflowStatus;
         this.systemAttributes = systemAttributes;
@@ -35,6 +48,22 @@ public class EomFile {
         this.lastModified = lastModified;
     }
 
+    /**
+     * The image bytes are only ever checked for presence, so only their length is read from the JSON.
+     */
+    @JsonCreator
+    public static EomFile fromJson(@JsonProperty("uuid") String uuid,
+                                   @JsonProperty("type") String type,
+                                   @JsonProperty("value") @JsonDeserialize(using = ImageBytesLengthDeserializer.class) Integer valueLength,
+                                   @JsonProperty("attributes") String attributes,
+                                   @JsonProperty("workflowStatus") String workflowStatus,
+                                   @JsonProperty("systemAttributes") String systemAttributes,
+                                   @JsonProperty("usageTickets") String usageTickets,
+                                   @JsonProperty("lastModified") Date lastModified) {
+        return new EomFile(uuid, type, valueLength == null ? 0 : valueLength, attributes, workflowStatus,
+                systemAttributes, usageTickets, lastModified);
+    }
+
     public String getUuid() {
         return uuid;
     }
@@ -43,8 +72,12 @@ public class EomFile {
         return type;
     }
 
-    public byte[] getValue() {
-        return value;
+    public int getValueLength() {
+        return valueLength;
+    }
+
+    public boolean hasValue() {
+        return valueLength > 0;
     }
 
     public String getAttributes() {
@@ -0,0 +1,49 @@
+package com.ft.methodeimagesetmapper.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Reads a base64 encoded binary value and returns its decoded length, streaming the decoded bytes into a counter
+ * instead of materialising them. Used for the image bytes of an {@link EomFile}, of which we only need to know
+ * whether they are present.
+ */
+public class ImageBytesLengthDeserializer extends JsonDeserializer<Integer> {
+
+    @Override
+    public Integer deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        final JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            final CountingOutputStream counter = new CountingOutputStream();
+            parser.readBinaryValue(context.getBase64Variant(), counter);
+            return counter.count;
+        }
+        if (token == JsonToken.VALUE_EMBEDDED_OBJECT) {
+            final Object embedded = parser.getEmbeddedObject();
+            if (embedded instanceof byte[]) {
+                return ((byte[]) embedded).length;
+            }
+        }
+        throw context.mappingException(byte[].class, token);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private int count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.ft.methodeimagesetmapper.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ft.content.model.Content;
+import com.ft.messaging.standards.message.v1.Message;
+import com.ft.methodeimagesetmapper.messaging.MessageProducingContentMapper;
+import com.ft.methodeimagesetmapper.messaging.NativeEomFileReader;
+import com.ft.methodeimagesetmapper.model.EomFile;
+import com.ft.methodeimagesetmapper.model.EomFileContentType;
+import com.ft.methodeimagesetmapper.service.MethodeImageSetMapper;
+import com.ft.methodeimagesetmapper.validation.PublishingValidator;
+import com.ft.uuidutils.DeriveUUID;
+import com.ft.uuidutils.DeriveUUID.Salts;
+import com.ft.uuidutils.UUIDValidation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Maps a corpus of native Methode messages, one message body (an {@link EomFile} as JSON) per line, the way the
+ * consumer would. Image sets take their last modified date from the corpus, so that replaying it again maps them the
+ * same.
+ * <p>
+ * The corpus is read a chunk at a time and the chunks mapped in parallel, with at most two chunks per thread in
+ * flight. Results are handled in corpus order: image sets are written to the output, one JSON document per line, and
+ * when there is a content mapper to publish with, each chunk is published in a single send.
+ */
+public class CorpusReplayer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CorpusReplayer.class);
+
+    private final MethodeImageSetMapper imageSetMapper;
+    private final PublishingValidator publishingValidator;
+    private final NativeEomFileReader eomFileReader;
+    private final ObjectMapper objectMapper;
+    private final MessageProducingContentMapper publisher;
+    private final ExecutorService executor;
+    private final int maxChunksInFlight;
+    private final int chunkSize;
+    private final String transactionId;
+
+    /**
+     * @param publisher publishes the mapped image sets, or {@code null} to only map them
+     */
+    public CorpusReplayer(MethodeImageSetMapper imageSetMapper, PublishingValidator publishingValidator,
+                          ObjectMapper objectMapper, MessageProducingContentMapper publisher,
+                          ExecutorService executor, int parallelism, int chunkSize, String transactionId) {
+        this.imageSetMapper = imageSetMapper;
+        this.publishingValidator = publishingValidator;
+        this.eomFileReader = new NativeEomFileReader(objectMapper);
+        this.objectMapper = objectMapper;
+        this.publisher = publisher;
+        this.executor = executor;
+        this.maxChunksInFlight = Math.max(parallelism, 1) * 2;
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.transactionId = transactionId;
+    }
+
+    /**
+     * @param output where the mapped image sets are written, or {@code null} to discard them
+     */
+    public ReplaySummary replay(BufferedReader corpus, Writer output) throws IOException {
+        final long start = System.nanoTime();
+        final ReplaySummary summary = new ReplaySummary();
+        final Deque<Future<List<Result>>> inFlight = new ArrayDeque<>();
+        List<String> chunk = new ArrayList<>(chunkSize);
+        String line;
+        while ((line = corpus.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            summary.read(line.length());
+            chunk.add(line);
+            if (chunk.size() == chunkSize) {
+                submit(chunk, inFlight);
+                chunk = new ArrayList<>(chunkSize);
+                if (inFlight.size() >= maxChunksInFlight) {
+                    complete(inFlight.poll(), output, summary);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            submit(chunk, inFlight);
+        }
+        while (!inFlight.isEmpty()) {
+            complete(inFlight.poll(), output, summary);
+        }
+        if (output != null) {
+            output.flush();
+        }
+        summary.finished(System.nanoTime() - start);
+        return summary;
+    }
+
+    private void submit(List<String> chunk, Deque<Future<List<Result>>> inFlight) {
+        inFlight.add(executor.submit(() -> {
+            final List<Result> results = new ArrayList<>(chunk.size());
+            for (String messageBody : chunk) {
+                results.add(map(messageBody));
+            }
+            return results;
+        }));
+    }
+
+    private Result map(String messageBody) {
+        try {
+            final EomFile methodeContent = eomFileReader.read(messageBody);
+            if (!publishingValidator.isValidForPublishing(methodeContent)) {
+                return Result.skipped(EomFileContentType.IMAGE.getContentType().equals(methodeContent.getType())
+                        ? "not-valid-for-publishing" : "not-an-image");
+            }
+            UUIDValidation.of(methodeContent.getUuid());
+            final String uuid = DeriveUUID.with(Salts.IMAGE_SET).from(UUID.fromString(methodeContent.getUuid())).toString();
+            final Content content = imageSetMapper.mapImageSet(uuid, methodeContent, transactionId,
+                    methodeContent.getLastModified());
+            return Result.mapped(content, publisher == null ? null : publisher.createMessage(content));
+        } catch (IOException e) {
+            return Result.failed("unparseable");
+        } catch (RuntimeException e) {
+            LOG.warn("Failed replaying message.", e);
+            return Result.failed(e.getClass().getSimpleName());
+        }
+    }
+
+    private void complete(Future<List<Result>> chunk, Writer output, ReplaySummary summary) throws IOException {
+        final List<Result> results;
+        try {
+            results = chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while replaying corpus");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed replaying chunk of corpus", e.getCause());
+        }
+
+        final List<Message> messages = new ArrayList<>(results.size());
+        for (Result result : results) {
+            if (result.failed != null) {
+                summary.failed(result.failed);
+            } else if (result.skipped != null) {
+                summary.skipped(result.skipped);
+            } else {
+                summary.mapped();
+                if (output != null) {
+                    output.write(objectMapper.writeValueAsString(result.content));
+                    output.write('\n');
+                }
+                if (result.message != null) {
+                    messages.add(result.message);
+                }
+            }
+        }
+        if (!messages.isEmpty()) {
+            try {
+                publisher.send(messages);
+                summary.published(messages.size());
+            } catch (RuntimeException e) {
+                LOG.error("Failed publishing {} image sets.", messages.size(), e);
+                for (int i = 0; i < messages.size(); i++) {
+                    summary.failed("publish");
+                }
+            }
+        }
+    }
+
+    private static class Result {
+
+        private final Content content;
+        private final Message message;
+        private final String skipped;
+        private final String failed;
+
+        private Result(Content content, Message message, String skipped, String failed) {
+            this.content = content;
+            this.message = message;
+            this.skipped = skipped;
+            this.failed = failed;
+        }
+
+        static Result mapped(Content content, Message message) {
+            return new Result(content, message, null, null);
+        }
+
+        static Result skipped(String reason) {
+            return new Result(null, null, reason, null);
+        }
+
+        static Result failed(String reason) {
+            return new Result(null, null, null, reason);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.ft.methodeimagesetmapper.replay;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts what happened to each message of a replayed corpus.
+ */
+public class ReplaySummary {
+
+    private final Map<String, Long> skipped = new TreeMap<>();
+    private final Map<String, Long> failed = new TreeMap<>();
+    private long messages;
+    private long characters;
+    private long mapped;
+    private long published;
+    private long elapsedNanos;
+
+    void read(int length) {
+        messages++;
+        characters += length;
+    }
+
+    void mapped() {
+        mapped++;
+    }
+
+    void published(int count) {
+        published += count;
+    }
+
+    void skipped(String reason) {
+        skipped.merge(reason, 1L, Long::sum);
+    }
+
+    void failed(String reason) {
+        failed.merge(reason, 1L, Long::sum);
+    }
+
+    void finished(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getMessages() {
+        return messages;
+    }
+
+    public long getMapped() {
+        return mapped;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    public Map<String, Long> getSkipped() {
+        return skipped;
+    }
+
+    public Map<String, Long> getFailed() {
+        return failed;
+    }
+
+    public void print(PrintStream out) {
+        final double seconds = Math.max(elapsedNanos, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+        final double megabytes = characters / (1024.0 * 1024.0);
+        out.printf("Replayed %d messages (%.1f MB) in %.1f s: %.1f messages/s, %.1f MB/s%n",
+                messages, megabytes, seconds, messages / seconds, megabytes / seconds);
+        out.printf("  mapped: %d, published: %d%n", mapped, published);
+        skipped.forEach((reason, count) -> out.printf("  skipped %s: %d%n", reason, count));
+        failed.forEach((reason, count) -> out.printf("  failed %s: %d%n", reason, count));
+    }
+}
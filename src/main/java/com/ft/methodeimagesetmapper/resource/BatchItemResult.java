@@ -0,0 +1,88 @@
+package com.ft.methodeimagesetmapper.resource;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.ft.api.jaxrs.errors.ErrorEntity;
+import com.ft.content.model.Content;
+import com.ft.methodeimagesetmapper.messaging.PendingPublication;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * The outcome of one image of a batch request, with the status code and error message its own request would have got.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+
+  private final String uuid;
+  private final int status;
+  private final String message;
+  private final Content content;
+  private final PendingPublication pendingPublication;
+
+  private BatchItemResult(String uuid, int status, String message, Content content,
+      PendingPublication pendingPublication) {
+    this.uuid = uuid;
+    this.status = status;
+    this.message = message;
+    this.content = content;
+    this.pendingPublication = pendingPublication;
+  }
+
+  static BatchItemResult mapped(String uuid, Content content) {
+    return new BatchItemResult(uuid, 200, null, content, null);
+  }
+
+  static BatchItemResult toPublish(String uuid, PendingPublication pendingPublication) {
+    return new BatchItemResult(uuid, 200, null, null, pendingPublication);
+  }
+
+  static BatchItemResult published(String uuid) {
+    return new BatchItemResult(uuid, 200, null, null, null);
+  }
+
+  static BatchItemResult spooled(String uuid) {
+    return new BatchItemResult(uuid, 200, "Spooled, to be published once the kafka-proxy can be reached.", null, null);
+  }
+
+  static BatchItemResult unchanged(String uuid) {
+    return new BatchItemResult(uuid, 200, "Unchanged since it was last published.", null, null);
+  }
+
+  static BatchItemResult failed(String uuid, int status, String message) {
+    return new BatchItemResult(uuid, status, message, null, null);
+  }
+
+  static BatchItemResult failed(String uuid, WebApplicationException e) {
+    final Response response = e.getResponse();
+    final Object entity = response.getEntity();
+    final String message = entity instanceof ErrorEntity ? ((ErrorEntity) entity).getMessage() : e.getMessage();
+    return failed(uuid, response.getStatus(), message);
+  }
+
+  @JsonProperty
+  public String getUuid() {
+    return uuid;
+  }
+
+  @JsonProperty
+  public int getStatus() {
+    return status;
+  }
+
+  @JsonProperty
+  public String getMessage() {
+    return message;
+  }
+
+  @JsonProperty
+  public Content getContent() {
+    return content;
+  }
+
+  @JsonIgnore
+  PendingPublication getPendingPublication() {
+    return pendingPublication;
+  }
+}
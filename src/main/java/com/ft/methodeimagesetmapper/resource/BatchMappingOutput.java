@@ -0,0 +1,111 @@
+package com.ft.methodeimagesetmapper.resource;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.ft.methodeimagesetmapper.model.EomFile;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import javax.ws.rs.core.StreamingOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams the results of a batch request while reading its body: images are read from the JSON array a chunk at a
+ * time, mapped in parallel, completed together (e.g. published in one send) and their results written out in request
+ * order before the next chunk is read, so neither the request nor the response is held in memory.
+ * <p>
+ * The status of the response is committed before the body is read, so a malformed body is reported as a final
+ * {@code 400} item after the results of the images read before it.
+ */
+class BatchMappingOutput implements StreamingOutput {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchMappingOutput.class);
+
+  private final JsonParser items;
+  private final ObjectReader eomFileReader;
+  private final ObjectMapper objectMapper;
+  private final ExecutorService executor;
+  private final int chunkSize;
+  private final Function<EomFile, BatchItemResult> mapping;
+  private final UnaryOperator<List<BatchItemResult>> chunkCompletion;
+
+  BatchMappingOutput(JsonParser items, ObjectMapper objectMapper, ExecutorService executor, int chunkSize,
+      Function<EomFile, BatchItemResult> mapping, UnaryOperator<List<BatchItemResult>> chunkCompletion) {
+    this.items = items;
+    this.eomFileReader = objectMapper.reader(EomFile.class);
+    this.objectMapper = objectMapper;
+    this.executor = executor;
+    this.chunkSize = Math.max(chunkSize, 1);
+    this.mapping = mapping;
+    this.chunkCompletion = chunkCompletion;
+  }
+
+  @Override
+  public void write(OutputStream output) throws IOException {
+    try (JsonParser parser = items;
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+      generator.writeStartArray();
+      String malformed = null;
+      boolean more = true;
+      while (more) {
+        final List<Future<BatchItemResult>> chunk = new ArrayList<>(chunkSize);
+        while (chunk.size() < chunkSize) {
+          final EomFile item;
+          try {
+            final JsonToken token = parser.nextToken();
+            if (token != JsonToken.START_OBJECT) {
+              more = false;
+              if (token != JsonToken.END_ARRAY) {
+                malformed = "Expected Methode content but found " + token;
+              }
+              break;
+            }
+            item = eomFileReader.readValue(parser);
+          } catch (JsonProcessingException e) {
+            LOGGER.warn("Malformed batch request.", e);
+            more = false;
+            malformed = e.getOriginalMessage();
+            break;
+          }
+          chunk.add(executor.submit(() -> mapping.apply(item)));
+        }
+        for (BatchItemResult result : chunkCompletion.apply(collect(chunk))) {
+          generator.writeObject(result);
+        }
+        generator.flush();
+      }
+      if (malformed != null) {
+        generator.writeObject(BatchItemResult.failed(null, 400, malformed));
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  private static List<BatchItemResult> collect(List<Future<BatchItemResult>> chunk) throws IOException {
+    final List<BatchItemResult> results = new ArrayList<>(chunk.size());
+    for (Future<BatchItemResult> result : chunk) {
+      try {
+        results.add(result.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while mapping batch");
+      } catch (ExecutionException e) {
+        LOGGER.error("Failed mapping batch item.", e.getCause());
+        results.add(BatchItemResult.failed(null, 500, e.getCause().getMessage()));
+      }
+    }
+    return results;
+  }
+}
@@ -0,0 +1,134 @@
+package com.ft.methodeimagesetmapper.resource;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.ft.api.jaxrs.errors.ServerError;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * Runs the work of mapping requests on a fixed number of threads with a bounded queue, so that a slow kafka-proxy or a
+ * burst of requests cannot take up every Jetty thread and starve {@code /__health} and {@code /__gtg}.
+ * <p>
+ * A request that finds the queue full is rejected straight away with a {@code 503} and {@code Retry-After}; one that
+ * does not complete within the timeout gets a {@code 504}. Work still queued then is cancelled, but work already
+ * running is left to finish rather than interrupted, as it may be halfway through sending to the kafka-proxy: the
+ * {@code 504} then means the outcome is unknown, and the work may still publish. The request thread waits for the
+ * result, so at most concurrency plus queue capacity Jetty threads are ever held by mapping requests.
+ * <p>
+ * Batch requests submit each of their images, and the publication of each chunk, separately, so a batch never holds
+ * more than one slot per batch mapping thread and an image that is rejected or times out fails on its own.
+ */
+public class BoundedRequestExecutor implements Managed {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BoundedRequestExecutor.class);
+
+  private static final String RETRY_AFTER = "Retry-After";
+  private static final String SERVICE_BUSY = "Service is busy, retry later.";
+  private static final String REQUEST_TIMED_OUT = "Request timed out before it started.";
+  private static final String OUTCOME_UNKNOWN = "Request timed out while running, its outcome is unknown.";
+
+  private final ThreadPoolExecutor executor;
+  private final long timeoutMillis;
+  private final long retryAfterSeconds;
+  private final Timer executions;
+  private final Meter rejections;
+  private final Meter timeouts;
+
+  public BoundedRequestExecutor(int maxConcurrency, int queueCapacity, long timeoutMillis, long retryAfterSeconds,
+      MetricRegistry metrics) {
+    this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+        new ThreadFactoryBuilder().setNameFormat("mapping-request-%d").setDaemon(true).build());
+    this.timeoutMillis = timeoutMillis;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.executions = metrics.timer(MetricRegistry.name(BoundedRequestExecutor.class, "executions"));
+    this.rejections = metrics.meter(MetricRegistry.name(BoundedRequestExecutor.class, "rejections"));
+    this.timeouts = metrics.meter(MetricRegistry.name(BoundedRequestExecutor.class, "timeouts"));
+    metrics.register(MetricRegistry.name(BoundedRequestExecutor.class, "queue-depth"),
+        (Gauge<Integer>) () -> executor.getQueue().size());
+    metrics.register(MetricRegistry.name(BoundedRequestExecutor.class, "active"),
+        (Gauge<Integer>) executor::getActiveCount);
+  }
+
+  public <T> T call(Callable<T> work) {
+    final Map<String, String> context = MDC.getCopyOfContextMap();
+    // claimed by whichever comes first: the work starting, or the caller giving up on it
+    final AtomicBoolean claimed = new AtomicBoolean();
+    final Future<T> result;
+    try {
+      result = executor.submit(() -> claimed.compareAndSet(false, true) ? callWithContext(context, work) : null);
+    } catch (RejectedExecutionException e) {
+      rejections.mark();
+      LOGGER.warn("Rejected request, {} requests already waiting.", executor.getQueue().size());
+      throw new WebApplicationException(e, Response.fromResponse(ServerError.status(503).error(SERVICE_BUSY).exception().getResponse())
+          .header(RETRY_AFTER, retryAfterSeconds)
+          .build());
+    }
+    try {
+      return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      timeouts.mark();
+      if (claimed.compareAndSet(false, true)) {
+        result.cancel(false);
+        throw ServerError.status(504).error(REQUEST_TIMED_OUT).exception(e);
+      }
+      throw ServerError.status(504).error(OUTCOME_UNKNOWN).exception(e);
+    } catch (InterruptedException e) {
+      if (claimed.compareAndSet(false, true)) {
+        result.cancel(false);
+      }
+      Thread.currentThread().interrupt();
+      throw ServerError.status(503).error(SERVICE_BUSY).exception(e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private <T> T callWithContext(Map<String, String> context, Callable<T> work) throws Exception {
+    if (context != null) {
+      MDC.setContextMap(context);
+    }
+    try (Timer.Context t = executions.time()) {
+      return work.call();
+    } finally {
+      MDC.clear();
+    }
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void stop() throws InterruptedException {
+    executor.shutdown();
+    if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+      executor.shutdownNow();
+    }
+  }
+}
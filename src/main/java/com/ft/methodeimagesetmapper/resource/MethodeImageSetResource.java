@@ -1,5 +1,8 @@
 package com.ft.methodeimagesetmapper.resource;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ft.api.jaxrs.errors.ClientError;
 import com.ft.api.jaxrs.errors.ServerError;
 import com.ft.api.util.transactionid.TransactionIdUtils;
@@ -9,20 +12,32 @@ import com.ft.methodeimagesetmapper.exception.MethodeContentNotSupportedExceptio
 import com.ft.methodeimagesetmapper.exception.TransformationException;
 import com.ft.methodeimagesetmapper.exception.ValidationException;
 import com.ft.methodeimagesetmapper.messaging.MessageProducingContentMapper;
+import com.ft.methodeimagesetmapper.messaging.PendingPublication;
+import com.ft.methodeimagesetmapper.messaging.PublishOutcome;
 import com.ft.methodeimagesetmapper.model.EomFile;
 import com.ft.methodeimagesetmapper.service.MethodeImageSetMapper;
 import com.ft.methodeimagesetmapper.validation.PublishingValidator;
 import com.ft.uuidutils.DeriveUUID;
 import com.ft.uuidutils.DeriveUUID.Salts;
 import com.ft.uuidutils.UUIDValidation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,18 +51,32 @@ public class MethodeImageSetResource {
   private static final String CONTENT_TYPE_NOT_SUPPORTED = "Unsupported type - not an image set.";
   private static final String CONTENT_CANNOT_BE_MAPPED = "Content cannot be mapped.";
   private static final String UNABLE_TO_WRITE_JSON_MESSAGE = "Unable to write JSON for message";
+  private static final String BATCH_NOT_AN_ARRAY = "Batch request body must be a JSON array of Methode content.";
+  private static final String UNABLE_TO_PUBLISH = "Unable to publish content, it may have been published in part.";
+  private static final String PUBLICATION_OUTCOME_UNKNOWN = "Publication timed out, its outcome is unknown.";
 
   private final MethodeImageSetMapper methodeImageSetMapper;
   private final MessageProducingContentMapper messageProducingContentMapper;
   private final PublishingValidator publishingValidator;
-
+  private final ObjectMapper objectMapper;
+  private final ExecutorService batchExecutor;
+  private final int batchChunkSize;
+  private final BoundedRequestExecutor requestExecutor;
 
   public MethodeImageSetResource(MethodeImageSetMapper methodeImageSetMapper,
       MessageProducingContentMapper messageProducingContentMapper,
-      PublishingValidator publishingValidator) {
+      PublishingValidator publishingValidator,
+      ObjectMapper objectMapper,
+      ExecutorService batchExecutor,
+      int batchChunkSize,
+      BoundedRequestExecutor requestExecutor) {
     this.methodeImageSetMapper = methodeImageSetMapper;
     this.messageProducingContentMapper = messageProducingContentMapper;
     this.publishingValidator = publishingValidator;
+    this.objectMapper = objectMapper;
+    this.batchExecutor = batchExecutor;
+    this.batchChunkSize = batchChunkSize;
+    this.requestExecutor = requestExecutor;
   }
 
   @POST
@@ -80,6 +109,10 @@ public class MethodeImageSetResource {
             .mapImageSet(uuid, methodeContent, transactionId, new Date()));
   }
 
+  /**
+   * Maps the image set and publishes it, or spools it when it cannot be sent. A {@code 504} means the outcome is
+   * unknown: the request timed out while the image set may still be being published, so it may or may not be.
+   */
   @POST
   @Path("/ingest")
   public final void ingestImageSet(EomFile methodeContent, @Context HttpHeaders httpHeaders) {
@@ -89,9 +122,115 @@ public class MethodeImageSetResource {
             .mapImageSet(methodeContent.getUuid(), methodeContent, transactionId, new Date()));
   }
 
-  private Content getModelAndHandleExceptions(EomFile methodeContent, HttpHeaders headers,
-      Action<Content> getContentModel) {
+  @POST
+  @Path("/map/batch")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON + CHARSET_UTF_8)
+  public final StreamingOutput mapImageSets(InputStream methodeContents, @Context HttpHeaders httpHeaders)
+      throws IOException {
+    final String transactionId = TransactionIdUtils.getTransactionIdOrDie(httpHeaders);
+    return batch(methodeContents, methodeContent -> {
+      try {
+        return BatchItemResult.mapped(methodeContent.getUuid(), requestExecutor.call(() ->
+            getModelAndHandleExceptions(methodeContent, transactionId, (tid) -> methodeImageSetMapper
+                .mapImageSet(methodeContent.getUuid(), methodeContent, tid, new Date()))));
+      } catch (WebApplicationException e) {
+        return BatchItemResult.failed(methodeContent.getUuid(), e);
+      }
+    }, UnaryOperator.identity());
+  }
+
+  /**
+   * Maps and publishes the image sets like {@code /ingest}, reporting the outcome of each one. As with
+   * {@code /ingest}, an image set failed with {@code 504} may or may not have been published, and so may one failed
+   * with {@code 503} because its chunk could not be published, as the kafka-proxy may have taken part of it.
+   */
+  @POST
+  @Path("/ingest/batch")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON + CHARSET_UTF_8)
+  public final StreamingOutput ingestImageSets(InputStream methodeContents, @Context HttpHeaders httpHeaders)
+      throws IOException {
+    final String transactionId = TransactionIdUtils.getTransactionIdOrDie(httpHeaders);
+    return batch(methodeContents, methodeContent -> {
+      try {
+        final PendingPublication publication = requestExecutor.call(() ->
+            getModelAndHandleExceptions(methodeContent, transactionId, (tid) ->
+                messageProducingContentMapper.prepare(methodeContent.getUuid(), methodeContent, tid, new Date())));
+        return publication == null
+            ? BatchItemResult.unchanged(methodeContent.getUuid())
+            : BatchItemResult.toPublish(methodeContent.getUuid(), publication);
+      } catch (WebApplicationException e) {
+        return BatchItemResult.failed(methodeContent.getUuid(), e);
+      }
+    }, this::publish);
+  }
+
+  /**
+   * Each image, and the publication of each chunk, is run by the request executor like a request of its own, so that
+   * batches count against the same bound as single requests and a busy or timed out image gets its own 503 or 504.
+   */
+  private StreamingOutput batch(InputStream methodeContents, Function<EomFile, BatchItemResult> mapping,
+      UnaryOperator<List<BatchItemResult>> chunkCompletion) throws IOException {
+    final JsonParser parser = objectMapper.getFactory().createParser(methodeContents);
+    if (parser.nextToken() != JsonToken.START_ARRAY) {
+      parser.close();
+      throw ClientError.status(400).error(BATCH_NOT_AN_ARRAY).exception();
+    }
+    return new BatchMappingOutput(parser, objectMapper, batchExecutor, batchChunkSize, mapping, chunkCompletion);
+  }
+
+  /**
+   * Publishes the image sets of the chunk the way {@code /ingest} publishes one, so that unchanged image sets were
+   * already left out and those that cannot be sent are spooled. When publishing fails the image sets of the chunk
+   * may still have been published in part, or in whole when it timed out, so their outcome is reported as unknown.
+   */
+  private List<BatchItemResult> publish(List<BatchItemResult> chunk) {
+    final List<PendingPublication> publications = new ArrayList<>(chunk.size());
+    for (BatchItemResult result : chunk) {
+      if (result.getPendingPublication() != null) {
+        publications.add(result.getPendingPublication());
+      }
+    }
+    PublishOutcome outcome = null;
+    String failure = UNABLE_TO_PUBLISH;
+    int failureStatus = 503;
+    if (!publications.isEmpty()) {
+      try {
+        outcome = requestExecutor.call(() -> messageProducingContentMapper.publish(publications));
+      } catch (WebApplicationException e) {
+        LOGGER.error("Failed publishing {} image sets of batch.", publications.size(), e);
+        if (e.getResponse().getStatus() == 504) {
+          failure = PUBLICATION_OUTCOME_UNKNOWN;
+          failureStatus = 504;
+        }
+      } catch (RuntimeException e) {
+        LOGGER.error("Failed publishing {} image sets of batch.", publications.size(), e);
+      }
+    }
+    final List<BatchItemResult> results = new ArrayList<>(chunk.size());
+    for (BatchItemResult result : chunk) {
+      if (result.getPendingPublication() == null) {
+        results.add(result);
+      } else if (outcome == PublishOutcome.SENT) {
+        results.add(BatchItemResult.published(result.getUuid()));
+      } else if (outcome == PublishOutcome.SPOOLED) {
+        results.add(BatchItemResult.spooled(result.getUuid()));
+      } else {
+        results.add(BatchItemResult.failed(result.getUuid(), failureStatus, failure));
+      }
+    }
+    return results;
+  }
+
+  private <T> T getModelAndHandleExceptions(EomFile methodeContent, HttpHeaders headers,
+      Action<T> getContentModel) {
     final String transactionId = TransactionIdUtils.getTransactionIdOrDie(headers);
+    return requestExecutor.call(() -> getModelAndHandleExceptions(methodeContent, transactionId, getContentModel));
+  }
+
+  private <T> T getModelAndHandleExceptions(EomFile methodeContent, String transactionId,
+      Action<T> getContentModel) {
     try {
       UUIDValidation.of(methodeContent.getUuid());
       if (publishingValidator.isValidForPublishing(methodeContent)) {
@@ -1,5 +1,7 @@
 package com.ft.methodeimagesetmapper.service;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.ft.content.model.Content;
 import com.ft.content.model.Copyright;
 import com.ft.content.model.Distribution;
@@ -12,52 +14,73 @@ import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSortedSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+
+import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
-import java.io.StringReader;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.TimeZone;
 import java.util.UUID;
 
 public class MethodeImageSetMapper {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodeImageSetMapper.class);
     private static final String IMAGE_TYPE = "Image";
-    private static final String MEDIATYPE_PREFIX = "image/";
     private static final String DEFAULT_MEDIATYPE = "image/jpeg";
     private static final String SOURCE_METHODE = "http://api.ft.com/system/FTCOM-METHODE";
     private static final String FORMAT_UNSUPPORTED = "%s is not an %s.";
-    private static final String DATE_FORMAT = "yyyyMMddHHmmss";
     private static final String IMAGE_SET_TYPE = "ImageSet";
 
+    private static final StreamingXmlExtractor ATTRIBUTES_EXTRACTOR = new StreamingXmlExtractor(
+            "/meta/picture/web_information/caption",
+            "/meta/picture/web_information/alt_tag",
+            "/meta/picture/web_information/online-source",
+            "/meta/picture/web_information/manual-source");
+    private static final StreamingXmlExtractor SYSTEM_ATTRIBUTES_EXTRACTOR = new StreamingXmlExtractor(
+            "/props/imageInfo/width",
+            "/props/imageInfo/height",
+            "/props/imageInfo/fileType");
+    private static final UsageTicketScanner USAGE_TICKET_SCANNER = new UsageTicketScanner();
+
+    private final MetricRegistry metrics;
+    private final Timer attributesParseTimer;
+    private final Timer systemAttributesParseTimer;
+    private final Timer usageTicketsParseTimer;
+    private final Timer contentBuildTimer;
+
+    public MethodeImageSetMapper() {
+        this(new MetricRegistry());
+    }
+
+    public MethodeImageSetMapper(MetricRegistry metrics) {
+        this.metrics = metrics;
+        this.attributesParseTimer = metrics.timer(MetricRegistry.name(MethodeImageSetMapper.class, "attributes-parse"));
+        this.systemAttributesParseTimer = metrics.timer(MetricRegistry.name(MethodeImageSetMapper.class, "system-attributes-parse"));
+        this.usageTicketsParseTimer = metrics.timer(MetricRegistry.name(MethodeImageSetMapper.class, "usage-tickets-parse"));
+        this.contentBuildTimer = metrics.timer(MetricRegistry.name(MethodeImageSetMapper.class, "content-build"));
+    }
+
     public Content mapImageSet(String uuid, EomFile eomFile, String transactionId, Date lastModifiedDate) {
-        return transformAndHandleExceptions(eomFile, () -> transformEomFileToContent(uuid, eomFile, transactionId, lastModifiedDate)
-                .withMembers(ImmutableSortedSet.of(new Member(eomFile.getUuid())))
-                .withPixelHeight(null)
-                .withPixelWidth(null)
-                .withCopyright(null)
-                .build());
+        return transformAndHandleExceptions(eomFile, () -> {
+            final Content.Builder builder = transformEomFileToContent(uuid, eomFile, transactionId, lastModifiedDate);
+            try (Timer.Context building = contentBuildTimer.time()) {
+                return builder
+                        .withMembers(ImmutableSortedSet.of(new Member(eomFile.getUuid())))
+                        .withPixelHeight(null)
+                        .withPixelWidth(null)
+                        .withCopyright(null)
+                        .build();
+            }
+        });
     }
 
     Content transformAndHandleExceptions(EomFile eomFile, Action<Content> transformAction) {
         if (!isEomTypeSupported(eomFile)) {
+            metrics.counter(MetricRegistry.name(MethodeImageSetMapper.class, "unsupported", "not-an-image")).inc();
             throw new MethodeContentNotSupportedException(String.format(FORMAT_UNSUPPORTED, eomFile.getUuid(), IMAGE_TYPE));
         }
         try {
             return transformAction.perform();
-        } catch (ParserConfigurationException | XPathExpressionException | IOException e) {
+        } catch (IOException e) {
+            metrics.counter(MetricRegistry.name(MethodeImageSetMapper.class, "failed", "transformation")).inc();
             throw new TransformationException(e);
         }
     }
@@ -67,21 +90,19 @@ public class MethodeImageSetMapper {
     }
 
     private Content.Builder transformEomFileToContent(final String uuid, final EomFile eomFile, final String transactionId, final Date lastModifiedDate)
-            throws IOException, XPathExpressionException, ParserConfigurationException {
-        final DocumentBuilder documentBuilder = getDocumentBuilder();
-        final XPath xpath = XPathFactory.newInstance().newXPath();
+            throws IOException {
         String caption = null;
         String altText = null;
         String copyrightNotice = null;
-        try {
-            final Document attributesDocument = documentBuilder.parse(new InputSource(new StringReader(eomFile.getAttributes())));
-            caption = xpath.evaluate("/meta/picture/web_information/caption", attributesDocument);
-            altText = xpath.evaluate("/meta/picture/web_information/alt_tag", attributesDocument);
+        try (Timer.Context parsing = attributesParseTimer.time()) {
+            final String[] attributes = ATTRIBUTES_EXTRACTOR.extract(eomFile.getAttributes());
+            caption = attributes[0];
+            altText = attributes[1];
 
             String manualCopyright, onlineCopyright;
 
-            onlineCopyright = xpath.evaluate("/meta/picture/web_information/online-source", attributesDocument);
-            manualCopyright = xpath.evaluate("/meta/picture/web_information/manual-source", attributesDocument);
+            onlineCopyright = attributes[2];
+            manualCopyright = attributes[3];
 
             copyrightNotice = firstOf(onlineCopyright, manualCopyright);
 
@@ -89,29 +110,28 @@ public class MethodeImageSetMapper {
                 copyrightNotice = "© " + copyrightNotice;
             }
 
-        } catch (SAXException ex) {
+        } catch (XMLStreamException ex) {
             LOGGER.warn("Failed retrieving attributes XML of image {}. Moving on without adding relevant properties.", eomFile.getUuid(), ex);
         }
         Integer width = null;
         Integer height = null;
         String mediaType = DEFAULT_MEDIATYPE;
-        try {
-            final Document systemAttributesDocument = documentBuilder.parse(new InputSource(new StringReader(eomFile.getSystemAttributes())));
-            width = transformWidth(eomFile.getUuid(), xpath.evaluate("/props/imageInfo/width", systemAttributesDocument));
-            height = transformHeight(eomFile.getUuid(), xpath.evaluate("/props/imageInfo/height", systemAttributesDocument));
-            final String mediaTypeSuffix = xpath.evaluate("/props/imageInfo/fileType", systemAttributesDocument);
-            if (!mediaTypeSuffix.isEmpty()) {
-                mediaType = MEDIATYPE_PREFIX + mediaTypeSuffix.toLowerCase();
+        try (Timer.Context parsing = systemAttributesParseTimer.time()) {
+            final String[] systemAttributes = SYSTEM_ATTRIBUTES_EXTRACTOR.extract(eomFile.getSystemAttributes());
+            width = transformWidth(eomFile.getUuid(), systemAttributes[0]);
+            height = transformHeight(eomFile.getUuid(), systemAttributes[1]);
+            final String fileMediaType = ScalarDecoder.mediaType(systemAttributes[2]);
+            if (fileMediaType != null) {
+                mediaType = fileMediaType;
             }
-        } catch (SAXException ex) {
+        } catch (XMLStreamException ex) {
             LOGGER.warn("Failed retrieving system attributes XML of image {}. Moving on without adding relevant properties.", eomFile.getUuid(), ex);
         }
 
         Date publishDate = null;
-        try {
-            final Document usageTicketsDocument = documentBuilder.parse(new InputSource(new StringReader(eomFile.getUsageTickets())));
-            publishDate = transformDate(eomFile.getUuid(), xpath.evaluate("/tl/t[tp = 'web_publication'][count(/tl/t[tp = 'web_publication'])]/cd", usageTicketsDocument));
-        } catch (SAXException ex) {
+        try (Timer.Context parsing = usageTicketsParseTimer.time()) {
+            publishDate = transformDate(eomFile.getUuid(), USAGE_TICKET_SCANNER.lastWebPublicationCreationDate(eomFile.getUsageTickets()));
+        } catch (XMLStreamException ex) {
             LOGGER.warn("Failed retrieving usage tickets of image {}. Moving on without adding relevant properties.", eomFile.getUuid(), ex);
         }
 
@@ -145,41 +165,36 @@ public class MethodeImageSetMapper {
     }
 
     private Integer transformWidth(final String uuid, final String widthString) {
-        try {
-            return Integer.parseInt(widthString);
-        } catch (NumberFormatException ex) {
-            LOGGER.warn("Width was not supplied by the source for uuid {} and width '{}'.", uuid, widthString);
+        final Integer width = ScalarDecoder.parseDimension(widthString);
+        if (width == null && widthString.isEmpty()) {
+            LOGGER.debug("Width was not supplied by the source for uuid {}.", uuid);
+        } else if (width == null) {
+            LOGGER.warn("Width couldn't be converted to an integer for uuid {} and width '{}'.", uuid, widthString);
         }
-        return null;
+        return width;
     }
 
     private Integer transformHeight(final String uuid, final String heightString) {
-        try {
-            return Integer.parseInt(heightString);
-        } catch (NumberFormatException ex) {
+        final Integer height = ScalarDecoder.parseDimension(heightString);
+        if (height == null && heightString.isEmpty()) {
+            LOGGER.debug("Height was not supplied by the source for uuid {}.", uuid);
+        } else if (height == null) {
             LOGGER.warn("Height couldn't be converted to an integer for uuid {} and height '{}'.", uuid, heightString);
         }
-        return null;
+        return height;
     }
 
     private Date transformDate(final String uuid, final String dateString) {
-        final DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
-        try {
-            dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
-            return dateFormat.parse(dateString);
-        } catch (ParseException ex) {
+        final Date date = ScalarDecoder.parseDate(dateString);
+        if (date == null && dateString.isEmpty()) {
+            LOGGER.debug("No web publication date for uuid {}.", uuid);
+        } else if (date == null) {
             LOGGER.warn("Date couldn't be parsed for uuid {} and raw value '{}'.", uuid, dateString);
         }
-        return null;
-    }
-
-    private DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
-        final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-        documentBuilderFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-        return documentBuilderFactory.newDocumentBuilder();
+        return date;
     }
 
     interface Action<T> {
-        T perform() throws ParserConfigurationException, XPathExpressionException, IOException;
+        T perform() throws IOException;
     }
 }
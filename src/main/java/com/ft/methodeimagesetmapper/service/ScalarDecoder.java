@@ -0,0 +1,165 @@
+package com.ft.methodeimagesetmapper.service;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Decodes the scalar values of Methode attributes without the per-call formatters, exceptions and strings of the
+ * straightforward JDK calls, while giving the same results.
+ * <p>
+ * Dates in the usual fixed-width {@code yyyyMMddHHmmss} GMT form and ASCII dimensions are read straight from their
+ * characters; anything else falls back to {@link SimpleDateFormat} and {@link Integer#parseInt(String)}, so their
+ * lenient corner cases still decode as before. Common file types map to constant media types.
+ */
+public final class ScalarDecoder {
+
+    public static final String DATE_FORMAT = "yyyyMMddHHmmss";
+
+    private static final String MEDIATYPE_PREFIX = "image/";
+    private static final String[] FILE_TYPES = {"jpeg", "png", "gif", "jpg", "tiff", "bmp", "webp", "svg+xml"};
+    private static final String[] MEDIA_TYPES = {"image/jpeg", "image/png", "image/gif", "image/jpg", "image/tiff",
+            "image/bmp", "image/webp", "image/svg+xml"};
+
+    // SimpleDateFormat counts days in the Julian calendar before the Gregorian cutover of 1582
+    private static final int MIN_FAST_PATH_YEAR = 1583;
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long SECONDS_PER_DAY = 86400L;
+
+    private static final ThreadLocal<DateFormat> DATE_FORMATS = ThreadLocal.withInitial(() -> {
+        final DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return dateFormat;
+    });
+
+    private ScalarDecoder() {
+    }
+
+    /**
+     * @return the {@code yyyyMMddHHmmss} GMT date, or {@code null} if there is none or it cannot be parsed
+     */
+    public static Date parseDate(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        if (value.length() == DATE_FORMAT.length()) {
+            final int year = digits(value, 0, 4);
+            final int month = digits(value, 4, 6);
+            final int day = digits(value, 6, 8);
+            final int hour = digits(value, 8, 10);
+            final int minute = digits(value, 10, 12);
+            final int second = digits(value, 12, 14);
+            if (year >= MIN_FAST_PATH_YEAR && month >= 1 && month <= 12 && day >= 1 && day <= daysInMonth(year, month)
+                    && hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && second >= 0 && second <= 59) {
+                final long seconds = daysSinceEpoch(year, month, day) * SECONDS_PER_DAY
+                        + hour * 3600L + minute * 60L + second;
+                return new Date(seconds * MILLIS_PER_SECOND);
+            }
+        }
+        try {
+            return DATE_FORMATS.get().parse(value);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the value as {@link Integer#parseInt(String)} reads it, or {@code null} if there is none or it is not a
+     * number
+     */
+    public static Integer parseDimension(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        final int length = value.length();
+        final char first = value.charAt(0);
+        final boolean negative = first == '-';
+        int i = negative || first == '+' ? 1 : 0;
+        if (i == length) {
+            return null;
+        }
+        long magnitude = 0;
+        for (; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return c < 128 ? null : parseNonAsciiDimension(value);
+            }
+            magnitude = magnitude * 10 + (c - '0');
+            if (magnitude > -(long) Integer.MIN_VALUE) {
+                return null;
+            }
+        }
+        final long result = negative ? -magnitude : magnitude;
+        return result > Integer.MAX_VALUE ? null : Integer.valueOf((int) result);
+    }
+
+    /**
+     * @return the media type of an image of the given Methode file type, or {@code null} if there is no file type
+     */
+    public static String mediaType(String fileType) {
+        if (fileType == null || fileType.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < FILE_TYPES.length; i++) {
+            if (FILE_TYPES[i].equalsIgnoreCase(fileType)) {
+                return MEDIA_TYPES[i];
+            }
+        }
+        return MEDIATYPE_PREFIX + fileType.toLowerCase();
+    }
+
+    private static Integer parseNonAsciiDimension(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the decimal number in {@code [from, to)}, or {@code -1} if it is not all ASCII digits
+     */
+    private static int digits(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    /**
+     * Days from 1970-01-01 to the given date of the proleptic Gregorian calendar.
+     */
+    private static long daysSinceEpoch(int year, int month, int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = y / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
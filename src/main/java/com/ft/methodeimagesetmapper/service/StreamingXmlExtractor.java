@@ -0,0 +1,125 @@
+package com.ft.methodeimagesetmapper.service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts the string values of a fixed set of absolute element paths (e.g. {@code /meta/picture/web_information/caption})
+ * from an XML document in a single streaming pass.
+ * <p>
+ * The value of a path is the concatenated text of the first element matching it, in document order, which is what
+ * {@code XPath.evaluate} returns for the same expression. A path that does not match yields an empty string.
+ * Reading stops as soon as every path has been captured, so the remainder of the document is neither read nor
+ * checked for well-formedness.
+ * <p>
+ * Instances are immutable and safe to share between threads. The {@link XMLInputFactory} is looked up and configured
+ * once per thread rather than per document, since the service lookup behind {@link XMLInputFactory#newInstance()} is
+ * expensive and implementations do not promise that a factory can be used concurrently.
+ */
+public class StreamingXmlExtractor {
+
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY =
+            ThreadLocal.withInitial(StreamingXmlExtractor::newInputFactory);
+
+    private final String[][] paths;
+
+    public StreamingXmlExtractor(String... paths) {
+        this.paths = new String[paths.length][];
+        for (int i = 0; i < paths.length; i++) {
+            this.paths[i] = paths[i].substring(1).split("/");
+        }
+    }
+
+    /**
+     * @return the values of the configured paths, in the order they were given to the constructor
+     */
+    public String[] extract(String xml) throws XMLStreamException {
+        final String[] values = new String[paths.length];
+        final StringBuilder[] captures = new StringBuilder[paths.length];
+        final int[] captureDepths = new int[paths.length];
+        final List<String> elementPath = new ArrayList<>();
+        int remaining = paths.length;
+        int capturing = 0;
+
+        final XMLStreamReader reader = createReader(xml);
+        try {
+            while (remaining > 0 && reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        elementPath.add(reader.getLocalName());
+                        for (int i = 0; i < paths.length; i++) {
+                            if (values[i] == null && captures[i] == null && matches(paths[i], elementPath)) {
+                                captures[i] = new StringBuilder();
+                                captureDepths[i] = elementPath.size();
+                                capturing++;
+                            }
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (capturing > 0) {
+                            for (StringBuilder capture : captures) {
+                                if (capture != null) {
+                                    capture.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                                }
+                            }
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        for (int i = 0; i < paths.length; i++) {
+                            if (captures[i] != null && captureDepths[i] == elementPath.size()) {
+                                values[i] = captures[i].toString();
+                                captures[i] = null;
+                                capturing--;
+                                remaining--;
+                            }
+                        }
+                        elementPath.remove(elementPath.size() - 1);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                values[i] = "";
+            }
+        }
+        return values;
+    }
+
+    private static boolean matches(String[] path, List<String> elementPath) {
+        if (path.length != elementPath.size()) {
+            return false;
+        }
+        for (int i = path.length - 1; i >= 0; i--) {
+            if (!path[i].equals(elementPath.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static XMLStreamReader createReader(String xml) throws XMLStreamException {
+        return INPUT_FACTORY.get().createXMLStreamReader(new StringReader(xml));
+    }
+
+    private static XMLInputFactory newInputFactory() {
+        final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        // keep the DOCTYPE (so undeclared entities are reported rather than fatal) but never fetch the external DTD
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return inputFactory;
+    }
+}
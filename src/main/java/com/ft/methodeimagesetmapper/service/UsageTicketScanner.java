@@ -0,0 +1,81 @@
+package com.ft.methodeimagesetmapper.service;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Finds the creation date of the last {@code web_publication} usage ticket of a Methode object, giving the same result
+ * as {@code /tl/t[tp = 'web_publication'][count(/tl/t[tp = 'web_publication'])]/cd}.
+ * <p>
+ * The XPath re-counts the web publication tickets for every candidate, which is quadratic in the number of tickets.
+ * This walks the ticket list once, remembering the latest match, so long-lived images with hundreds of tickets cost
+ * no more than a single read of their ticket list.
+ */
+public class UsageTicketScanner {
+
+    private static final String WEB_PUBLICATION_TICKET = "web_publication";
+
+    /**
+     * @return the creation date of the last web publication ticket, or an empty string if there is none
+     */
+    public String lastWebPublicationCreationDate(final String usageTickets) throws XMLStreamException {
+        final XMLStreamReader reader = StreamingXmlExtractor.createReader(usageTickets);
+        String lastCreationDate = null;
+        try {
+            int depth = 0;
+            boolean inTicketList = false;
+            boolean inTicket = false;
+            boolean webPublication = false;
+            String creationDate = null;
+            String field = null;
+            StringBuilder text = null;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        final String name = reader.getLocalName();
+                        if (depth == 1) {
+                            inTicketList = "tl".equals(name);
+                        } else if (depth == 2 && inTicketList && "t".equals(name)) {
+                            inTicket = true;
+                            webPublication = false;
+                            creationDate = null;
+                        } else if (depth == 3 && inTicket && ("tp".equals(name) || ("cd".equals(name) && creationDate == null))) {
+                            field = name;
+                            text = new StringBuilder();
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (text != null) {
+                            text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (depth == 3 && text != null) {
+                            if ("tp".equals(field)) {
+                                webPublication |= WEB_PUBLICATION_TICKET.contentEquals(text);
+                            } else {
+                                creationDate = text.toString();
+                            }
+                            text = null;
+                        } else if (depth == 2 && inTicket) {
+                            if (webPublication) {
+                                lastCreationDate = creationDate == null ? "" : creationDate;
+                            }
+                            inTicket = false;
+                        }
+                        depth--;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return lastCreationDate == null ? "" : lastCreationDate;
+    }
+}
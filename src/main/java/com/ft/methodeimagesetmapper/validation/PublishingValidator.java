@@ -19,8 +19,7 @@ public class PublishingValidator {
     }
 
     private boolean missingImageBytes(EomFile eomFile) {
-        byte[] value = eomFile.getValue();
-        if (value == null || eomFile.getValue().length == 0) {
+        if (!eomFile.hasValue()) {
             LOGGER.info(String.format("Image [%s] has no image bytes.", eomFile.getUuid()));
             return true;
         }
@@ -0,0 +1,54 @@
+package com.ft.methodeimagesetmapper.diagnostics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SlowMessageRecorderTest {
+
+    @Test
+    public void shouldKeepSlowestMessagesSlowestFirst() throws Exception {
+        final SlowMessageRecorder recorder = new SlowMessageRecorder(2, 60000);
+        final MessageTimings medium = timed("tid_medium", 10);
+        final MessageTimings fast = timed("tid_fast", 0);
+        final MessageTimings slow = timed("tid_slow", 20);
+
+        recorder.record(medium);
+        recorder.record(fast);
+        recorder.record(slow);
+
+        assertThat(recorder.getSlowest(), equalTo(Arrays.asList(slow, medium)));
+    }
+
+    @Test
+    public void shouldForgetMessagesOutsideWindow() throws Exception {
+        final SlowMessageRecorder recorder = new SlowMessageRecorder(1, 5);
+        recorder.record(timed("tid_slow", 20));
+        Thread.sleep(10);
+
+        assertThat(recorder.getSlowest(), equalTo(Collections.emptyList()));
+
+        final MessageTimings fast = timed("tid_fast", 0);
+        recorder.record(fast);
+        assertThat(recorder.getSlowest(), equalTo(Collections.singletonList(fast)));
+    }
+
+    @Test
+    public void shouldRecordNothingWhenDisabled() throws Exception {
+        final SlowMessageRecorder recorder = SlowMessageRecorder.disabled();
+
+        recorder.record(timed("tid_slow", 5));
+
+        assertThat(recorder.getSlowest(), equalTo(Collections.emptyList()));
+    }
+
+    private static MessageTimings timed(String transactionId, long millis) throws InterruptedException {
+        final MessageTimings timings = new MessageTimings(transactionId, 100);
+        Thread.sleep(millis);
+        return timings.finished("published");
+    }
+}
@@ -1,6 +1,8 @@
 package com.ft.methodeimagesetmapper.health;
 
+import com.codahale.metrics.MetricRegistry;
 import com.ft.messagequeueproducer.health.QueueProxyHealthcheck;
+import com.ft.methodeimagesetmapper.messaging.MessageProducingContentMapper;
 import com.ft.platform.dropwizard.AdvancedResult;
 import org.junit.Before;
 import org.junit.Test;
@@ -9,23 +11,28 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CanConnectToMessageQueueProducerProxyHealthcheckTest {
     private CanConnectToMessageQueueProducerProxyHealthcheck healthcheck;
+    private HealthcheckConfiguration healthcheckConfiguration;
 
     @Mock
     private QueueProxyHealthcheck queueProxyHealthcheck;
 
     @Before
     public void setUp() {
-        HealthcheckConfiguration healthcheckConfiguration = new HealthcheckConfiguration("kafka-proxy", 2, "business impact text", "tech summary", "panic guide url");
-        healthcheck = new CanConnectToMessageQueueProducerProxyHealthcheck(queueProxyHealthcheck, healthcheckConfiguration, null);
+        healthcheckConfiguration = new HealthcheckConfiguration("kafka-proxy", 2, "business impact text", "tech summary", "panic guide url");
+        healthcheck = new CanConnectToMessageQueueProducerProxyHealthcheck.Builder(queueProxyHealthcheck, healthcheckConfiguration).build();
     }
 
     @Test
@@ -67,4 +74,67 @@ public class CanConnectToMessageQueueProducerProxyHealthcheckTest {
         assertThat(actualHealthCheckResult.status(), is(equalTo(expectedHealthCheckResult.status())));
         assertThat(actualHealthCheckResult.checkOutput(), containsString(expectedHealthCheckResult.checkOutput()));
     }
+
+    @Test
+    public void shouldServeLastRefreshedResultBetweenRefreshes() throws Exception {
+        when(queueProxyHealthcheck.check()).thenReturn(Optional.empty());
+        final CanConnectToMessageQueueProducerProxyHealthcheck cached = cachedHealthcheck(new MetricRegistry(), 60000);
+
+        cached.refresh();
+        cached.checkAdvanced();
+        AdvancedResult actualHealthCheckResult = cached.checkAdvanced();
+
+        assertThat(actualHealthCheckResult.status(), is(equalTo(AdvancedResult.healthy().status())));
+        verify(queueProxyHealthcheck, times(1)).check();
+    }
+
+    @Test
+    public void shouldReturnErrorWhenRefreshedResultIsStale() throws Exception {
+        when(queueProxyHealthcheck.check()).thenReturn(Optional.empty());
+        final CanConnectToMessageQueueProducerProxyHealthcheck cached = cachedHealthcheck(new MetricRegistry(), 1);
+
+        cached.refresh();
+        Thread.sleep(20);
+        AdvancedResult actualHealthCheckResult = cached.checkAdvanced();
+
+        assertThat(actualHealthCheckResult.status(), is(equalTo(AdvancedResult.error(cached, "stale").status())));
+        assertThat(actualHealthCheckResult.checkOutput(), containsString("no longer being refreshed"));
+    }
+
+    @Test
+    public void shouldNotCallProxyWhenLiveSendsSucceeded() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        final CanConnectToMessageQueueProducerProxyHealthcheck cached = cachedHealthcheck(metrics, 60000);
+        metrics.timer(MetricRegistry.name(MessageProducingContentMapper.class, "send")).update(5, TimeUnit.MILLISECONDS);
+
+        cached.refresh();
+        AdvancedResult actualHealthCheckResult = cached.checkAdvanced();
+
+        assertThat(actualHealthCheckResult.status(), is(equalTo(AdvancedResult.healthy().status())));
+        verify(queueProxyHealthcheck, never()).check();
+    }
+
+    @Test
+    public void shouldReturnErrorWhenOnlyLiveSendsFailed() throws Exception {
+        when(queueProxyHealthcheck.check()).thenReturn(Optional.empty());
+        final MetricRegistry metrics = new MetricRegistry();
+        final CanConnectToMessageQueueProducerProxyHealthcheck cached = cachedHealthcheck(metrics, 60000);
+        metrics.timer(MetricRegistry.name(MessageProducingContentMapper.class, "send")).update(5, TimeUnit.MILLISECONDS);
+        metrics.counter(MetricRegistry.name(MessageProducingContentMapper.class, "failed", "send")).inc();
+
+        cached.refresh();
+        AdvancedResult actualHealthCheckResult = cached.checkAdvanced();
+
+        assertThat(actualHealthCheckResult.status(), is(equalTo(AdvancedResult.error(cached, "failed").status())));
+        assertThat(actualHealthCheckResult.checkOutput(), containsString("failed since the last check"));
+    }
+
+    private CanConnectToMessageQueueProducerProxyHealthcheck cachedHealthcheck(MetricRegistry metrics, long maxAgeMillis) {
+        return new CanConnectToMessageQueueProducerProxyHealthcheck.Builder(queueProxyHealthcheck, healthcheckConfiguration)
+                .withMetrics(metrics)
+                .withRefreshedOutcome(maxAgeMillis)
+                .withSends(metrics.timer(MetricRegistry.name(MessageProducingContentMapper.class, "send")),
+                        metrics.counter(MetricRegistry.name(MessageProducingContentMapper.class, "failed", "send")))
+                .build();
+    }
 }
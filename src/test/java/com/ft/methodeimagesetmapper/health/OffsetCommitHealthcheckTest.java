@@ -0,0 +1,53 @@
+package com.ft.methodeimagesetmapper.health;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ft.methodeimagesetmapper.messaging.CommitCoordinator;
+import com.ft.platform.dropwizard.AdvancedResult;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class OffsetCommitHealthcheckTest {
+
+    private final HealthcheckConfiguration healthcheckConfiguration = new HealthcheckConfiguration("offset commits", 2,
+            "business impact text", "tech summary", "panic guide url");
+    private final CommitCoordinator coordinator = new CommitCoordinator(10, 60000, new MetricRegistry());
+    private final OffsetCommitHealthcheck healthcheck = new OffsetCommitHealthcheck(healthcheckConfiguration, coordinator);
+
+    @Test
+    public void shouldReturnHealthyWhileNothingFailed() throws Exception {
+        coordinator.consumed().complete();
+        coordinator.consumed();
+
+        assertThat(healthcheck.checkAdvanced().status(), is(equalTo(AdvancedResult.healthy().status())));
+    }
+
+    @Test
+    public void shouldReturnErrorWhileAFailedMessageHoldsBackCommits() throws Exception {
+        final UUID messageId = UUID.randomUUID();
+        final CommitCoordinator.Ticket ticket = coordinator.consumed(messageId);
+        ticket.fail();
+        ticket.complete();
+
+        final AdvancedResult result = healthcheck.checkAdvanced();
+        assertThat(result.status(), is(equalTo(AdvancedResult.error(healthcheck, "").status())));
+        assertThat(result.checkOutput(), containsString("1 messages failed"));
+    }
+
+    @Test
+    public void shouldReturnHealthyOnceTheFailedMessageIsProcessedAgain() throws Exception {
+        final UUID messageId = UUID.randomUUID();
+        final CommitCoordinator.Ticket ticket = coordinator.consumed(messageId);
+        ticket.fail();
+        ticket.complete();
+
+        coordinator.consumed(messageId).complete();
+
+        assertThat(healthcheck.checkAdvanced().status(), is(equalTo(AdvancedResult.healthy().status())));
+    }
+}
@@ -0,0 +1,67 @@
+package com.ft.methodeimagesetmapper.health;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+import com.ft.methodeimagesetmapper.messaging.PublicationProgress;
+import com.ft.platform.dropwizard.AdvancedResult;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PublicationLatencyHealthcheckTest {
+
+    private final HealthcheckConfiguration healthcheckConfiguration = new HealthcheckConfiguration("publication latency", 3,
+            "business impact text", "tech summary", "panic guide url");
+    private final Histogram eventAges = new Histogram(new UniformReservoir());
+    private final PublicationProgress progress = new PublicationProgress();
+    private final PublicationLatencyHealthcheck healthcheck =
+            new PublicationLatencyHealthcheck(healthcheckConfiguration, eventAges, progress, 60000);
+
+    @Test
+    public void shouldReturnHealthyWhenNothingWasPublished() throws Exception {
+        assertThat(healthcheck.checkAdvanced().status(), is(equalTo(AdvancedResult.healthy().status())));
+    }
+
+    @Test
+    public void shouldReturnHealthyWhenEventsArePublishedWithinObjective() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            eventAges.update(1000);
+        }
+        eventAges.update(120000);
+
+        assertThat(healthcheck.checkAdvanced().status(), is(equalTo(AdvancedResult.healthy().status())));
+    }
+
+    @Test
+    public void shouldReturnErrorWhenEventAgesExceedObjective() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            eventAges.update(120000);
+        }
+
+        AdvancedResult actualHealthCheckResult = healthcheck.checkAdvanced();
+
+        assertThat(actualHealthCheckResult.status(), is(equalTo(AdvancedResult.error(healthcheck, "late").status())));
+        assertThat(actualHealthCheckResult.checkOutput(), containsString("above the 60s objective"));
+    }
+
+    @Test
+    public void shouldReturnErrorWhenEventsWaitLongerThanObjectiveWithNothingPublished() throws Exception {
+        final PublicationLatencyHealthcheck strictHealthcheck =
+                new PublicationLatencyHealthcheck(healthcheckConfiguration, eventAges, progress, 10);
+        for (int i = 0; i < 100; i++) {
+            eventAges.update(1);
+        }
+        progress.received(new Date());
+        Thread.sleep(50);
+
+        AdvancedResult actualHealthCheckResult = strictHealthcheck.checkAdvanced();
+
+        assertThat(actualHealthCheckResult.status(), is(equalTo(AdvancedResult.error(healthcheck, "stalled").status())));
+        assertThat(actualHealthCheckResult.checkOutput(), containsString("while 1 events are waiting"));
+    }
+}
@@ -0,0 +1,188 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ft.messaging.standards.message.v1.Message;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class BatchingMessageProducerTest {
+
+    private final List<List<Message>> sentBatches = Collections.synchronizedList(new ArrayList<>());
+    private final MetricRegistry metrics = new MetricRegistry();
+    private BatchingMessageProducer producer;
+
+    @After
+    public void tearDown() throws Exception {
+        if (producer != null) {
+            producer.stop();
+        }
+    }
+
+    @Test
+    public void shouldSendMessagesFromConcurrentCallersTogether() throws Exception {
+        producer = new BatchingMessageProducer(sentBatches::add, 10, 500, 5000, metrics);
+        producer.start();
+        final ExecutorService callers = Executors.newFixedThreadPool(10);
+        final List<Future<?>> calls = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            calls.add(callers.submit(() -> producer.send(Collections.singletonList(new Message()))));
+        }
+        for (Future<?> call : calls) {
+            call.get();
+        }
+        callers.shutdown();
+
+        assertThat(sentBatches.size(), equalTo(1));
+        assertThat(sentBatches.get(0).size(), equalTo(10));
+        assertThat(metrics.histogram(MetricRegistry.name(BatchingMessageProducer.class, "batch-size")).getSnapshot().getMax(), equalTo(10L));
+    }
+
+    @Test
+    public void shouldSendAfterLingerWhenBatchIsNotFull() throws Exception {
+        producer = new BatchingMessageProducer(sentBatches::add, 100, 10, 5000, metrics);
+        producer.start();
+        final Message message = new Message();
+
+        producer.send(Collections.singletonList(message));
+
+        assertThat(sentBatches.size(), equalTo(1));
+        assertThat(sentBatches.get(0).get(0), sameInstance(message));
+    }
+
+    @Test
+    public void shouldSplitBatchesAtMaxBatchSize() throws Exception {
+        producer = new BatchingMessageProducer(sentBatches::add, 2, 100, 5000, metrics);
+        producer.start();
+
+        producer.send(asList(new Message(), new Message(), new Message(), new Message(), new Message()));
+
+        assertThat(sentBatches.size(), equalTo(3));
+        assertThat(sentBatches.get(0).size(), equalTo(2));
+        assertThat(sentBatches.get(2).size(), equalTo(1));
+    }
+
+    @Test
+    public void shouldReportFailureToEveryMessageOfTheBatch() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("kafka-proxy unavailable");
+        producer = new BatchingMessageProducer(messages -> {
+            throw failure;
+        }, 10, 50, 5000, metrics);
+        producer.start();
+
+        final CompletableFuture<Void> first = producer.publish(new Message());
+        final CompletableFuture<Void> second = producer.publish(new Message());
+
+        assertFailedWith(first, failure);
+        assertFailedWith(second, failure);
+        try {
+            producer.send(Collections.singletonList(new Message()));
+            fail("expected send to fail");
+        } catch (IllegalStateException e) {
+            assertThat(e, sameInstance(failure));
+        }
+    }
+
+    @Test
+    public void shouldFlushPendingMessagesOnStop() throws Exception {
+        producer = new BatchingMessageProducer(sentBatches::add, 100, 60000, 5000, metrics);
+        producer.start();
+
+        final CompletableFuture<Void> result = producer.publish(new Message());
+        producer.stop();
+
+        assertThat(result.isDone() && !result.isCompletedExceptionally(), equalTo(true));
+        assertThat(sentBatches.size(), equalTo(1));
+    }
+
+    @Test
+    public void shouldFailMessagesPublishedAfterStop() throws Exception {
+        producer = new BatchingMessageProducer(sentBatches::add, 100, 60000, 5000, metrics);
+        producer.start();
+        producer.stop();
+
+        try {
+            producer.send(Collections.singletonList(new Message()));
+            fail("expected send to fail");
+        } catch (IllegalStateException e) {
+            assertThat(sentBatches.size(), equalTo(0));
+        }
+    }
+
+    @Test
+    public void shouldGiveUpWaitingForSlowSend() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        producer = new BatchingMessageProducer(messages -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 10, 0, 50, metrics);
+        producer.start();
+
+        try {
+            producer.send(Collections.singletonList(new Message()));
+            fail("expected send to time out");
+        } catch (IllegalStateException e) {
+            assertThat(e.getCause() instanceof TimeoutException, equalTo(true));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void shouldNotSendMessagesStillWaitingWhenSendTimesOut() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Message first = new Message();
+        final Message second = new Message();
+        producer = new BatchingMessageProducer(messages -> {
+            sentBatches.add(messages);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 1, 0, 50, metrics);
+        producer.start();
+
+        try {
+            producer.send(asList(first, second));
+            fail("expected send to time out");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage().endsWith("1 of 2 withdrawn"), equalTo(true));
+        } finally {
+            release.countDown();
+        }
+        producer.stop();
+
+        assertThat(sentBatches.size(), equalTo(1));
+        assertThat(sentBatches.get(0).get(0), sameInstance(first));
+    }
+
+    private static void assertFailedWith(CompletableFuture<Void> result, Throwable expected) throws InterruptedException {
+        try {
+            result.get();
+            fail("expected the message to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), sameInstance(expected));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CommitCoordinatorTest {
+
+    @Test
+    public void shouldOnlyAdvanceWatermarkOverContiguousCompletions() throws Exception {
+        final CommitCoordinator coordinator = new CommitCoordinator(1, 60000, new MetricRegistry());
+        final CommitCoordinator.Ticket first = coordinator.consumed();
+        final CommitCoordinator.Ticket second = coordinator.consumed();
+        final CommitCoordinator.Ticket third = coordinator.consumed();
+
+        second.complete();
+        third.complete();
+        assertThat(coordinator.getInFlight(), equalTo(3L));
+        assertThat(coordinator.awaitCompletion(10), equalTo(-1L));
+
+        first.complete();
+        assertThat(coordinator.getInFlight(), equalTo(0L));
+        assertThat(coordinator.awaitCompletion(10), equalTo(3L));
+    }
+
+    @Test
+    public void shouldWaitForMessagesStillBeingProcessed() throws Exception {
+        final CommitCoordinator coordinator = new CommitCoordinator(1, 60000, new MetricRegistry());
+        final CommitCoordinator.Ticket ticket = coordinator.consumed();
+
+        final CompletableFuture<Long> commit = CompletableFuture.supplyAsync(() -> {
+            try {
+                return coordinator.awaitCompletion(5000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        ticket.complete();
+
+        assertThat(commit.get(5, TimeUnit.SECONDS), equalTo(1L));
+    }
+
+    @Test
+    public void shouldBatchCommitsBySize() throws Exception {
+        final CommitCoordinator coordinator = new CommitCoordinator(3, 60000, new MetricRegistry());
+        coordinator.consumed().complete();
+        coordinator.consumed().complete();
+        assertThat(coordinator.isCommitDue(), is(false));
+
+        coordinator.consumed().complete();
+        assertThat(coordinator.isCommitDue(), is(true));
+
+        coordinator.committed(coordinator.awaitCompletion(10), 0);
+        assertThat(coordinator.isCommitDue(), is(false));
+        assertThat(coordinator.getUncommitted(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldCommitAfterMaxIntervalEvenIfBatchIsNotFull() throws Exception {
+        final CommitCoordinator coordinator = new CommitCoordinator(100, 0, new MetricRegistry());
+        assertThat(coordinator.isCommitDue(), is(false));
+
+        coordinator.consumed().complete();
+        assertThat(coordinator.isCommitDue(), is(true));
+    }
+
+    @Test
+    public void shouldIgnoreRepeatedCompletion() throws Exception {
+        final CommitCoordinator coordinator = new CommitCoordinator(1, 60000, new MetricRegistry());
+        final CommitCoordinator.Ticket first = coordinator.consumed();
+        coordinator.consumed();
+
+        first.complete();
+        first.complete();
+
+        assertThat(coordinator.getInFlight(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldHoldCommitsOnceAMessageHasFailed() throws Exception {
+        final CommitCoordinator coordinator = new CommitCoordinator(1, 60000, new MetricRegistry());
+        final CommitCoordinator.Ticket failed = coordinator.consumed();
+        final CommitCoordinator.Ticket next = coordinator.consumed();
+
+        failed.fail();
+        failed.complete();
+        next.complete();
+
+        assertThat(coordinator.getFailed(), equalTo(1));
+        assertThat(coordinator.getInFlight(), equalTo(2L));
+        assertThat(coordinator.awaitCompletion(60000), equalTo(-1L));
+    }
+
+    @Test
+    public void shouldReleaseCommitsOnceAFailedMessageIsProcessedAgain() throws Exception {
+        final CommitCoordinator coordinator = new CommitCoordinator(1, 60000, new MetricRegistry());
+        final UUID messageId = UUID.randomUUID();
+        coordinator.consumed(messageId).fail();
+        coordinator.consumed(UUID.randomUUID()).complete();
+        assertThat(coordinator.committable(), equalTo(-1L));
+
+        coordinator.consumed(messageId).complete();
+
+        assertThat(coordinator.getFailed(), equalTo(0));
+        assertThat(coordinator.getInFlight(), equalTo(0L));
+        assertThat(coordinator.committable(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldNotTreatMessagesWithoutIdAsRetries() throws Exception {
+        final CommitCoordinator coordinator = new CommitCoordinator(1, 60000, new MetricRegistry());
+        coordinator.consumed().fail();
+
+        coordinator.consumed().complete();
+
+        assertThat(coordinator.getFailed(), equalTo(1));
+        assertThat(coordinator.committable(), equalTo(-1L));
+    }
+
+    @Test
+    public void shouldOnlyBeCommittableOnceEveryConsumedMessageHasCompleted() throws Exception {
+        final CommitCoordinator coordinator = new CommitCoordinator(1, 60000, new MetricRegistry());
+        final CommitCoordinator.Ticket first = coordinator.consumed();
+        coordinator.consumed().complete();
+        assertThat(coordinator.committable(), equalTo(-1L));
+
+        first.complete();
+
+        assertThat(coordinator.committable(), equalTo(2L));
+    }
+}
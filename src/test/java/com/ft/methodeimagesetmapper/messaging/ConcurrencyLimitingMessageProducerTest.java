@@ -0,0 +1,121 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ft.messaging.standards.message.v1.Message;
+import com.ft.methodeimagesetmapper.exception.ProducerOverloadedException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ConcurrencyLimitingMessageProducerTest {
+
+    private static final List<Message> MESSAGES = Collections.singletonList(new Message());
+
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    @Test
+    public void shouldRaiseLimitWhileItIsUsedAndSendsStayFast() {
+        final ConcurrencyLimitingMessageProducer producer = new ConcurrencyLimitingMessageProducer(
+                messages -> { }, 2, 1, 10, 1000, 0.9, 1000, 100, metrics);
+
+        for (int i = 0; i < 10; i++) {
+            producer.send(MESSAGES);
+        }
+
+        // a single caller keeps at most one send in flight, so the limit stops growing once it is no longer used
+        assertThat(producer.getLimit(), equalTo(3));
+        assertThat(producer.getInFlight(), equalTo(0));
+    }
+
+    @Test
+    public void shouldBackOffWhenSendsFail() {
+        final ConcurrencyLimitingMessageProducer producer = new ConcurrencyLimitingMessageProducer(
+                messages -> {
+                    throw new IllegalStateException("kafka-proxy unavailable");
+                }, 10, 2, 10, 1000, 0.5, 1000, 100, metrics);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                producer.send(MESSAGES);
+                fail("send should have failed");
+            } catch (IllegalStateException expected) {
+                // the limit backs off on every failure
+            }
+        }
+
+        assertThat(producer.getLimit(), equalTo(2));
+    }
+
+    @Test
+    public void shouldBackOffOnceForSendsFailingInTheSameRoundTrip() throws Exception {
+        final CountDownLatch inFlight = new CountDownLatch(3);
+        final ConcurrencyLimitingMessageProducer producer = new ConcurrencyLimitingMessageProducer(
+                messages -> {
+                    inFlight.countDown();
+                    try {
+                        inFlight.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IllegalStateException("kafka-proxy unavailable");
+                }, 10, 1, 10, 1000, 0.5, 1000, 100, metrics);
+        final ExecutorService senders = Executors.newFixedThreadPool(3);
+        final List<CompletableFuture<Void>> sends = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            sends.add(CompletableFuture.runAsync(() -> producer.send(MESSAGES), senders));
+        }
+        for (CompletableFuture<Void> send : sends) {
+            try {
+                send.get(5, TimeUnit.SECONDS);
+                fail("send should have failed");
+            } catch (ExecutionException expected) {
+                // all three were in flight together
+            }
+        }
+        senders.shutdown();
+
+        assertThat(producer.getLimit(), equalTo(5));
+    }
+
+    @Test
+    public void shouldRejectSendsBeyondTheLimitOnceQueueWaitHasPassed() throws Exception {
+        final CountDownLatch inFlight = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ConcurrencyLimitingMessageProducer producer = new ConcurrencyLimitingMessageProducer(
+                messages -> {
+                    inFlight.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, 1, 1, 1, 1000, 0.9, 1000, 50, metrics);
+        final CompletableFuture<Void> first = CompletableFuture.runAsync(() -> producer.send(MESSAGES));
+        inFlight.await(5, TimeUnit.SECONDS);
+
+        try {
+            producer.send(MESSAGES);
+            fail("send beyond the limit should have been rejected");
+        } catch (ProducerOverloadedException expected) {
+            assertThat(metrics.meter(MetricRegistry.name(ConcurrencyLimitingMessageProducer.class, "rejected")).getCount(),
+                    equalTo(1L));
+        } finally {
+            release.countDown();
+        }
+        first.get(5, TimeUnit.SECONDS);
+        assertThat(producer.getInFlight(), equalTo(0));
+    }
+}
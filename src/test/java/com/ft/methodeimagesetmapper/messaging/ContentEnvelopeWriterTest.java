@@ -0,0 +1,99 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ft.content.model.Content;
+import org.junit.Test;
+
+import javax.ws.rs.core.UriBuilder;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ContentEnvelopeWriterTest {
+
+    private static final ObjectMapper JACKSON_MAPPER = new ObjectMapper();
+    private static final UriBuilder URI_BUILDER = UriBuilder.fromUri("http://www.example.org/content").path("{uuid}");
+
+    private final ContentEnvelopeWriter writer = new ContentEnvelopeWriter(JACKSON_MAPPER, URI_BUILDER);
+
+    @Test
+    public void shouldWriteTheSameBodyAsSerializingTheEnvelopeMap() throws Exception {
+        final Content content = content(UUID.randomUUID(), new Date(1395062013123L));
+
+        assertThat(writer.write(content), equalTo(JACKSON_MAPPER.writeValueAsString(envelope(content))));
+    }
+
+    @Test
+    public void shouldFollowTheObjectMapperIndentation() throws Exception {
+        final ObjectMapper indenting = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        final Content content = content(UUID.randomUUID(), new Date(1395062013000L));
+
+        assertThat(new ContentEnvelopeWriter(indenting, URI_BUILDER).write(content),
+                equalTo(indenting.writeValueAsString(envelope(content))));
+    }
+
+    @Test
+    public void shouldBuildContentUriFromTemplate() {
+        final String uuid = UUID.randomUUID().toString();
+
+        assertThat(writer.contentUri(uuid), equalTo("http://www.example.org/content/" + uuid));
+    }
+
+    @Test
+    public void shouldFallBackToUriBuilderForValuesThatNeedEncoding() {
+        assertThat(writer.contentUri("not a uuid"), equalTo(URI_BUILDER.clone().build("not a uuid").toString()));
+    }
+
+    @Test
+    public void shouldWriteConcurrentlyWithASharedInstance() throws Exception {
+        final ExecutorService threads = Executors.newFixedThreadPool(8);
+        final List<Content> contents = new ArrayList<>();
+        final List<Future<String>> bodies = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                final Content content = content(UUID.randomUUID(), new Date(1395062013000L + i));
+                contents.add(content);
+                bodies.add(threads.submit((Callable<String>) () -> writer.write(content)));
+            }
+            for (int i = 0; i < contents.size(); i++) {
+                assertThat(bodies.get(i).get(), equalTo(JACKSON_MAPPER.writeValueAsString(envelope(contents.get(i)))));
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    private static Content content(UUID uuid, Date lastModified) {
+        return Content.builder()
+                .withUuid(uuid)
+                .withType("ImageSet")
+                .withTitle("Fruits of the soul")
+                .withPublishReference("tid_test")
+                .withLastModified(lastModified)
+                .withMediaType("image/jpeg")
+                .build();
+    }
+
+    private static Map<String, Object> envelope(Content content) {
+        final Map<String, Object> envelope = new LinkedHashMap<>();
+        envelope.put("contentUri", URI_BUILDER.clone().build(content.getUuid()).toString());
+        envelope.put("payload", content);
+        envelope.put("lastModified", DateTimeFormatter.ISO_OFFSET_DATE_TIME
+                .format(OffsetDateTime.ofInstant(content.getLastModified().toInstant(), UTC)));
+        return envelope;
+    }
+}
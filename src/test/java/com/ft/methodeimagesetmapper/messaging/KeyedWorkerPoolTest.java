@@ -0,0 +1,308 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class KeyedWorkerPoolTest {
+
+    private KeyedWorkerPool pool;
+
+    @After
+    public void tearDown() throws Exception {
+        if (pool != null) {
+            pool.stop();
+        }
+    }
+
+    @Test
+    public void shouldKeepSubmissionOrderForTheSameKey() throws Exception {
+        pool = new KeyedWorkerPool(4, 10, 5000);
+        pool.start();
+        final List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+
+        for (int i = 0; i < 500; i++) {
+            final int sequence = i;
+            pool.execute("same-image", () -> processed.add(sequence));
+        }
+        pool.stop();
+
+        assertThat(processed.size(), equalTo(500));
+        for (int i = 0; i < 500; i++) {
+            assertThat(processed.get(i), equalTo(i));
+        }
+    }
+
+    @Test
+    public void shouldProcessDifferentKeysInParallel() throws Exception {
+        pool = new KeyedWorkerPool(2, 10, 5000);
+        pool.start();
+        final CountDownLatch bothRunning = new CountDownLatch(2);
+        final AtomicInteger overlapping = new AtomicInteger();
+
+        for (String key : keysOnDifferentWorkers()) {
+            pool.execute(key, () -> {
+                bothRunning.countDown();
+                try {
+                    if (bothRunning.await(5, TimeUnit.SECONDS)) {
+                        overlapping.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        pool.stop();
+
+        assertThat(overlapping.get(), equalTo(2));
+    }
+
+    @Test
+    public void shouldDrainQueuedTasksOnStop() throws Exception {
+        pool = new KeyedWorkerPool(2, 100, 5000);
+        pool.start();
+        final AtomicInteger processed = new AtomicInteger();
+
+        for (int i = 0; i < 150; i++) {
+            pool.execute("image-" + i, () -> {
+                sleep(1);
+                processed.incrementAndGet();
+            });
+        }
+        pool.stop();
+
+        assertThat(processed.get(), equalTo(150));
+        assertThat(pool.getQueueDepth(), equalTo(0));
+    }
+
+    @Test
+    public void shouldKeepProcessingAfterATaskFails() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        pool = new KeyedWorkerPool(1, 10, 10, 1, 0, 5000, metrics);
+        pool.start();
+        final AtomicInteger processed = new AtomicInteger();
+
+        pool.execute("image", () -> {
+            throw new IllegalStateException("mapping failed");
+        });
+        pool.execute("image", processed::incrementAndGet);
+        pool.stop();
+
+        assertThat(processed.get(), equalTo(1));
+        assertThat(metrics.counter(MetricRegistry.name(KeyedWorkerPool.class, "live", "failed")).getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldKeepProcessingAfterATaskThrowsAnError() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        pool = new KeyedWorkerPool(1, 10, 10, 1, 0, 5000, metrics);
+        pool.start();
+        final AtomicInteger processed = new AtomicInteger();
+
+        pool.execute("image", () -> {
+            throw new AssertionError("mapping failed");
+        });
+        pool.execute("image", processed::incrementAndGet);
+        pool.stop();
+
+        assertThat(processed.get(), equalTo(1));
+        assertThat(metrics.counter(MetricRegistry.name(KeyedWorkerPool.class, "live", "failed")).getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldRejectTasksSubmittedWhileBlockedOnceStopping() throws Exception {
+        pool = new KeyedWorkerPool(1, 1, 5000);
+        pool.start();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger processed = new AtomicInteger();
+        pool.execute("image", () -> {
+            started.countDown();
+            await(release);
+        });
+        started.await(5, TimeUnit.SECONDS);
+        pool.execute("image", processed::incrementAndGet);
+
+        final CountDownLatch rejected = new CountDownLatch(1);
+        final Thread blockedSubmitter = new Thread(() -> {
+            try {
+                pool.execute("image", processed::incrementAndGet);
+            } catch (IllegalStateException e) {
+                rejected.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        blockedSubmitter.start();
+        sleep(50);
+        final Thread stopper = new Thread(() -> {
+            try {
+                pool.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stopper.start();
+
+        assertThat(rejected.await(5, TimeUnit.SECONDS), equalTo(true));
+        release.countDown();
+        stopper.join();
+        assertThat(processed.get(), equalTo(1));
+    }
+
+    @Test
+    public void shouldTimeSubmissionsBlockedByAFullBulkQueue() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        pool = new KeyedWorkerPool(1, 10, 1, 4, 0, 5000, metrics);
+        pool.start();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        pool.execute("image-1", Lane.BULK, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await(5, TimeUnit.SECONDS);
+        pool.execute("image-2", Lane.BULK, () -> { });
+        new Thread(() -> {
+            sleep(50);
+            release.countDown();
+        }).start();
+        pool.execute("image-3", Lane.BULK, () -> { });
+
+        assertThat(metrics.timer(MetricRegistry.name(KeyedWorkerPool.class, "bulk", "blocked")).getCount(), equalTo(1L));
+        assertThat(metrics.timer(MetricRegistry.name(KeyedWorkerPool.class, "live", "blocked")).getCount(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldCountTasksDroppedWhenStopTimesOut() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        pool = new KeyedWorkerPool(1, 10, 10, 1, 0, 50, metrics);
+        pool.start();
+        final CountDownLatch started = new CountDownLatch(1);
+
+        pool.execute("image", () -> {
+            started.countDown();
+            sleep(5000);
+        });
+        started.await(5, TimeUnit.SECONDS);
+        pool.execute("image", () -> { });
+        pool.execute("image", () -> { });
+        pool.stop();
+
+        assertThat(metrics.counter(MetricRegistry.name(KeyedWorkerPool.class, "dropped")).getCount(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldRunLiveTasksAheadOfWaitingBulkTasks() throws Exception {
+        pool = new KeyedWorkerPool(1, 10, 10, 4, 0, 5000, new MetricRegistry());
+        pool.start();
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+        pool.execute("blocker", Lane.BULK, () -> {
+            running.countDown();
+            await(blocked);
+        });
+        running.await(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 5; i++) {
+            final String bulk = "bulk-" + i;
+            pool.execute(bulk, Lane.BULK, () -> processed.add(bulk));
+        }
+        for (int i = 0; i < 5; i++) {
+            final String live = "live-" + i;
+            pool.execute(live, Lane.LIVE, () -> processed.add(live));
+        }
+        assertThat(pool.getQueueDepth(Lane.BULK), equalTo(5));
+        blocked.countDown();
+        pool.stop();
+
+        assertThat(processed, equalTo(Arrays.asList("live-0", "live-1", "live-2", "live-3", "bulk-0",
+                "live-4", "bulk-1", "bulk-2", "bulk-3", "bulk-4")));
+    }
+
+    @Test
+    public void shouldKeepSubmissionOrderForTheSameKeyAcrossLanes() throws Exception {
+        pool = new KeyedWorkerPool(1, 10, 10, 4, 0, 5000, new MetricRegistry());
+        pool.start();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+        pool.execute("blocker", () -> await(blocked));
+        pool.execute("image", Lane.BULK, () -> processed.add("image-republished"));
+        pool.execute("other", Lane.LIVE, () -> processed.add("other-published"));
+        pool.execute("image", Lane.LIVE, () -> processed.add("image-published"));
+        blocked.countDown();
+        pool.stop();
+
+        assertThat(processed, equalTo(Arrays.asList("other-published", "image-republished", "image-published")));
+    }
+
+    @Test
+    public void shouldLimitRateOfBulkTasks() throws Exception {
+        pool = new KeyedWorkerPool(2, 10, 10, 4, 20, 5000, new MetricRegistry());
+        pool.start();
+        final AtomicInteger processed = new AtomicInteger();
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            pool.execute("image-" + i, Lane.BULK, processed::incrementAndGet);
+        }
+        pool.stop();
+
+        assertThat(processed.get(), equalTo(10));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 300, equalTo(true));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRunInlineAndPropagateFailuresWithoutWorkers() throws Exception {
+        pool = KeyedWorkerPool.inline();
+
+        pool.execute("image", () -> {
+            throw new IllegalStateException("mapping failed");
+        });
+    }
+
+    private static List<String> keysOnDifferentWorkers() {
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < 2; i++) {
+            final String key = "image-" + i;
+            if (keys.isEmpty() || Math.floorMod(key.hashCode(), 2) != Math.floorMod(keys.get(0).hashCode(), 2)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
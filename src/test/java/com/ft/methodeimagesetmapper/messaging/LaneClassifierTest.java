@@ -0,0 +1,64 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.ft.messaging.standards.message.v1.Message;
+import com.ft.methodeimagesetmapper.model.EomFile;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LaneClassifierTest {
+
+    private final LaneClassifier classifier = new LaneClassifier(Collections.singletonList("republish_"),
+            Collections.singletonMap("X-Publish-Priority", "bulk"), TimeUnit.DAYS.toMillis(7));
+
+    @Mock
+    private Message message;
+    @Mock
+    private EomFile image;
+
+    @Test
+    public void thatRecentlyModifiedImageIsLive() {
+        when(image.getLastModified()).thenReturn(new Date());
+
+        assertThat(classifier.classify(message, "tid_abc", image), equalTo(Lane.LIVE));
+    }
+
+    @Test
+    public void thatRepublishTransactionIsBulk() {
+        when(image.getLastModified()).thenReturn(new Date());
+
+        assertThat(classifier.classify(message, "republish_tid_abc", image), equalTo(Lane.BULK));
+    }
+
+    @Test
+    public void thatMessageWithBulkHeaderIsBulk() {
+        when(image.getLastModified()).thenReturn(new Date());
+        when(message.getCustomMessageHeader("X-Publish-Priority")).thenReturn("BULK");
+
+        assertThat(classifier.classify(message, "tid_abc", image), equalTo(Lane.BULK));
+    }
+
+    @Test
+    public void thatImageModifiedLongAgoIsBulk() {
+        when(image.getLastModified()).thenReturn(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30)));
+
+        assertThat(classifier.classify(message, "tid_abc", image), equalTo(Lane.BULK));
+    }
+
+    @Test
+    public void thatEverythingIsLiveWithoutBulkCriteria() {
+        when(image.getLastModified()).thenReturn(new Date(0));
+
+        assertThat(LaneClassifier.allLive().classify(message, "republish_tid_abc", image), equalTo(Lane.LIVE));
+    }
+}
@@ -0,0 +1,55 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ft.methodeimagesetmapper.service.MethodeImageSetMapper;
+import org.junit.Test;
+
+import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MappingWarmUpTest {
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final AtomicInteger sends = new AtomicInteger();
+    private final MethodeImageSetMapper imageSetMapper = new MethodeImageSetMapper(metrics);
+    private final MessageProducingContentMapper contentMapper = new MessageProducingContentMapper(imageSetMapper,
+            new ObjectMapper(), "junit_system", messages -> sends.incrementAndGet(),
+            UriBuilder.fromUri("http://www.example.org/content").path("{uuid}"));
+
+    @Test
+    public void shouldMapWithoutPublishingAndSampleWarmLatency() throws Exception {
+        final MappingWarmUp warmUp = new MappingWarmUp(imageSetMapper, contentMapper, 50, 10, 60000, metrics);
+        assertThat(warmUp.isComplete(), is(false));
+
+        warmUp.start();
+        waitForSamples(10);
+
+        assertThat(warmUp.isComplete(), is(true));
+        assertThat(sends.get(), equalTo(0));
+        assertThat(metrics.timer(MetricRegistry.name(MethodeImageSetMapper.class, "content-build")).getCount(), equalTo(60L));
+        warmUp.stop();
+    }
+
+    @Test
+    public void shouldCompleteOnceMaxDurationHasPassed() throws Exception {
+        final MappingWarmUp warmUp = new MappingWarmUp(imageSetMapper, contentMapper, Integer.MAX_VALUE, 0, 0, metrics);
+
+        warmUp.start();
+        warmUp.stop();
+
+        assertThat(warmUp.isComplete(), is(true));
+    }
+
+    private void waitForSamples(long samples) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 30000;
+        while (metrics.timer(MetricRegistry.name(MappingWarmUp.class, "warm-latency")).getCount() < samples
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.ft.methodeimagesetmapper.messaging;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ft.content.model.Content;
 import com.ft.messagequeueproducer.MessageProducer;
@@ -9,6 +11,7 @@ import com.ft.messaging.standards.message.v1.Message;
 import com.ft.messaging.standards.message.v1.MessageType;
 import com.ft.messaging.standards.message.v1.SystemId;
 import com.ft.methodeimagesetmapper.exception.ContentMapperException;
+import com.ft.methodeimagesetmapper.exception.ProducerOverloadedException;
 import com.ft.methodeimagesetmapper.model.EomFile;
 import com.ft.methodeimagesetmapper.service.MethodeImageSetMapper;
 import org.junit.Test;
@@ -26,7 +29,9 @@ import java.util.UUID;
 
 import static com.ft.api.util.transactionid.TransactionIdUtils.TRANSACTION_ID_HEADER;
 import static com.ft.messaging.standards.message.v1.MediaType.JSON;
+import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
@@ -66,9 +71,9 @@ public class MessageProducingContentMapperTest {
 
         when(delegate.mapImageSet(eq(uuid.toString()), any(EomFile.class), eq(PUBLISH_REF), eq(lastModified))).thenReturn(content);
 
-        Content actual = mapper.mapImageSet(uuid.toString(), incoming, PUBLISH_REF, lastModified);
+        PublishOutcome actual = mapper.mapImageSet(uuid.toString(), incoming, PUBLISH_REF, lastModified);
 
-        assertThat(actual, equalTo(content));
+        assertThat(actual, equalTo(PublishOutcome.SENT));
 
         @SuppressWarnings("rawtypes")
         ArgumentCaptor<List> listCaptor = ArgumentCaptor.forClass(List.class);
@@ -123,7 +128,8 @@ public class MessageProducingContentMapperTest {
 
         when(delegate.mapImageSet(eq(uuid.toString()), any(EomFile.class), eq(PUBLISH_REF), eq(lastModified))).thenReturn(content);
 
-        when(failing.writeValueAsString(any())).thenThrow(new JsonGenerationException("test exception"));
+        when(failing.getFactory()).thenReturn(JACKSON_MAPPER.getFactory());
+        doThrow(new JsonGenerationException("test exception")).when(failing).writeValue(any(JsonGenerator.class), any());
 
         try {
             mapper.mapImageSet(uuid.toString(), incoming, PUBLISH_REF, lastModified);
@@ -131,4 +137,132 @@ public class MessageProducingContentMapperTest {
             verifyZeroInteractions(producer);
         }
     }
+
+    @Test
+    public void thatUnchangedImageSetIsNotRemappedOrResent() throws Exception {
+        final PublishedFingerprintCache fingerprints = new PublishedFingerprintCache(100, 60000, "republish_", new MetricRegistry());
+        mapper = new MessageProducingContentMapper.Builder(delegate, JACKSON_MAPPER, SYSTEM_ID.toString(), producer, URI_BUILDER)
+                .withPublishedFingerprints(fingerprints)
+                .build();
+
+        UUID uuid = UUID.randomUUID();
+        Date lastModified = new Date();
+        Content content = new Content.Builder()
+                .withUuid(uuid)
+                .withTitle(TITLE)
+                .withPublishReference(PUBLISH_REF)
+                .withLastModified(lastModified)
+                .build();
+        EomFile image = new EomFile(uuid.toString(), "Image", new byte[]{1}, "<meta/>", "", "<props/>", "<tl/>", lastModified);
+
+        when(delegate.mapImageSet(eq(uuid.toString()), any(EomFile.class), any(String.class), eq(lastModified))).thenReturn(content);
+
+        mapper.mapImageSet(uuid.toString(), image, PUBLISH_REF, lastModified);
+        PublishOutcome skipped = mapper.mapImageSet(uuid.toString(), image, PUBLISH_REF, lastModified);
+        mapper.mapImageSet(uuid.toString(), image, "republish_" + PUBLISH_REF, lastModified);
+
+        assertThat(skipped, equalTo(PublishOutcome.UNCHANGED));
+        verify(delegate, times(2)).mapImageSet(eq(uuid.toString()), any(EomFile.class), any(String.class), eq(lastModified));
+        verify(producer, times(2)).send(any(List.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void thatPreparedImageSetsArePublishedTogetherAndRememberedOnceSent() throws Exception {
+        final PublishedFingerprintCache fingerprints = new PublishedFingerprintCache(100, 60000, "republish_", new MetricRegistry());
+        mapper = new MessageProducingContentMapper.Builder(delegate, JACKSON_MAPPER, SYSTEM_ID.toString(), producer, URI_BUILDER)
+                .withPublishedFingerprints(fingerprints)
+                .build();
+
+        Date lastModified = new Date();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        EomFile firstImage = new EomFile(first.toString(), "Image", new byte[]{1}, "<meta/>", "", "<props/>", "<tl/>", lastModified);
+        EomFile secondImage = new EomFile(second.toString(), "Image", new byte[]{2}, "<meta/>", "", "<props/>", "<tl/>", lastModified);
+        for (UUID uuid : asList(first, second)) {
+            when(delegate.mapImageSet(eq(uuid.toString()), any(EomFile.class), any(String.class), eq(lastModified)))
+                    .thenReturn(new Content.Builder().withUuid(uuid).withTitle(TITLE).withPublishReference(PUBLISH_REF)
+                            .withLastModified(lastModified).build());
+        }
+
+        PublishOutcome actual = mapper.publish(asList(
+                mapper.prepare(first.toString(), firstImage, PUBLISH_REF, lastModified),
+                mapper.prepare(second.toString(), secondImage, PUBLISH_REF, lastModified)));
+
+        assertThat(actual, equalTo(PublishOutcome.SENT));
+        @SuppressWarnings("rawtypes")
+        ArgumentCaptor<List> sentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(producer).send(sentCaptor.capture());
+        assertThat(sentCaptor.getValue().size(), equalTo(2));
+        assertThat(mapper.prepare(first.toString(), firstImage, PUBLISH_REF, lastModified), nullValue());
+        assertThat(mapper.mapImageSet(second.toString(), secondImage, PUBLISH_REF, lastModified), equalTo(PublishOutcome.UNCHANGED));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void thatMessageIsSpooledWhenItCannotBeSentAndRecreatedFromTheSpool() throws Exception {
+        final MessageSpool spool = mock(MessageSpool.class);
+        when(spool.isEmpty()).thenReturn(true);
+        when(spool.append(any(List.class))).thenReturn(true);
+        doThrow(new IllegalStateException("kafka-proxy unavailable")).when(producer).send(any(List.class));
+        mapper = new MessageProducingContentMapper.Builder(delegate, JACKSON_MAPPER, SYSTEM_ID.toString(), producer, URI_BUILDER)
+                .withSpool(spool)
+                .build();
+
+        UUID uuid = UUID.randomUUID();
+        Date lastModified = new Date();
+        Content content = new Content.Builder()
+                .withUuid(uuid)
+                .withTitle(TITLE)
+                .withPublishReference(PUBLISH_REF)
+                .withLastModified(lastModified)
+                .build();
+
+        when(delegate.mapImageSet(eq(uuid.toString()), any(EomFile.class), eq(PUBLISH_REF), eq(lastModified))).thenReturn(content);
+
+        PublishOutcome actual = mapper.mapImageSet(uuid.toString(), incoming, PUBLISH_REF, lastModified);
+
+        assertThat(actual, equalTo(PublishOutcome.SPOOLED));
+        @SuppressWarnings("rawtypes")
+        ArgumentCaptor<List> spooledCaptor = ArgumentCaptor.forClass(List.class);
+        verify(spool).append(spooledCaptor.capture());
+        List<SpooledMessage> spooled = spooledCaptor.getValue();
+        assertThat(spooled.size(), equalTo(1));
+        assertThat(spooled.get(0).getKey(), equalTo(uuid.toString()));
+        assertThat(spooled.get(0).getTransactionId(), equalTo(PUBLISH_REF));
+
+        Message replayed = mapper.toMessage(spooled.get(0));
+        assertThat(((KeyedMessage) replayed).getKey(), equalTo(uuid.toString()));
+        assertThat(replayed.getMessageId().toString(), equalTo(spooled.get(0).getMessageId()));
+        assertThat(replayed.getMessageBody(), equalTo(spooled.get(0).getBody()));
+        assertThat(replayed.getCustomMessageHeader(TRANSACTION_ID_HEADER), equalTo(PUBLISH_REF));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(expected = ProducerOverloadedException.class)
+    public void thatMessageIsNotSentAheadOfSpooledMessagesWhenTheSpoolIsFull() throws Exception {
+        final MessageSpool spool = mock(MessageSpool.class);
+        when(spool.isEmpty()).thenReturn(false);
+        when(spool.append(any(List.class))).thenReturn(false);
+        mapper = new MessageProducingContentMapper.Builder(delegate, JACKSON_MAPPER, SYSTEM_ID.toString(), producer, URI_BUILDER)
+                .withSpool(spool)
+                .build();
+
+        UUID uuid = UUID.randomUUID();
+        Date lastModified = new Date();
+        Content content = new Content.Builder()
+                .withUuid(uuid)
+                .withTitle(TITLE)
+                .withPublishReference(PUBLISH_REF)
+                .withLastModified(lastModified)
+                .build();
+
+        when(delegate.mapImageSet(eq(uuid.toString()), any(EomFile.class), eq(PUBLISH_REF), eq(lastModified))).thenReturn(content);
+
+        try {
+            mapper.mapImageSet(uuid.toString(), incoming, PUBLISH_REF, lastModified);
+        } finally {
+            verify(producer, never()).send(any(List.class));
+        }
+    }
 }
@@ -0,0 +1,63 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.UniformInterfaceException;
+import com.sun.jersey.core.header.InBoundHeaders;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.ConnectException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MessageRejectionFilterTest {
+
+    private static final String MESSAGES_URI = "http://localhost:8080/topics/CmsPublicationEvents";
+
+    private int proxyStatus;
+    private final Client client = new Client(request -> response(proxyStatus));
+
+    @Before
+    public void setUp() {
+        client.addFilter(new MessageRejectionFilter());
+    }
+
+    @Test
+    public void shouldFailPostedMessagesTheKafkaProxyRejects() {
+        proxyStatus = 400;
+
+        try {
+            client.resource(MESSAGES_URI).post(ClientResponse.class, "{}");
+            fail("post should have failed");
+        } catch (UniformInterfaceException e) {
+            assertThat(MessageRejectionFilter.isRejection(new IllegalStateException("send failed", e)), is(true));
+        }
+    }
+
+    @Test
+    public void shouldPassOtherResponsesThrough() {
+        proxyStatus = 503;
+        assertThat(client.resource(MESSAGES_URI).post(ClientResponse.class, "{}").getStatus(), equalTo(503));
+
+        proxyStatus = 404;
+        assertThat(client.resource(MESSAGES_URI).get(ClientResponse.class).getStatus(), equalTo(404));
+    }
+
+    @Test
+    public void shouldNotTreatUnavailabilityOrThrottlingAsRejection() {
+        assertThat(MessageRejectionFilter.isRejection(new UniformInterfaceException(response(503))), is(false));
+        assertThat(MessageRejectionFilter.isRejection(new UniformInterfaceException(response(429))), is(false));
+        assertThat(MessageRejectionFilter.isRejection(new ClientHandlerException(new ConnectException())), is(false));
+        assertThat(MessageRejectionFilter.isRejection(new IllegalStateException("send failed")), is(false));
+    }
+
+    private static ClientResponse response(int status) {
+        return new ClientResponse(status, new InBoundHeaders(), new ByteArrayInputStream(new byte[0]), null);
+    }
+}
@@ -0,0 +1,147 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MessageSpoolTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private MessageSpool spool;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.getRoot().toPath().resolve("producer.spool");
+        spool = new MessageSpool(file, 64 * 1024, OBJECT_MAPPER);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        spool.close();
+    }
+
+    @Test
+    public void shouldStartEmpty() throws IOException {
+        assertThat(spool.isEmpty(), is(true));
+        assertThat(spool.peek(10).isEmpty(), is(true));
+        assertThat(spool.getOldestSpooledAt(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldPeekMessagesInOrderWithoutRemovingThem() throws IOException {
+        spool.append(Arrays.asList(message("1"), message("2")));
+        spool.append(Collections.singletonList(message("3")));
+
+        MessageSpool.Batch batch = spool.peek(2);
+
+        assertThat(batch.getMessages().size(), equalTo(2));
+        assertThat(batch.getMessages().get(0).getKey(), equalTo("1"));
+        assertThat(batch.getMessages().get(0).getBody(), equalTo("body-1"));
+        assertThat(batch.getMessages().get(1).getKey(), equalTo("2"));
+        assertThat(spool.size(), equalTo(3L));
+    }
+
+    @Test
+    public void shouldRemovePeekedBatch() throws IOException {
+        spool.append(Arrays.asList(message("1"), message("2"), message("3")));
+
+        spool.remove(spool.peek(2));
+
+        assertThat(spool.size(), equalTo(1L));
+        assertThat(spool.peek(10).getMessages().get(0).getKey(), equalTo("3"));
+        spool.remove(spool.peek(10));
+        assertThat(spool.isEmpty(), is(true));
+        assertThat(spool.getUsedBytes(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldKeepMessagesAddedAfterPeek() throws IOException {
+        spool.append(Collections.singletonList(message("1")));
+        MessageSpool.Batch batch = spool.peek(10);
+        spool.append(Collections.singletonList(message("2")));
+
+        spool.remove(batch);
+
+        assertThat(spool.size(), equalTo(1L));
+        assertThat(spool.peek(10).getMessages().get(0).getKey(), equalTo("2"));
+    }
+
+    @Test
+    public void shouldSurviveReopening() throws IOException {
+        spool.append(Arrays.asList(message("1"), message("2")));
+        spool.remove(spool.peek(1));
+        spool.close();
+
+        spool = new MessageSpool(file, 64 * 1024, OBJECT_MAPPER);
+
+        assertThat(spool.size(), equalTo(1L));
+        SpooledMessage reread = spool.peek(10).getMessages().get(0);
+        assertThat(reread.getKey(), equalTo("2"));
+        assertThat(reread.getTransactionId(), equalTo("tid_2"));
+        assertThat(reread.getMessageTimestamp(), equalTo(1234L));
+    }
+
+    @Test
+    public void shouldRefuseMessagesThatDoNotFit() throws IOException {
+        char[] large = new char[40 * 1024];
+        Arrays.fill(large, 'x');
+        SpooledMessage largeMessage = new SpooledMessage("1", "id", 1234L, "tid", new String(large));
+
+        assertThat(spool.append(Collections.singletonList(largeMessage)), is(true));
+        assertThat(spool.append(Collections.singletonList(largeMessage)), is(false));
+        assertThat(spool.size(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldReuseReplayedSpaceWhileMessagesAreStillQueued() throws IOException {
+        char[] body = new char[20 * 1024];
+        Arrays.fill(body, 'x');
+        for (int i = 1; i <= 3; i++) {
+            assertThat(spool.append(Collections.singletonList(
+                    new SpooledMessage(String.valueOf(i), "id", 1234L, "tid", new String(body)))), is(true));
+        }
+        spool.remove(spool.peek(2));
+
+        assertThat(spool.append(Collections.singletonList(
+                new SpooledMessage("4", "id", 1234L, "tid", new String(body)))), is(true));
+        spool.close();
+        spool = new MessageSpool(file, 64 * 1024, OBJECT_MAPPER);
+
+        assertThat(spool.size(), equalTo(2L));
+        final List<SpooledMessage> queued = spool.peek(10).getMessages();
+        assertThat(queued.get(0).getKey(), equalTo("3"));
+        assertThat(queued.get(1).getKey(), equalTo("4"));
+    }
+
+    @Test
+    public void shouldReportWhenOldestMessageWasSpooled() throws IOException {
+        long before = System.currentTimeMillis();
+        spool.append(Collections.singletonList(message("1")));
+
+        assertThat(spool.getOldestSpooledAt() + 1, greaterThan(before));
+        assertThat(spool.getUsedBytes(), greaterThan(0L));
+    }
+
+    private static SpooledMessage message(String key) {
+        return new SpooledMessage(key, "id-" + key, 1234L, "tid_" + key, "body-" + key);
+    }
+}
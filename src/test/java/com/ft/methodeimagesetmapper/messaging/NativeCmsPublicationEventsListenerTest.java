@@ -1,10 +1,13 @@
 package com.ft.methodeimagesetmapper.messaging;
 
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.ft.messaging.standards.message.v1.Message;
 import com.ft.messaging.standards.message.v1.SystemId;
 import com.ft.methodeimagesetmapper.exception.IngesterException;
+import com.ft.methodeimagesetmapper.exception.TransformationException;
 import com.ft.methodeimagesetmapper.model.EomFile;
 import com.ft.methodeimagesetmapper.validation.PublishingValidator;
 import com.ft.uuidutils.DeriveUUID;
@@ -59,7 +62,8 @@ public class NativeCmsPublicationEventsListenerTest {
         listener = new NativeCmsPublicationEventsListener(SYSTEM_CODE, mapper, JACKSON_MAPPER, publishingValidator);
 
         when(objectMapper.reader(EomFile.class)).thenReturn(objectReader);
-        when(objectReader.readValue(anyString())).thenThrow(IOException.class);
+        when(objectReader.getFactory()).thenReturn(JACKSON_MAPPER.getFactory());
+        when(objectReader.readValue(any(JsonParser.class))).thenThrow(IOException.class);
         errorListener = new NativeCmsPublicationEventsListener(SYSTEM_CODE, mapper, objectMapper, publishingValidator);
     }
 
@@ -118,6 +122,170 @@ public class NativeCmsPublicationEventsListenerTest {
         errorListener.onMessage(message, TX_ID);
     }
 
+    @Test
+    public void thatStagesAreTimedAndSkippedMessagesAreCountedByReason() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        final NativeCmsPublicationEventsListener meteredListener = new NativeCmsPublicationEventsListener.Builder(SYSTEM_CODE,
+                mapper, JACKSON_MAPPER, publishingValidator).withMetrics(metrics).build();
+        Message image = new Message();
+        image.setOriginSystemId(SystemId.systemIdFromCode(SYSTEM_CODE));
+        image.setMessageTimestamp(new Date());
+        image.setMessageBody(JACKSON_MAPPER.writeValueAsString(createSampleMethodeImage()));
+        Message foreign = new Message();
+        foreign.setOriginSystemId(SystemId.systemIdFromCode("foo"));
+
+        when(publishingValidator.isValidForPublishing(any(EomFile.class))).thenReturn(true, false);
+
+        meteredListener.onMessage(image, TX_ID);
+        meteredListener.onMessage(image, TX_ID);
+        meteredListener.onMessage(foreign, TX_ID);
+
+        assertThat(metrics.timer(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "consume")).getCount(), equalTo(3L));
+        assertThat(metrics.timer(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "deserialize")).getCount(), equalTo(2L));
+        assertThat(metrics.timer(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "uuid-derive")).getCount(), equalTo(1L));
+        assertThat(metrics.counter(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "skipped", "origin-system")).getCount(), equalTo(1L));
+        assertThat(metrics.counter(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "skipped", "not-valid-for-publishing")).getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void thatUnparseableMessagesAreCountedAsFailed() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        final NativeCmsPublicationEventsListener meteredListener = new NativeCmsPublicationEventsListener.Builder(SYSTEM_CODE,
+                mapper, objectMapper, publishingValidator).withMetrics(metrics).build();
+        Message message = new Message();
+        message.setOriginSystemId(SystemId.systemIdFromCode(SYSTEM_CODE));
+        message.setMessageBody(JACKSON_MAPPER.writeValueAsString(createSampleMethodeImage()));
+
+        try {
+            meteredListener.onMessage(message, TX_ID);
+        } catch (IngesterException expected) {
+            // counted below
+        }
+
+        assertThat(metrics.counter(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "failed", "unparseable")).getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void thatEventAgesAreRecordedAtReceiptAndPublication() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        final PublicationProgress progress = new PublicationProgress();
+        final NativeCmsPublicationEventsListener meteredListener = new NativeCmsPublicationEventsListener.Builder(SYSTEM_CODE,
+                mapper, JACKSON_MAPPER, publishingValidator).withMetrics(metrics).withPublicationProgress(progress).build();
+        Message message = new Message();
+        message.setOriginSystemId(SystemId.systemIdFromCode(SYSTEM_CODE));
+        message.setMessageTimestamp(new Date(System.currentTimeMillis() - 60000));
+        message.setMessageBody(JACKSON_MAPPER.writeValueAsString(createSampleMethodeImage()));
+
+        when(publishingValidator.isValidForPublishing(any(EomFile.class))).thenReturn(true);
+        when(mapper.mapImageSet(eq(IMAGE_SET_UUID), any(EomFile.class), eq(TX_ID), any(Date.class)))
+                .thenReturn(PublishOutcome.SENT);
+
+        meteredListener.onMessage(message, TX_ID);
+
+        assertThat(metrics.histogram(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "event-age-at-receipt")).getSnapshot().getMax(),
+                greaterThanOrEqualTo(60000L));
+        assertThat(metrics.histogram(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "event-age-at-publication")).getCount(),
+                equalTo(1L));
+        assertThat(metrics.histogram(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "modification-age-at-publication")).getCount(),
+                equalTo(1L));
+        assertThat(progress.getLagMillis(), greaterThanOrEqualTo(60000L));
+    }
+
+    @Test
+    public void thatListenersCanShareAMetricRegistry() {
+        final MetricRegistry metrics = new MetricRegistry();
+
+        new NativeCmsPublicationEventsListener.Builder(SYSTEM_CODE, mapper, JACKSON_MAPPER, publishingValidator)
+                .withMetrics(metrics).build();
+        new NativeCmsPublicationEventsListener.Builder(SYSTEM_CODE, mapper, JACKSON_MAPPER, publishingValidator)
+                .withMetrics(metrics).build();
+    }
+
+    @Test
+    public void thatFailedPublicationHoldsBackCommitsButUnmappableContentDoesNot() throws Exception {
+        final CommitCoordinator coordinator = new CommitCoordinator(1, 60000, new MetricRegistry());
+        final NativeCmsPublicationEventsListener committingListener = new NativeCmsPublicationEventsListener.Builder(
+                SYSTEM_CODE, mapper, JACKSON_MAPPER, publishingValidator).withCommitCoordinator(coordinator).build();
+        Message message = new Message();
+        message.setOriginSystemId(SystemId.systemIdFromCode(SYSTEM_CODE));
+        message.setMessageTimestamp(new Date());
+        message.setMessageBody(JACKSON_MAPPER.writeValueAsString(createSampleMethodeImage()));
+
+        when(publishingValidator.isValidForPublishing(any(EomFile.class))).thenReturn(true);
+        when(mapper.mapImageSet(eq(IMAGE_SET_UUID), any(EomFile.class), eq(TX_ID), any(Date.class)))
+                .thenThrow(new TransformationException(new IllegalArgumentException("bad XML")))
+                .thenThrow(new IllegalStateException("kafka-proxy unavailable"));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                committingListener.onMessage(message, TX_ID);
+            } catch (RuntimeException expected) {
+                // the inline worker pool rethrows
+            }
+        }
+
+        assertThat(coordinator.getFailed(), equalTo(1));
+        assertThat(coordinator.getInFlight(), equalTo(1L));
+    }
+
+    @Test
+    public void thatPublicationIsRetriedBeforeItHoldsBackCommits() throws Exception {
+        final CommitCoordinator coordinator = new CommitCoordinator(1, 60000, new MetricRegistry());
+        final MetricRegistry metrics = new MetricRegistry();
+        final NativeCmsPublicationEventsListener retryingListener = new NativeCmsPublicationEventsListener.Builder(
+                SYSTEM_CODE, mapper, JACKSON_MAPPER, publishingValidator)
+                .withCommitCoordinator(coordinator)
+                .withMetrics(metrics)
+                .withRetries(3, 1)
+                .build();
+        Message message = new Message();
+        message.setOriginSystemId(SystemId.systemIdFromCode(SYSTEM_CODE));
+        message.setMessageTimestamp(new Date());
+        message.setMessageBody(JACKSON_MAPPER.writeValueAsString(createSampleMethodeImage()));
+
+        when(publishingValidator.isValidForPublishing(any(EomFile.class))).thenReturn(true);
+        when(mapper.mapImageSet(eq(IMAGE_SET_UUID), any(EomFile.class), eq(TX_ID), any(Date.class)))
+                .thenThrow(new IllegalStateException("kafka-proxy unavailable"))
+                .thenThrow(new IllegalStateException("kafka-proxy unavailable"))
+                .thenReturn(PublishOutcome.SENT);
+
+        retryingListener.onMessage(message, TX_ID);
+
+        verify(mapper, times(3)).mapImageSet(eq(IMAGE_SET_UUID), any(EomFile.class), eq(TX_ID), any(Date.class));
+        assertThat(metrics.counter(MetricRegistry.name(NativeCmsPublicationEventsListener.class, "retried",
+                "IllegalStateException")).getCount(), equalTo(2L));
+        assertThat(coordinator.getFailed(), equalTo(0));
+        assertThat(coordinator.getInFlight(), equalTo(0L));
+    }
+
+    @Test
+    public void thatFailedMessageConsumedAgainReleasesCommits() throws Exception {
+        final CommitCoordinator coordinator = new CommitCoordinator(1, 60000, new MetricRegistry());
+        final NativeCmsPublicationEventsListener committingListener = new NativeCmsPublicationEventsListener.Builder(
+                SYSTEM_CODE, mapper, JACKSON_MAPPER, publishingValidator).withCommitCoordinator(coordinator).build();
+        Message message = new Message();
+        message.setMessageId(java.util.UUID.randomUUID());
+        message.setOriginSystemId(SystemId.systemIdFromCode(SYSTEM_CODE));
+        message.setMessageTimestamp(new Date());
+        message.setMessageBody(JACKSON_MAPPER.writeValueAsString(createSampleMethodeImage()));
+
+        when(publishingValidator.isValidForPublishing(any(EomFile.class))).thenReturn(true);
+        when(mapper.mapImageSet(eq(IMAGE_SET_UUID), any(EomFile.class), eq(TX_ID), any(Date.class)))
+                .thenThrow(new IllegalStateException("kafka-proxy unavailable"))
+                .thenReturn(PublishOutcome.SENT);
+
+        try {
+            committingListener.onMessage(message, TX_ID);
+        } catch (IllegalStateException expected) {
+            // the inline worker pool rethrows, and the consumer delivers the message again
+        }
+        assertThat(coordinator.getFailed(), equalTo(1));
+        committingListener.onMessage(message, TX_ID);
+
+        assertThat(coordinator.getFailed(), equalTo(0));
+        assertThat(coordinator.getInFlight(), equalTo(0L));
+    }
+
     private EomFile createSampleMethodeImage() throws Exception {
         final String attributes = loadFile("sample-attributes.xml");
         final String systemAttributes = loadFile("sample-system-attributes.xml");
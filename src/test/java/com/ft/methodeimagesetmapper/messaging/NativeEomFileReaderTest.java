@@ -0,0 +1,74 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ft.methodeimagesetmapper.model.EomFile;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class NativeEomFileReaderTest {
+
+    private static final String UUID = "d7625378-d4cd-11e2-bce1-002128161462";
+
+    private final NativeEomFileReader reader = new NativeEomFileReader(new ObjectMapper());
+
+    @Test
+    public void shouldReadImageInFull() throws Exception {
+        final EomFile eomFile = reader.read(loadFile("native-methode-image.json"));
+
+        assertThat(eomFile.getUuid(), equalTo(UUID));
+        assertThat(eomFile.getType(), equalTo("Image"));
+        assertThat(eomFile.hasValue(), equalTo(true));
+        assertThat(eomFile.getAttributes().contains("Fruits of the soul"), equalTo(true));
+        assertThat(eomFile.getSystemAttributes().contains("<fileType>JPEG</fileType>"), equalTo(true));
+        assertThat(eomFile.getUsageTickets().contains("web_publication"), equalTo(true));
+        assertThat(eomFile.getLastModified() != null, equalTo(true));
+    }
+
+    @Test
+    public void shouldReadImageWhenTypeComesAfterOtherFields() throws Exception {
+        final EomFile eomFile = reader.read("{\"value\":\"aW1hZ2U=\",\"attributes\":\"<meta/>\",\"uuid\":\"" + UUID + "\","
+                + "\"nested\":{\"type\":\"Article\"},\"type\":\"Image\",\"usageTickets\":\"<tl/>\"}");
+
+        assertThat(eomFile.getUuid(), equalTo(UUID));
+        assertThat(eomFile.getType(), equalTo("Image"));
+        assertThat(eomFile.getValueLength(), equalTo(5));
+        assertThat(eomFile.getAttributes(), equalTo("<meta/>"));
+        assertThat(eomFile.getUsageTickets(), equalTo("<tl/>"));
+    }
+
+    @Test
+    public void shouldStopReadingAtTypeWhenNotAnImage() throws Exception {
+        final EomFile eomFile = reader.read("{\"uuid\":\"" + UUID + "\",\"type\":\"EOM::CompoundStory\","
+                + "\"value\":\"not base64 at all!\",\"attributes\":");
+
+        assertThat(eomFile.getUuid(), equalTo(UUID));
+        assertThat(eomFile.getType(), equalTo("EOM::CompoundStory"));
+        assertThat(eomFile.getAttributes(), nullValue());
+        assertThat(eomFile.hasValue(), equalTo(false));
+    }
+
+    @Test
+    public void shouldReadContentWithoutType() throws Exception {
+        final EomFile eomFile = reader.read(loadFile("native-wp-content.json"));
+
+        assertThat(eomFile.getType(), nullValue());
+        assertThat(eomFile.getUuid(), nullValue());
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldFailOnMalformedImage() throws Exception {
+        reader.read("{\"uuid\":\"" + UUID + "\",\"type\":\"Image\",\"attributes\":");
+    }
+
+    private String loadFile(final String filename) throws Exception {
+        return new String(Files.readAllBytes(new File("src/test/resources/" + filename).toPath()), UTF_8);
+    }
+}
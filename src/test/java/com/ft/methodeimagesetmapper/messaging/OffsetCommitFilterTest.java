@@ -0,0 +1,133 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.core.header.InBoundHeaders;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class OffsetCommitFilterTest {
+
+    private static final String OFFSETS_URI = "http://localhost:8082/consumers/group/instances/instance/offsets";
+    private static final String RECORDS_URI = "http://localhost:8082/consumers/group/instances/instance/records";
+
+    private final List<ClientRequest> forwarded = new ArrayList<>();
+    private CommitCoordinator coordinator;
+    private Client client;
+    private int proxyStatus = 200;
+
+    @Before
+    public void setUp() {
+        coordinator = new CommitCoordinator(2, 60000, new MetricRegistry());
+        client = client(60000, 10);
+    }
+
+    private Client client(long maxDelayMillis, long completionTimeoutMillis) {
+        final Client client = new Client(request -> {
+            forwarded.add(request);
+            return new ClientResponse(proxyStatus, new InBoundHeaders(), new ByteArrayInputStream(new byte[0]),
+                    this.client.getMessageBodyWorkers());
+        });
+        client.addFilter(new OffsetCommitFilter(coordinator, client.getMessageBodyWorkers(), maxDelayMillis,
+                completionTimeoutMillis));
+        return client;
+    }
+
+    @Test
+    public void shouldPassOtherRequestsThrough() {
+        client.resource(RECORDS_URI).get(ClientResponse.class);
+        client.resource(OFFSETS_URI).get(ClientResponse.class);
+
+        assertThat(forwarded.size(), equalTo(2));
+    }
+
+    @Test
+    public void shouldAnswerCommitLocallyUntilItIsDue() {
+        coordinator.consumed().complete();
+
+        final ClientResponse response = client.resource(OFFSETS_URI).post(ClientResponse.class);
+
+        assertThat(forwarded.size(), equalTo(0));
+        assertThat(response.getStatus(), equalTo(200));
+        assertThat(response.getEntity(String.class), equalTo("[]"));
+        assertThat(coordinator.getUncommitted(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldForwardDueCommitOnceMessagesHaveCompleted() {
+        coordinator.consumed().complete();
+        coordinator.consumed().complete();
+
+        client.resource(OFFSETS_URI).post(ClientResponse.class);
+
+        assertThat(forwarded.size(), equalTo(1));
+        assertThat(coordinator.getUncommitted(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldAnswerCommitLocallyWhileMessagesAreStillBeingProcessed() {
+        coordinator.consumed().complete();
+        coordinator.consumed();
+
+        final ClientResponse response = client.resource(OFFSETS_URI).post(ClientResponse.class);
+
+        assertThat(forwarded.size(), equalTo(0));
+        assertThat(response.getEntity(String.class), equalTo("[]"));
+        assertThat(coordinator.getUncommitted(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldWaitForMessagesStillBeingProcessedOnceCommitsAreOverdue() throws Exception {
+        client = client(0, 5000);
+        coordinator.consumed().complete();
+        final CommitCoordinator.Ticket inFlight = coordinator.consumed();
+        final Thread completer = new Thread(() -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.complete();
+        });
+
+        completer.start();
+        client.resource(OFFSETS_URI).post(ClientResponse.class);
+        completer.join();
+
+        assertThat(forwarded.size(), equalTo(1));
+        assertThat(coordinator.getUncommitted(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldNotCommitPastFailedMessage() {
+        coordinator.consumed().fail();
+        coordinator.consumed().complete();
+
+        client.resource(OFFSETS_URI).post(ClientResponse.class);
+
+        assertThat(forwarded.size(), equalTo(0));
+        assertThat(coordinator.getUncommitted(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldNotRecordRejectedCommit() {
+        proxyStatus = 500;
+        coordinator.consumed().complete();
+        coordinator.consumed().complete();
+
+        final ClientResponse response = client.resource(OFFSETS_URI).post(ClientResponse.class);
+
+        assertThat(forwarded.size(), equalTo(1));
+        assertThat(response.getStatus(), equalTo(500));
+        assertThat(coordinator.getUncommitted(), equalTo(2L));
+    }
+}
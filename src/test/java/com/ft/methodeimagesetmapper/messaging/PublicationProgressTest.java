@@ -0,0 +1,57 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class PublicationProgressTest {
+
+    private final PublicationProgress progress = new PublicationProgress();
+
+    @Test
+    public void shouldHaveNoLagBeforeAnythingIsReceived() {
+        assertThat(progress.getLagMillis(), equalTo(0L));
+        assertThat(progress.getStalledMillis(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldKeepLaggingBehindTheOldestWaitingEvent() throws Exception {
+        final long oldest = progress.received(new Date(System.currentTimeMillis() - 60000));
+        final long newest = progress.received(new Date(System.currentTimeMillis() - 1000));
+
+        final long lag = progress.getLagMillis();
+        assertThat(lag, greaterThanOrEqualTo(60000L));
+        Thread.sleep(20);
+        assertThat(progress.getLagMillis(), greaterThanOrEqualTo(lag + 20));
+
+        progress.finished(oldest, true);
+        assertThat(progress.getLagMillis(), lessThan(60000L));
+
+        progress.finished(newest, true);
+        assertThat(progress.getWaiting(), equalTo(0));
+        assertThat(progress.getLagMillis(), greaterThanOrEqualTo(1000L));
+    }
+
+    @Test
+    public void shouldReportStallWhileEventsWaitWithNothingPublished() throws Exception {
+        final long spooled = progress.received(new Date());
+        final long waiting = progress.received(new Date());
+        Thread.sleep(20);
+
+        progress.finished(spooled, false);
+        progress.finished(spooled, true);
+        assertThat(progress.getStalledMillis(), greaterThanOrEqualTo(20L));
+
+        final long published = progress.received(new Date());
+        progress.finished(published, true);
+        assertThat(progress.getStalledMillis(), lessThan(20L));
+
+        progress.finished(waiting, true);
+        assertThat(progress.getStalledMillis(), equalTo(0L));
+    }
+}
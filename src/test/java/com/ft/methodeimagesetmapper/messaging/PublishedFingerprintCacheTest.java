@@ -0,0 +1,77 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ft.methodeimagesetmapper.model.EomFile;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PublishedFingerprintCacheTest {
+
+    private static final String UUID = "d7625378-d4cd-11e2-bce1-002128161462";
+    private static final String TX_ID = "tid_test";
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final PublishedFingerprintCache cache = new PublishedFingerprintCache(10, 60000, "republish_", metrics);
+
+    @Test
+    public void shouldIgnoreFieldsThatDoNotAffectTheImageSet() {
+        final EomFile image = image("<meta/>", "<props/>", "<tl/>", new byte[]{1});
+        final EomFile resaved = new EomFile(UUID, "Image", new byte[]{2, 3}, "<meta/>", "Stories/WebReady", "<props/>", "<tl/>", new Date(0));
+
+        assertThat(PublishedFingerprintCache.fingerprint(resaved), equalTo(PublishedFingerprintCache.fingerprint(image)));
+    }
+
+    @Test
+    public void shouldChangeFingerprintWithAnyMappedField() {
+        final long fingerprint = PublishedFingerprintCache.fingerprint(image("<meta/>", "<props/>", "<tl/>", new byte[]{1}));
+
+        assertThat(PublishedFingerprintCache.fingerprint(image("<meta></meta>", "<props/>", "<tl/>", new byte[]{1})), not(equalTo(fingerprint)));
+        assertThat(PublishedFingerprintCache.fingerprint(image("<meta/>", "<props></props>", "<tl/>", new byte[]{1})), not(equalTo(fingerprint)));
+        assertThat(PublishedFingerprintCache.fingerprint(image("<meta/>", "<props/>", "<tl></tl>", new byte[]{1})), not(equalTo(fingerprint)));
+        assertThat(PublishedFingerprintCache.fingerprint(image("<meta/>", "<props/>", "<tl/>", null)), not(equalTo(fingerprint)));
+    }
+
+    @Test
+    public void shouldNotConfuseFieldBoundaries() {
+        assertThat(PublishedFingerprintCache.fingerprint(image("ab", "c", null, null)),
+                not(equalTo(PublishedFingerprintCache.fingerprint(image("a", "bc", null, null)))));
+    }
+
+    @Test
+    public void shouldReportUnchangedOnlyAfterPublishingTheSameFingerprint() {
+        final long fingerprint = PublishedFingerprintCache.fingerprint(image("<meta/>", "<props/>", "<tl/>", new byte[]{1}));
+
+        assertThat(cache.isUnchanged(UUID, fingerprint, TX_ID), equalTo(false));
+        cache.recordPublished(UUID, fingerprint);
+        assertThat(cache.isUnchanged(UUID, fingerprint, TX_ID), equalTo(true));
+        assertThat(cache.isUnchanged(UUID, fingerprint + 1, TX_ID), equalTo(false));
+
+        assertThat(metrics.meter(MetricRegistry.name(PublishedFingerprintCache.class, "hits")).getCount(), equalTo(1L));
+        assertThat(metrics.meter(MetricRegistry.name(PublishedFingerprintCache.class, "misses")).getCount(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldAlwaysPublishForcedTransactions() {
+        cache.recordPublished(UUID, 42L);
+
+        assertThat(cache.isUnchanged(UUID, 42L, "republish_" + TX_ID), equalTo(false));
+        assertThat(metrics.meter(MetricRegistry.name(PublishedFingerprintCache.class, "forced")).getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldNeverReportUnchangedWhenDisabled() {
+        final PublishedFingerprintCache disabled = PublishedFingerprintCache.disabled();
+        disabled.recordPublished(UUID, 42L);
+
+        assertThat(disabled.isUnchanged(UUID, 42L, TX_ID), equalTo(false));
+    }
+
+    private static EomFile image(String attributes, String systemAttributes, String usageTickets, byte[] value) {
+        return new EomFile(UUID, "Image", value, attributes, "", systemAttributes, usageTickets, new Date());
+    }
+}
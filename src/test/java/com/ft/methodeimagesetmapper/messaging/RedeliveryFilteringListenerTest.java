@@ -0,0 +1,94 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ft.message.consumer.MessageListener;
+import com.ft.messaging.standards.message.v1.Message;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class RedeliveryFilteringListenerTest {
+
+    private static UUID messageId(int n) {
+        return new UUID(0x5EED, n);
+    }
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final AtomicInteger delivered = new AtomicInteger();
+    private final MessageListener delegate = (message, transactionId) -> delivered.incrementAndGet() > 0;
+
+    @Test
+    public void shouldSuppressRedeliveredMessages() {
+        final RedeliveryFilteringListener listener = new RedeliveryFilteringListener(delegate, 1000, 60000, 0.000001, metrics);
+        final Message message = message(UUID.randomUUID());
+
+        assertThat(listener.onMessage(message, "tid_1"), is(true));
+        assertThat(listener.onMessage(message, "tid_1"), is(true));
+        assertThat(listener.onMessage(message(UUID.randomUUID()), "tid_2"), is(true));
+
+        assertThat(delivered.get(), equalTo(2));
+        assertThat(metrics.counter(MetricRegistry.name(RedeliveryFilteringListener.class, "suppressed")).getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldRememberMessagesForOneMoreGenerationAfterRotating() {
+        // filters this small have a false positive rate of a few percent, so the ids are fixed rather than random
+        final RedeliveryFilteringListener listener = new RedeliveryFilteringListener(delegate, 2, 60000, 0.000001, metrics);
+        final Message first = message(messageId(1));
+        listener.onMessage(first, "tid_1");
+        listener.onMessage(message(messageId(2)), "tid_2");
+        listener.onMessage(message(messageId(3)), "tid_3");
+
+        listener.onMessage(first, "tid_1");
+        assertThat(delivered.get(), equalTo(3));
+
+        listener.onMessage(message(messageId(4)), "tid_4");
+        listener.onMessage(message(messageId(5)), "tid_5");
+        listener.onMessage(first, "tid_1");
+        assertThat(delivered.get(), equalTo(6));
+    }
+
+    @Test
+    public void shouldPassOnMessagesWithoutId() {
+        final RedeliveryFilteringListener listener = new RedeliveryFilteringListener(delegate, 1000, 60000, 0.000001, metrics);
+        final Message message = message(null);
+
+        listener.onMessage(message, "tid_1");
+        listener.onMessage(message, "tid_1");
+
+        assertThat(delivered.get(), equalTo(2));
+    }
+
+    @Test
+    public void shouldPassOnMessageRedeliveredAfterTheDelegateFailed() {
+        final MessageListener failingOnce = (message, transactionId) -> {
+            if (delivered.incrementAndGet() == 1) {
+                throw new IllegalStateException("kafka-proxy unavailable");
+            }
+            return true;
+        };
+        final RedeliveryFilteringListener listener = new RedeliveryFilteringListener(failingOnce, 1000, 60000, 0.000001, metrics);
+        final Message message = message(UUID.randomUUID());
+
+        try {
+            listener.onMessage(message, "tid_1");
+        } catch (IllegalStateException expected) {
+            // the consumer retries after its backoff period
+        }
+        listener.onMessage(message, "tid_1");
+        listener.onMessage(message, "tid_1");
+
+        assertThat(delivered.get(), equalTo(2));
+    }
+
+    private static Message message(UUID messageId) {
+        final Message message = new Message();
+        message.setMessageId(messageId);
+        return message;
+    }
+}
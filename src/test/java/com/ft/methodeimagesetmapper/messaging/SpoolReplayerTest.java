@@ -0,0 +1,146 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ft.messaging.standards.message.v1.Message;
+import com.ft.methodeimagesetmapper.service.MethodeImageSetMapper;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.UniformInterfaceException;
+import com.sun.jersey.core.header.InBoundHeaders;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.ws.rs.core.UriBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SpoolReplayerTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final List<String> sentBodies = new ArrayList<>();
+    private Path deadLetters;
+    private MessageSpool spool;
+    private SpoolReplayer replayer;
+
+    @Before
+    public void setUp() throws IOException {
+        deadLetters = folder.getRoot().toPath().resolve("producer.spool.dead-letter");
+        spool = new MessageSpool(folder.getRoot().toPath().resolve("producer.spool"), 64 * 1024, OBJECT_MAPPER);
+        final MessageProducingContentMapper mapper = new MessageProducingContentMapper(
+                new MethodeImageSetMapper(metrics), OBJECT_MAPPER, "junit_system", messages -> {
+                    for (Message message : messages) {
+                        if (message.getMessageBody().contains("rejected")) {
+                            throw new UniformInterfaceException(response(400));
+                        }
+                        if (message.getMessageBody().contains("busy")) {
+                            throw new UniformInterfaceException(response(503));
+                        }
+                    }
+                    messages.forEach(message -> sentBodies.add(message.getMessageBody()));
+                }, UriBuilder.fromUri("http://www.example.org/content").path("{uuid}"));
+        replayer = new SpoolReplayer(spool, mapper, 10, 1000, 60000, 3, deadLetters, OBJECT_MAPPER, metrics);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        spool.close();
+    }
+
+    @Test
+    public void shouldMoveMessageThatKeepsFailingToDeadLettersAndReplayTheRest() throws IOException {
+        spool.append(Arrays.asList(message("rejected"), message("2"), message("3")));
+
+        // one attempt with the whole batch, then the rejected message alone until it has been rejected 3 times
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            try {
+                replayer.replayOnce();
+                fail("replay should have failed");
+            } catch (UniformInterfaceException expected) {
+                assertThat(spool.size(), equalTo(3L));
+            }
+        }
+        assertThat(replayer.replayOnce(), is(true));
+        assertThat(replayer.replayOnce(), is(true));
+
+        assertThat(sentBodies, contains("body-2", "body-3"));
+        assertThat(spool.isEmpty(), is(true));
+        final List<String> deadLettered = Files.readAllLines(deadLetters, StandardCharsets.UTF_8);
+        assertThat(deadLettered.size(), equalTo(1));
+        assertThat(deadLettered.get(0), containsString("body-rejected"));
+        assertThat(metrics.counter(MetricRegistry.name(SpoolReplayer.class, "dead-lettered")).getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldNeverMoveMessageToDeadLettersWhileTheKafkaProxyIsFailing() throws IOException {
+        spool.append(Arrays.asList(message("busy"), message("2")));
+
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            try {
+                replayer.replayOnce();
+                fail("replay should have failed");
+            } catch (UniformInterfaceException expected) {
+                assertThat(spool.size(), equalTo(2L));
+            }
+        }
+
+        assertThat(Files.exists(deadLetters), is(false));
+    }
+
+    @Test
+    public void shouldMoveMessageThatCannotBeRecreatedToDeadLetters() throws IOException {
+        spool.append(Arrays.asList(new SpooledMessage("1", "not-a-uuid", 1234L, "tid_1", "body-1"), message("2")));
+
+        try {
+            replayer.replayOnce();
+            fail("replay should have failed");
+        } catch (IllegalArgumentException expected) {
+            assertThat(spool.size(), equalTo(2L));
+        }
+        assertThat(replayer.replayOnce(), is(true));
+        assertThat(replayer.replayOnce(), is(true));
+
+        assertThat(sentBodies, contains("body-2"));
+        assertThat(Files.readAllLines(deadLetters, StandardCharsets.UTF_8).get(0), containsString("not-a-uuid"));
+    }
+
+    @Test
+    public void shouldReplayWholeBatchOnceTheKafkaProxyRecovers() throws IOException {
+        spool.append(Arrays.asList(message("1"), message("2")));
+
+        assertThat(replayer.replayOnce(), is(true));
+        assertThat(replayer.replayOnce(), is(false));
+
+        assertThat(sentBodies, contains("body-1", "body-2"));
+        assertThat(Files.exists(deadLetters), is(false));
+    }
+
+    private static ClientResponse response(int status) {
+        return new ClientResponse(status, new InBoundHeaders(), new ByteArrayInputStream(new byte[0]), null);
+    }
+
+    private static SpooledMessage message(String key) {
+        return new SpooledMessage(key, "00000000-0000-0000-0000-00000000000" + key.length(), 1234L, "tid_" + key,
+                "body-" + key);
+    }
+}
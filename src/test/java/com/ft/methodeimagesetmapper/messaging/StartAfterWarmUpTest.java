@@ -0,0 +1,82 @@
+package com.ft.methodeimagesetmapper.messaging;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ft.methodeimagesetmapper.service.MethodeImageSetMapper;
+import io.dropwizard.lifecycle.Managed;
+import org.junit.Test;
+
+import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StartAfterWarmUpTest {
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final MethodeImageSetMapper imageSetMapper = new MethodeImageSetMapper(metrics);
+    private final MessageProducingContentMapper contentMapper = new MessageProducingContentMapper(imageSetMapper,
+            new ObjectMapper(), "junit_system", messages -> { },
+            UriBuilder.fromUri("http://www.example.org/content").path("{uuid}"));
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final AtomicBoolean warmWhenStarted = new AtomicBoolean();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    @Test
+    public void shouldStartDelegateOnceWarm() throws Exception {
+        final MappingWarmUp warmUp = new MappingWarmUp(imageSetMapper, contentMapper, 50, 0, 60000, metrics);
+        final StartAfterWarmUp startAfterWarmUp = new StartAfterWarmUp(delegate(warmUp), warmUp, 60000);
+
+        startAfterWarmUp.start();
+        warmUp.start();
+
+        assertThat(started.await(30, TimeUnit.SECONDS), is(true));
+        assertThat(warmWhenStarted.get(), is(true));
+        startAfterWarmUp.stop();
+        warmUp.stop();
+        assertThat(stopped.get(), is(true));
+    }
+
+    @Test
+    public void shouldStartDelegateRegardlessAfterTimeout() throws Exception {
+        final MappingWarmUp warmUp = new MappingWarmUp(imageSetMapper, contentMapper, 50, 0, 60000, metrics);
+        final StartAfterWarmUp startAfterWarmUp = new StartAfterWarmUp(delegate(warmUp), warmUp, 10);
+
+        startAfterWarmUp.start();
+
+        assertThat(started.await(30, TimeUnit.SECONDS), is(true));
+        assertThat(warmWhenStarted.get(), is(false));
+        startAfterWarmUp.stop();
+    }
+
+    @Test
+    public void shouldNotStartDelegateWhenStoppedWhileWarmingUp() throws Exception {
+        final MappingWarmUp warmUp = new MappingWarmUp(imageSetMapper, contentMapper, 50, 0, 60000, metrics);
+        final StartAfterWarmUp startAfterWarmUp = new StartAfterWarmUp(delegate(warmUp), warmUp, 60000);
+
+        startAfterWarmUp.start();
+        startAfterWarmUp.stop();
+
+        assertThat(started.getCount(), equalTo(1L));
+        assertThat(stopped.get(), is(false));
+    }
+
+    private Managed delegate(MappingWarmUp warmUp) {
+        return new Managed() {
+            @Override
+            public void start() {
+                warmWhenStarted.set(warmUp.isComplete());
+                started.countDown();
+            }
+
+            @Override
+            public void stop() {
+                stopped.set(true);
+            }
+        };
+    }
+}
@@ -0,0 +1,61 @@
+package com.ft.methodeimagesetmapper.model;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class EomFileTest {
+
+    private static final ObjectMapper JACKSON_MAPPER = new ObjectMapper();
+
+    @Test
+    public void shouldReadImageBytesLengthWithoutKeepingTheBytes() throws Exception {
+        final EomFile eomFile = JACKSON_MAPPER.readValue(new File("src/test/resources/native-methode-image.json"), EomFile.class);
+
+        assertThat(eomFile.getUuid(), equalTo("d7625378-d4cd-11e2-bce1-002128161462"));
+        assertThat(eomFile.getType(), equalTo("Image"));
+        assertThat(eomFile.getValueLength(), equalTo(6));
+        assertThat(eomFile.hasValue(), equalTo(true));
+    }
+
+    @Test
+    public void shouldHaveNoValueWhenImageBytesAreEmpty() throws Exception {
+        final EomFile eomFile = JACKSON_MAPPER.readValue(new File("src/test/resources/native-empty-payload-image.json"), EomFile.class);
+
+        assertThat(eomFile.getValueLength(), equalTo(0));
+        assertThat(eomFile.hasValue(), equalTo(false));
+    }
+
+    @Test
+    public void shouldHaveNoValueWhenImageBytesAreNullOrMissing() throws Exception {
+        assertThat(JACKSON_MAPPER.readValue("{\"type\":\"Image\",\"value\":null}", EomFile.class).hasValue(), equalTo(false));
+        assertThat(JACKSON_MAPPER.readValue("{\"type\":\"Image\"}", EomFile.class).hasValue(), equalTo(false));
+    }
+
+    @Test
+    public void shouldReadDecodedLengthOfLargeImageBytes() throws Exception {
+        final byte[] bytes = new byte[3 * 1024 * 1024 + 1];
+        final String json = "{\"type\":\"Image\",\"value\":" + JACKSON_MAPPER.writeValueAsString(bytes) + "}";
+
+        assertThat(JACKSON_MAPPER.readValue(json, EomFile.class).getValueLength(), equalTo(bytes.length));
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void shouldRejectImageBytesThatAreNotBinary() throws Exception {
+        JACKSON_MAPPER.readValue("{\"type\":\"Image\",\"value\":{}}", EomFile.class);
+    }
+
+    @Test
+    public void shouldKeepImageBytesLengthWhenBuiltFromBytes() {
+        final EomFile eomFile = new EomFile.Builder().withType("Image").withValue("image".getBytes()).build();
+
+        assertThat(eomFile.getValueLength(), equalTo(5));
+        assertThat(new EomFile.Builder().withType("Image").withValue(null).build().hasValue(), equalTo(false));
+    }
+}
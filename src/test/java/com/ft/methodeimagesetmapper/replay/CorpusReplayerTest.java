@@ -0,0 +1,87 @@
+package com.ft.methodeimagesetmapper.replay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ft.methodeimagesetmapper.service.MethodeImageSetMapper;
+import com.ft.methodeimagesetmapper.validation.PublishingValidator;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class CorpusReplayerTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String TRANSACTION_ID = "tid_replay_test";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final CorpusReplayer replayer = new CorpusReplayer(new MethodeImageSetMapper(), new PublishingValidator(),
+            OBJECT_MAPPER, null, executor, 2, 3, TRANSACTION_ID);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldWriteImageSetsInCorpusOrder() throws IOException {
+        final String image = line("native-methode-image.json");
+        final StringBuilder corpus = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            corpus.append(image).append('\n');
+        }
+        final StringWriter output = new StringWriter();
+
+        final ReplaySummary summary = replayer.replay(new BufferedReader(new StringReader(corpus.toString())), output);
+
+        assertThat(summary.getMessages(), equalTo(20L));
+        assertThat(summary.getMapped(), equalTo(20L));
+        final String[] imageSets = output.toString().split("\n");
+        assertThat(imageSets.length, equalTo(20));
+        for (String imageSet : imageSets) {
+            assertThat(OBJECT_MAPPER.readTree(imageSet).get("publishReference").asText(), equalTo(TRANSACTION_ID));
+        }
+    }
+
+    @Test
+    public void shouldMapTheSameImageSetsWhenReplayedAgain() throws Exception {
+        final String corpus = line("native-methode-image.json") + "\n";
+        final StringWriter first = new StringWriter();
+        final StringWriter second = new StringWriter();
+
+        replayer.replay(new BufferedReader(new StringReader(corpus)), first);
+        Thread.sleep(5);
+        replayer.replay(new BufferedReader(new StringReader(corpus)), second);
+
+        assertThat(second.toString(), equalTo(first.toString()));
+    }
+
+    @Test
+    public void shouldCountSkippedAndFailedMessages() throws IOException {
+        final String corpus = line("native-methode-image.json") + "\n"
+                + line("native-wp-content.json") + "\n"
+                + "\n"
+                + "{not json\n";
+
+        final ReplaySummary summary = replayer.replay(new BufferedReader(new StringReader(corpus)), null);
+
+        assertThat(summary.getMessages(), equalTo(3L));
+        assertThat(summary.getMapped(), equalTo(1L));
+        assertThat(summary.getSkipped().get("not-an-image"), equalTo(1L));
+        assertThat(summary.getFailed().get("unparseable"), equalTo(1L));
+    }
+
+    private static String line(String resource) throws IOException {
+        final JsonNode json = OBJECT_MAPPER.readTree(new File("src/test/resources/" + resource));
+        return OBJECT_MAPPER.writeValueAsString(json);
+    }
+}
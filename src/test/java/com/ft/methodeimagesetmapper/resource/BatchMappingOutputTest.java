@@ -0,0 +1,102 @@
+package com.ft.methodeimagesetmapper.resource;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ft.methodeimagesetmapper.model.EomFile;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class BatchMappingOutputTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldWriteResultsInRequestOrder() throws Exception {
+    final JsonNode results = run("[{\"uuid\":\"a\",\"type\":\"Image\"},{\"uuid\":\"b\",\"type\":\"Article\"},{\"uuid\":\"c\",\"type\":\"Image\"}]", 2,
+        eomFile -> "Image".equals(eomFile.getType())
+            ? BatchItemResult.mapped(eomFile.getUuid(), null)
+            : BatchItemResult.failed(eomFile.getUuid(), 422, "Unsupported type - not an image set."),
+        UnaryOperator.identity());
+
+    assertThat(results.size(), equalTo(3));
+    assertThat(results.get(0).get("uuid").asText(), equalTo("a"));
+    assertThat(results.get(0).get("status").asInt(), equalTo(200));
+    assertThat(results.get(0).has("message"), equalTo(false));
+    assertThat(results.get(1).get("uuid").asText(), equalTo("b"));
+    assertThat(results.get(1).get("status").asInt(), equalTo(422));
+    assertThat(results.get(1).get("message").asText(), equalTo("Unsupported type - not an image set."));
+    assertThat(results.get(2).get("uuid").asText(), equalTo("c"));
+  }
+
+  @Test
+  public void shouldCompleteEachChunkTogether() throws Exception {
+    final List<Integer> chunkSizes = new ArrayList<>();
+
+    run("[{\"uuid\":\"a\"},{\"uuid\":\"b\"},{\"uuid\":\"c\"},{\"uuid\":\"d\"},{\"uuid\":\"e\"}]", 2,
+        eomFile -> BatchItemResult.published(eomFile.getUuid()),
+        chunk -> {
+          chunkSizes.add(chunk.size());
+          return chunk;
+        });
+
+    assertThat(chunkSizes, equalTo(Arrays.asList(2, 2, 1)));
+  }
+
+  @Test
+  public void shouldReportMalformedBodyAfterResultsReadBeforeIt() throws Exception {
+    final JsonNode results = run("[{\"uuid\":\"a\"},{\"uuid\":", 10,
+        eomFile -> BatchItemResult.published(eomFile.getUuid()), UnaryOperator.identity());
+
+    assertThat(results.size(), equalTo(2));
+    assertThat(results.get(0).get("status").asInt(), equalTo(200));
+    assertThat(results.get(1).get("status").asInt(), equalTo(400));
+  }
+
+  @Test
+  public void shouldReportMalformedBodyBetweenItems() throws Exception {
+    final JsonNode results = run("[{\"uuid\":\"a\"} {\"uuid\":\"b\"}]", 10,
+        eomFile -> BatchItemResult.published(eomFile.getUuid()), UnaryOperator.identity());
+
+    assertThat(results.size(), equalTo(2));
+    assertThat(results.get(0).get("uuid").asText(), equalTo("a"));
+    assertThat(results.get(1).get("status").asInt(), equalTo(400));
+  }
+
+  @Test
+  public void shouldWriteEmptyArrayForEmptyBatch() throws Exception {
+    final JsonNode results = run("[]", 10, eomFile -> BatchItemResult.published(eomFile.getUuid()), UnaryOperator.identity());
+
+    assertThat(results.size(), equalTo(0));
+  }
+
+  private JsonNode run(String body, int chunkSize, Function<EomFile, BatchItemResult> mapping,
+      UnaryOperator<List<BatchItemResult>> chunkCompletion) throws Exception {
+    final JsonParser parser = OBJECT_MAPPER.getFactory().createParser(body);
+    assertThat(parser.nextToken(), equalTo(JsonToken.START_ARRAY));
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    new BatchMappingOutput(parser, OBJECT_MAPPER, executor, chunkSize, mapping, chunkCompletion).write(output);
+
+    return OBJECT_MAPPER.readTree(output.toByteArray());
+  }
+}
@@ -0,0 +1,145 @@
+package com.ft.methodeimagesetmapper.resource;
+
+import com.codahale.metrics.MetricRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ws.rs.WebApplicationException;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class BoundedRequestExecutorTest {
+
+  private final MetricRegistry metrics = new MetricRegistry();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final ExecutorService callers = Executors.newCachedThreadPool();
+  private BoundedRequestExecutor executor;
+
+  @After
+  public void tearDown() throws Exception {
+    release.countDown();
+    callers.shutdownNow();
+    executor.stop();
+  }
+
+  @Test
+  public void shouldReturnResultOfWork() {
+    executor = new BoundedRequestExecutor(1, 1, 1000, 5, metrics);
+
+    assertThat(executor.call(() -> "mapped"), equalTo("mapped"));
+    assertThat(metrics.timer(MetricRegistry.name(BoundedRequestExecutor.class, "executions")).getCount(), equalTo(1L));
+  }
+
+  @Test
+  public void shouldPropagateRuntimeExceptionsOfWork() {
+    executor = new BoundedRequestExecutor(1, 1, 1000, 5, metrics);
+    final IllegalArgumentException failure = new IllegalArgumentException("invalid uuid");
+
+    try {
+      executor.call(() -> {
+        throw failure;
+      });
+      fail("expected the failure of the work");
+    } catch (IllegalArgumentException e) {
+      assertThat(e, sameInstance(failure));
+    }
+  }
+
+  @Test
+  public void shouldRejectWithRetryAfterWhenSaturated() throws Exception {
+    executor = new BoundedRequestExecutor(1, 1, 10000, 7, metrics);
+    final CountDownLatch running = new CountDownLatch(1);
+    callers.submit(() -> executor.call(() -> {
+      running.countDown();
+      return release.await(10, TimeUnit.SECONDS);
+    }));
+    running.await(5, TimeUnit.SECONDS);
+    callers.submit(() -> executor.call(() -> release.await(10, TimeUnit.SECONDS)));
+    waitForQueueDepth(1);
+
+    try {
+      executor.call(() -> "rejected");
+      fail("expected the request to be rejected");
+    } catch (WebApplicationException e) {
+      assertThat(e.getResponse().getStatus(), equalTo(503));
+      assertThat(e.getResponse().getMetadata().getFirst("Retry-After"), equalTo((Object) 7L));
+    }
+    assertThat(metrics.meter(MetricRegistry.name(BoundedRequestExecutor.class, "rejections")).getCount(), equalTo(1L));
+  }
+
+  @Test
+  public void shouldTimeOutSlowWork() {
+    executor = new BoundedRequestExecutor(1, 1, 50, 5, metrics);
+
+    try {
+      executor.call(() -> release.await(10, TimeUnit.SECONDS));
+      fail("expected the request to time out");
+    } catch (WebApplicationException e) {
+      assertThat(e.getResponse().getStatus(), equalTo(504));
+    }
+    assertThat(metrics.meter(MetricRegistry.name(BoundedRequestExecutor.class, "timeouts")).getCount(), equalTo(1L));
+  }
+
+  @Test
+  public void shouldLeaveRunningWorkToFinishWhenItTimesOut() throws Exception {
+    executor = new BoundedRequestExecutor(1, 1, 50, 5, metrics);
+    final CountDownLatch finished = new CountDownLatch(1);
+    final AtomicBoolean interrupted = new AtomicBoolean();
+
+    try {
+      executor.call(() -> {
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          interrupted.set(true);
+        }
+        finished.countDown();
+        return "published";
+      });
+      fail("expected the request to time out");
+    } catch (WebApplicationException e) {
+      assertThat(e.getResponse().getStatus(), equalTo(504));
+    }
+
+    assertThat(finished.await(5, TimeUnit.SECONDS), equalTo(true));
+    assertThat(interrupted.get(), equalTo(false));
+  }
+
+  @Test
+  public void shouldNotRunQueuedWorkOnceItTimedOut() throws Exception {
+    executor = new BoundedRequestExecutor(1, 1, 50, 5, metrics);
+    final CountDownLatch running = new CountDownLatch(1);
+    callers.submit(() -> executor.call(() -> {
+      running.countDown();
+      return release.await(10, TimeUnit.SECONDS);
+    }));
+    running.await(5, TimeUnit.SECONDS);
+    final AtomicBoolean ran = new AtomicBoolean();
+
+    try {
+      executor.call(() -> ran.getAndSet(true));
+      fail("expected the request to time out");
+    } catch (WebApplicationException e) {
+      assertThat(e.getResponse().getStatus(), equalTo(504));
+    }
+    release.countDown();
+
+    assertThat(executor.call(() -> "next"), equalTo("next"));
+    assertThat(ran.get(), equalTo(false));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void waitForQueueDepth(int depth) throws InterruptedException {
+    final String name = MetricRegistry.name(BoundedRequestExecutor.class, "queue-depth");
+    for (int i = 0; i < 500 && (Integer) metrics.getGauges().get(name).getValue() < depth; i++) {
+      Thread.sleep(10);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.ft.methodeimagesetmapper.service;
+
+import org.junit.Test;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ScalarDecoderTest {
+
+    @Test
+    public void shouldParseDateAsGmt() {
+        assertThat(ScalarDecoder.parseDate("20140930144500"), equalTo(new Date(1412088300000L)));
+    }
+
+    @Test
+    public void shouldParseDatesLikeSimpleDateFormat() {
+        final String[] dates = {"19700101000000", "20000229235959", "20160229120000", "21000228000000",
+                "20141231235959", "15821015000000", "15830101000000", "10000101000000",
+                "20130229000000", "20141301000000", "20140931000000", "20140930246000", "20140930235960",
+                "20140930144500Z", "2014093014450", "201409301445", "2014-09-30", "+2014093014450", "garbage", ""};
+        for (String date : dates) {
+            assertThat(date, ScalarDecoder.parseDate(date), equalTo(legacyParseDate(date)));
+        }
+    }
+
+    @Test
+    public void shouldParseRandomDatesLikeSimpleDateFormat() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            final String date = String.format("%04d%02d%02d%02d%02d%02d", 1900 + random.nextInt(300),
+                    random.nextInt(14), random.nextInt(33), random.nextInt(25), random.nextInt(61), random.nextInt(61));
+            assertThat(date, ScalarDecoder.parseDate(date), equalTo(legacyParseDate(date)));
+        }
+    }
+
+    @Test
+    public void shouldReturnNullForMissingDate() {
+        assertThat(ScalarDecoder.parseDate(null), nullValue());
+        assertThat(ScalarDecoder.parseDate(""), nullValue());
+    }
+
+    @Test
+    public void shouldParseDimensionsLikeIntegerParseInt() {
+        final String[] dimensions = {"0", "1", "2048", "+2048", "-1", "007", "2147483647", "2147483648", "-2147483648",
+                "-2147483649", "99999999999", "", "-", "+", "12px", " 12", "12 ", "1.5", "١٢", "abc"};
+        for (String dimension : dimensions) {
+            assertThat(dimension, ScalarDecoder.parseDimension(dimension), equalTo(legacyParseDimension(dimension)));
+        }
+        assertThat(ScalarDecoder.parseDimension(null), nullValue());
+    }
+
+    @Test
+    public void shouldMapFileTypesToConstantMediaTypes() {
+        assertThat(ScalarDecoder.mediaType("JPEG"), sameInstance("image/jpeg"));
+        assertThat(ScalarDecoder.mediaType("png"), sameInstance("image/png"));
+        assertThat(ScalarDecoder.mediaType("Gif"), equalTo("image/gif"));
+        assertThat(ScalarDecoder.mediaType("X-PORTABLE-PIXMAP"), equalTo("image/x-portable-pixmap"));
+        assertThat(ScalarDecoder.mediaType(""), nullValue());
+    }
+
+    private static Date legacyParseDate(String value) {
+        final DateFormat dateFormat = new SimpleDateFormat("yyyyMMddHHmmss");
+        try {
+            dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return dateFormat.parse(value);
+        } catch (ParseException ex) {
+            return null;
+        }
+    }
+
+    private static Integer legacyParseDimension(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+}
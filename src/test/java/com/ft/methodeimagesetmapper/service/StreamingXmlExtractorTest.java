@@ -0,0 +1,90 @@
+package com.ft.methodeimagesetmapper.service;
+
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StreamingXmlExtractorTest {
+
+    private final StreamingXmlExtractor extractor = new StreamingXmlExtractor(
+            "/meta/picture/web_information/caption",
+            "/meta/picture/web_information/alt_tag",
+            "/meta/picture/web_information/online-source");
+
+    @Test
+    public void shouldExtractConfiguredPaths() throws Exception {
+        final String[] values = extractor.extract(loadFile("sample-attributes.xml"));
+
+        assertThat(values, equalTo(new String[]{"Fruits of the soul", "Picture with fruits", "Bloomberg News"}));
+    }
+
+    @Test
+    public void shouldNotMatchElementsWithTheSameNameOnOtherPaths() throws Exception {
+        final String xml = "<meta><picture><caption>outer</caption><web_information><caption>inner</caption></web_information></picture></meta>";
+
+        assertThat(extractor.extract(xml)[0], equalTo("inner"));
+    }
+
+    @Test
+    public void shouldConcatenateDescendantTextAndResolveEntities() throws Exception {
+        final String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+                "<!DOCTYPE meta SYSTEM \"/SysConfig/Classify/FTImages/classify.dtd\">" +
+                "<meta><picture><web_information><caption>Fruits &amp; <b>veg</b><![CDATA[ <soul>]]>&nbsp;</caption></web_information></picture></meta>";
+
+        assertThat(extractor.extract(xml)[0], equalTo("Fruits & veg <soul>"));
+    }
+
+    @Test
+    public void shouldReturnEmptyValuesForMissingPaths() throws Exception {
+        assertThat(extractor.extract("<meta>empty</meta>"), equalTo(new String[]{"", "", ""}));
+    }
+
+    @Test
+    public void shouldStopReadingOnceAllPathsAreCaptured() throws Exception {
+        final String xml = "<meta><picture><web_information><caption>c</caption><alt_tag>a</alt_tag>" +
+                "<online-source>o</online-source></web_information></picture><not-well-formed></meta>";
+
+        assertThat(extractor.extract(xml), equalTo(new String[]{"c", "a", "o"}));
+    }
+
+    @Test(expected = XMLStreamException.class)
+    public void shouldFailOnEmptyDocument() throws Exception {
+        extractor.extract("");
+    }
+
+    @Test
+    public void shouldExtractConcurrentlyWithASharedInstance() throws Exception {
+        final ExecutorService threads = Executors.newFixedThreadPool(8);
+        final List<Future<String[]>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                final String xml = "<meta><picture><web_information><caption>caption " + i + "</caption>" +
+                        "<alt_tag>alt " + i + "</alt_tag><online-source>source " + i + "</online-source>" +
+                        "</web_information></picture></meta>";
+                results.add(threads.submit((Callable<String[]>) () -> extractor.extract(xml)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get(), equalTo(new String[]{"caption " + i, "alt " + i, "source " + i}));
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    private String loadFile(final String filename) throws Exception {
+        final URI uri = getClass().getClassLoader().getResource(filename).toURI();
+        return new String(Files.readAllBytes(Paths.get(uri)), "UTF-8");
+    }
+}
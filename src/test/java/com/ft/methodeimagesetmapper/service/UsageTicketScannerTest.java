@@ -0,0 +1,72 @@
+package com.ft.methodeimagesetmapper.service;
+
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UsageTicketScannerTest {
+
+    private final UsageTicketScanner scanner = new UsageTicketScanner();
+
+    @Test
+    public void shouldReturnCreationDateOfLastWebPublicationTicket() throws Exception {
+        assertThat(scanner.lastWebPublicationCreationDate(loadFile("sample-usage-tickets.xml")), equalTo("20140930144500"));
+    }
+
+    @Test
+    public void shouldReturnEmptyStringWhenNoTicketIsAWebPublication() throws Exception {
+        final String usageTickets = "<tl><t><tp>Publisher</tp><cd>20140317120800</cd></t><t><tp>mms</tp><cd>20140317131600</cd></t></tl>";
+
+        assertThat(scanner.lastWebPublicationCreationDate(usageTickets), equalTo(""));
+    }
+
+    @Test
+    public void shouldReturnEmptyStringForEmptyTicketList() throws Exception {
+        assertThat(scanner.lastWebPublicationCreationDate("<tl/>"), equalTo(""));
+    }
+
+    @Test
+    public void shouldReturnEmptyStringWhenLastWebPublicationTicketHasNoCreationDate() throws Exception {
+        final String usageTickets = "<tl><t><tp>web_publication</tp><cd>20140317120800</cd></t><t><tp>web_publication</tp></t></tl>";
+
+        assertThat(scanner.lastWebPublicationCreationDate(usageTickets), equalTo(""));
+    }
+
+    @Test
+    public void shouldIgnoreNestedCreationDates() throws Exception {
+        final String usageTickets = "<tl><t><tp>web_publication</tp><dt><cd>nested</cd></dt><cd>20140317120800</cd></t></tl>";
+
+        assertThat(scanner.lastWebPublicationCreationDate(usageTickets), equalTo("20140317120800"));
+    }
+
+    @Test(timeout = 2000L)
+    public void shouldScanThousandsOfTicketsInLinearTime() throws Exception {
+        final int tickets = 20000;
+        final StringBuilder usageTickets = new StringBuilder("<tl>");
+        for (int i = 0; i < tickets; i++) {
+            usageTickets.append("<t><id>").append(i).append("</id>")
+                    .append("<tp>").append(i % 3 == 0 ? "web_publication" : "mms").append("</tp>")
+                    .append("<c>servlet-mms</c><cd>").append(20140317000000L + i).append("</cd>")
+                    .append("<dt><publishedDate>Mon Mar 17 12:08:27 GMT 2014</publishedDate></dt></t>");
+        }
+        usageTickets.append("</tl>");
+
+        assertThat(scanner.lastWebPublicationCreationDate(usageTickets.toString()), equalTo(String.valueOf(20140317000000L + 19998)));
+    }
+
+    @Test(expected = XMLStreamException.class)
+    public void shouldFailOnMalformedTickets() throws Exception {
+        scanner.lastWebPublicationCreationDate("<tl><t><tp>web_publication</tp></tl>");
+    }
+
+    private String loadFile(final String filename) throws Exception {
+        final URI uri = getClass().getClassLoader().getResource(filename).toURI();
+        return new String(Files.readAllBytes(Paths.get(uri)), "UTF-8");
+    }
+}